@@ -0,0 +1,25 @@
+package android.content;
+
+/**
+ * Stand-in for android.content.BroadcastReceiver. There is no ordered
+ * broadcast to abort, so abortBroadcast() only marks it aborted.
+ */
+public abstract class BroadcastReceiver {
+
+	private boolean mAborted;
+
+	public abstract void onReceive(Context context, Intent intent);
+
+	public final void abortBroadcast() {
+		mAborted = true;
+	}
+
+	public final boolean getAbortBroadcast() {
+		return mAborted;
+	}
+
+	public final void clearAbortBroadcast() {
+		mAborted = false;
+	}
+
+}
@@ -0,0 +1,24 @@
+package android.content;
+
+import java.io.File;
+
+import android.os.Handler;
+
+/**
+ * Stand-in for android.content.Context with the calls the eye event path
+ * makes
+ */
+public abstract class Context {
+
+	public abstract Object getSystemService(String name);
+
+	public abstract File getFilesDir();
+
+	public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+	public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter,
+			String broadcastPermission, Handler scheduler);
+
+	public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+}
@@ -0,0 +1,40 @@
+package android.content;
+
+import android.os.Bundle;
+
+/**
+ * Stand-in for android.content.Intent, an action and its extras
+ */
+public class Intent {
+
+	private final String mAction;
+	private Bundle mExtras;
+
+	public Intent(String action) {
+		mAction = action;
+	}
+
+	public String getAction() {
+		return mAction;
+	}
+
+	public Intent putExtra(String name, String value) {
+		if (mExtras == null) {
+			mExtras = new Bundle();
+		}
+		mExtras.putString(name, value);
+		return this;
+	}
+
+	public String getStringExtra(String name) {
+		return mExtras == null ? null : mExtras.getString(name);
+	}
+
+	/**
+	 * @return a copy of the extras, like the platform returns
+	 */
+	public Bundle getExtras() {
+		return mExtras == null ? null : new Bundle(mExtras);
+	}
+
+}
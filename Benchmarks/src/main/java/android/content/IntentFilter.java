@@ -0,0 +1,34 @@
+package android.content;
+
+/**
+ * Stand-in for android.content.IntentFilter with a single action
+ */
+public class IntentFilter {
+
+	private final String mAction;
+	private int mPriority;
+
+	public IntentFilter(String action) {
+		mAction = action;
+	}
+
+	public final String getAction(int index) {
+		if (index != 0) {
+			throw new IndexOutOfBoundsException("index " + index);
+		}
+		return mAction;
+	}
+
+	public final boolean hasAction(String action) {
+		return mAction.equals(action);
+	}
+
+	public final void setPriority(int priority) {
+		mPriority = priority;
+	}
+
+	public final int getPriority() {
+		return mPriority;
+	}
+
+}
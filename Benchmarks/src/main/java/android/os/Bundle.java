@@ -0,0 +1,28 @@
+package android.os;
+
+import java.util.HashMap;
+
+/**
+ * Stand-in for android.os.Bundle, holding strings
+ */
+public final class Bundle {
+
+	private final HashMap<String, String> mMap;
+
+	public Bundle() {
+		mMap = new HashMap<String, String>();
+	}
+
+	public Bundle(Bundle bundle) {
+		mMap = new HashMap<String, String>(bundle.mMap);
+	}
+
+	public void putString(String key, String value) {
+		mMap.put(key, value);
+	}
+
+	public String getString(String key) {
+		return mMap.get(key);
+	}
+
+}
@@ -0,0 +1,27 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.Handler that runs what is posted to it on the
+ * posting thread, before post() returns
+ */
+public class Handler {
+
+	private final Looper mLooper;
+
+	public Handler(Looper looper) {
+		mLooper = looper;
+	}
+
+	public final Looper getLooper() {
+		return mLooper;
+	}
+
+	public final boolean post(Runnable r) {
+		r.run();
+		return true;
+	}
+
+	public final void removeCallbacks(Runnable r) {
+	}
+
+}
@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.HandlerThread. Its looper runs posted work on the
+ * posting thread, like every stand-in Looper.
+ */
+public class HandlerThread extends Thread {
+
+	private final Looper mLooper = new Looper();
+
+	public HandlerThread(String name, int priority) {
+		super(name);
+	}
+
+	public Looper getLooper() {
+		return mLooper;
+	}
+
+	public boolean quit() {
+		return true;
+	}
+
+}
@@ -0,0 +1,35 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.Looper. There is no message queue: Handler runs
+ * what is posted to it straight away.
+ */
+public final class Looper {
+
+	private static final Looper sMainLooper = new Looper();
+
+	private static final ThreadLocal<Looper> sThreadLooper = new ThreadLocal<Looper>();
+
+	Looper() {
+	}
+
+	public static Looper getMainLooper() {
+		return sMainLooper;
+	}
+
+	public static Looper myLooper() {
+		return sThreadLooper.get();
+	}
+
+	/**
+	 * Make the main looper the calling thread's, ie. the benchmark's thread
+	 * stands in for the main thread. Not part of the Android API.
+	 */
+	public static void prepareMainLooper() {
+		sThreadLooper.set(sMainLooper);
+	}
+
+	public void quit() {
+	}
+
+}
@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.Parcel, for EyeGesture. Nothing is parceled.
+ */
+public final class Parcel {
+
+	private Parcel() {
+	}
+
+}
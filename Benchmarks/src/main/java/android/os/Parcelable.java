@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.Parcelable, for EyeGesture
+ */
+public interface Parcelable {
+
+	public int describeContents();
+
+	public void writeToParcel(Parcel dest, int flags);
+
+}
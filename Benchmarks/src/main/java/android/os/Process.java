@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.Process with the thread priorities
+ */
+public class Process {
+
+	public static final int THREAD_PRIORITY_DEFAULT = 0;
+	public static final int THREAD_PRIORITY_BACKGROUND = 10;
+	public static final int THREAD_PRIORITY_DISPLAY = -4;
+
+}
@@ -0,0 +1,26 @@
+package android.os;
+
+/**
+ * Stand-in for android.os.SystemClock. Uptime only moves when the benchmark
+ * moves it, so the detector sees the gaps between eye events that the
+ * benchmark plays, however fast it runs.
+ */
+public final class SystemClock {
+
+	private static volatile long sUptimeMillis;
+
+	private SystemClock() {
+	}
+
+	public static long uptimeMillis() {
+		return sUptimeMillis;
+	}
+
+	/**
+	 * Move uptime forward. Not part of the Android API.
+	 */
+	public static void advance(long millis) {
+		sUptimeMillis += millis;
+	}
+
+}
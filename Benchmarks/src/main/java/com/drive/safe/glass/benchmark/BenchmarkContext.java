@@ -0,0 +1,70 @@
+package com.drive.safe.glass.benchmark;
+
+import java.io.File;
+import java.util.HashMap;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+
+import com.google.android.glass.eye.EyeGestureManager;
+
+/**
+ * A Context with no driver profile and an eye gesture service whose
+ * detectors do nothing, that keeps the receivers registered with it so the
+ * benchmarks can deliver broadcasts to them
+ */
+class BenchmarkContext extends Context {
+
+	private final HashMap<String, BroadcastReceiver> mReceivers = new HashMap<String, BroadcastReceiver>();
+
+	private final EyeGestureManager mEyeGestureManager = new EyeGestureManager();
+
+	private final File mFilesDir;
+
+	BenchmarkContext(File filesDir) {
+		mFilesDir = filesDir;
+	}
+
+	/**
+	 * @return the receiver registered for action
+	 * @throws IllegalStateException if there isn't one
+	 */
+	BroadcastReceiver getReceiver(String action) {
+		BroadcastReceiver receiver = mReceivers.get(action);
+		if (receiver == null) {
+			throw new IllegalStateException("Nothing is registered for " + action);
+		}
+		return receiver;
+	}
+
+	@Override
+	public Object getSystemService(String name) {
+		return EyeGestureManager.SERVICE_NAME.equals(name) ? mEyeGestureManager : null;
+	}
+
+	@Override
+	public File getFilesDir() {
+		return mFilesDir;
+	}
+
+	@Override
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+		mReceivers.put(filter.getAction(0), receiver);
+		return null;
+	}
+
+	@Override
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String broadcastPermission,
+			Handler scheduler) {
+		return registerReceiver(receiver, filter);
+	}
+
+	@Override
+	public void unregisterReceiver(BroadcastReceiver receiver) {
+		mReceivers.values().remove(receiver);
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.drive.safe.glass.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.drive.safe.glass.eye.SleepDetector;
+
+/**
+ * Delivers eye gesture broadcasts to the receiver a real SleepDetector
+ * registers, so each operation runs EyeEventReceiver.onReceive, the
+ * detector's scoring and, when the sleep level reaches the threshold,
+ * SleepListener.onUserFallingAsleep
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EyeEventBenchmark {
+
+	private static final String ACTION = "com.google.glass.action.EYE_GESTURE";
+
+	private static final String[] GESTURES = { "DOUBLE_BLINK", "DOUBLE_BLINK", "DOUBLE_BLINK", "WINK" };
+
+	/**
+	 * The number of events played before they repeat; a power of two
+	 */
+	private static final int EVENTS = 4096;
+
+	/**
+	 * The gaps between events, or bursts of events. On average a little
+	 * more is scored than the sleep level degrades by, so the level climbs
+	 * to the threshold every so often.
+	 */
+	private static final int MIN_GAP_MILLIS = 2000;
+	private static final int MAX_GAP_MILLIS = 20000;
+
+	/**
+	 * Long enough for the sleep level to degrade to 0 from two winks
+	 */
+	private static final int ALERT_GAP_MILLIS = 60000;
+
+	/**
+	 * The eye events played by eyeEvent(), in bursts
+	 */
+	@State(Scope.Thread)
+	public static class Events {
+		/**
+		 * The number of events that arrive in the same millisecond
+		 */
+		@Param({ "1", "16" })
+		public int burst;
+
+		private final Intent[] mIntents = new Intent[EVENTS];
+		private final int[] mGaps = new int[EVENTS];
+		private int mNext;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			Random random = new Random(42);
+			for (int i = 0; i < EVENTS; i++) {
+				mIntents[i] = gesture(GESTURES[random.nextInt(GESTURES.length)]);
+				mGaps[i] = MIN_GAP_MILLIS + random.nextInt(MAX_GAP_MILLIS - MIN_GAP_MILLIS);
+			}
+		}
+	}
+
+	private File mFilesDir;
+	private BenchmarkContext mContext;
+	private SleepDetector mSleepDetector;
+	private BroadcastReceiver mReceiver;
+
+	private Intent mWink;
+
+	private int mAlerts;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Looper.prepareMainLooper();
+
+		// An empty files dir, so the detector uses the default profile
+		mFilesDir = File.createTempFile("eye-event-benchmark", "");
+		if (!mFilesDir.delete() || !mFilesDir.mkdir()) {
+			throw new IOException("Couldn't create " + mFilesDir);
+		}
+
+		mContext = new BenchmarkContext(mFilesDir);
+		mSleepDetector = new SleepDetector(mContext, new SleepDetector.SleepListener() {
+			@Override
+			public void onUserFallingAsleep() {
+				mAlerts++;
+			}
+		});
+		mSleepDetector.setupReceiver();
+		mReceiver = mContext.getReceiver(ACTION);
+		mWink = gesture("WINK");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mSleepDetector.removeReceiver();
+		mFilesDir.delete();
+
+		if (mAlerts == 0) {
+			throw new IllegalStateException("No event reached onUserFallingAsleep");
+		}
+	}
+
+	/**
+	 * One eye event, in bursts of Events.burst events
+	 */
+	@Benchmark
+	public void eyeEvent(Events events) {
+		final int i = events.mNext++ & (EVENTS - 1);
+		if (i % events.burst == 0) {
+			SystemClock.advance(events.mGaps[i]);
+		}
+		mReceiver.onReceive(mContext, events.mIntents[i]);
+	}
+
+	/**
+	 * Two winks after a quiet spell: the first one is scored, the second one
+	 * reaches onUserFallingAsleep
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void alert() {
+		SystemClock.advance(ALERT_GAP_MILLIS);
+		mReceiver.onReceive(mContext, mWink);
+		mReceiver.onReceive(mContext, mWink);
+	}
+
+	private static Intent gesture(String gesture) {
+		return new Intent(ACTION).putExtra("gesture", gesture);
+	}
+
+}
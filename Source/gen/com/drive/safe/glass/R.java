@@ -37,10 +37,14 @@ public final class R {
     }
     public static final class string {
         public static final int app_name=0x7f050000;
+        public static final int footnote_history_first_alert=0x7f050009;
+        public static final int footnote_session_summary=0x7f050007;
         public static final int menu_get_directions=0x7f050004;
         public static final int menu_stop=0x7f050003;
         public static final int speech_wake_up=0x7f050002;
+        public static final int text_history_trend=0x7f050008;
         public static final int text_keeping_you_awake=0x7f050005;
+        public static final int text_session_summary=0x7f050006;
         public static final int voice_keep_me_awake=0x7f050001;
     }
     public static final class xml {
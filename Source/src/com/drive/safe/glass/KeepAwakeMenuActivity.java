@@ -1,47 +1,42 @@
 package com.drive.safe.glass;
 
 import android.app.Activity;
-import android.content.ComponentName;
 import android.content.Intent;
-import android.content.ServiceConnection;
 import android.os.Bundle;
-import android.os.IBinder;
+import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 
+import com.drive.safe.glass.metrics.MetricsRegistry;
+
 /**
  * Activity showing the options menu.
  */
 public class KeepAwakeMenuActivity extends Activity {
 	private static final String TAG = "MenuActivity";
 
+	/**
+	 * The System.nanoTime() the menu was asked for at, ie. by an alert
+	 */
+	public static final String EXTRA_REQUEST_NANOS = "com.drive.safe.glass.extra.REQUEST_NANOS";
 
-	private KeepAwakeService.KeepAwakeBinder mServiceBinder;
+	/**
+	 * True once an option that stops KeepAwakeService has been chosen
+	 */
+	private boolean mStopping = false;
 
-	private ServiceConnection mServiceConn = new ServiceConnection(){
-		@Override
-		public void onServiceConnected(ComponentName name, IBinder service){
-			if(service instanceof KeepAwakeService.KeepAwakeBinder){
-				mServiceBinder = (KeepAwakeService.KeepAwakeBinder) service;
-			}
-			
-			unbindService(this);
-		}
+	private long mCreateNanos;
+	private long mRequestNanos;
+	private boolean mMenuShown = false;
 
-		@Override
-		public void onServiceDisconnected(ComponentName name){
-			//Do nothing
-		}
-	};
-	
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 
-		//Bind the service to get access to the getDirectionsToRestArea method
-		bindService(new Intent(this, KeepAwakeService.class), mServiceConn, 0);
+		mCreateNanos = System.nanoTime();
+		mRequestNanos = getIntent().getLongExtra(EXTRA_REQUEST_NANOS, 0);
 	}
 
 	@Override
@@ -57,19 +52,42 @@ public class KeepAwakeMenuActivity extends Activity {
 		return true;
 	}
 
+	@Override
+	public boolean onMenuOpened(int featureId, Menu menu) {
+		if (!mMenuShown) {
+			mMenuShown = true;
+
+			final long now = System.nanoTime();
+			MetricsRegistry metrics = MetricsRegistry.getInstance();
+			metrics.histogram("menu.start_to_visible_nanos").record(now - mCreateNanos);
+
+			if (mRequestNanos != 0) {
+				metrics.histogram("menu.request_to_visible_nanos").record(now - mRequestNanos);
+			}
+
+			if (Log.isLoggable(TAG, Log.DEBUG)) {
+				Log.d(TAG, "Menu visible " + (now - mCreateNanos) / 1000000 + "ms after start");
+			}
+		}
+
+		return super.onMenuOpened(featureId, menu);
+	}
+
 	@Override
 	public boolean onOptionsItemSelected(MenuItem item) {
 		// Handle item selection.
 		switch (item.getItemId()) {
 		case R.id.directions:
 			Log.d(TAG, "Directions");
-			if(mServiceBinder != null){
-				mServiceBinder.getDirectionsToRestArea();
-			}
+			mStopping = true;
+			// The service handles this as soon as it's delivered, there's nothing to wait for
+			LocalBroadcastManager.getInstance(this).sendBroadcast(
+					new Intent(KeepAwakeService.ACTION_DIRECTIONS_TO_REST_AREA));
 			finish();
 			return true;
 		case R.id.stop:
 			Log.d(TAG, "Stopping");
+			mStopping = true;
 			stopService(new Intent(this, KeepAwakeService.class));
 			finish();
 			return true;
@@ -80,6 +98,12 @@ public class KeepAwakeMenuActivity extends Activity {
 
 	@Override
 	public void onOptionsMenuClosed(Menu menu) {
+		if(!mStopping){
+			// The user has seen the menu, so any alert has been responded to
+			LocalBroadcastManager.getInstance(this).sendBroadcast(
+					new Intent(KeepAwakeService.ACTION_ACKNOWLEDGE_ALERT));
+		}
+
 		// Nothing else to do, closing the Activity.
 		finish();
 	}
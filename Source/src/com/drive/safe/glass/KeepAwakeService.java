@@ -4,18 +4,54 @@
 
 package com.drive.safe.glass;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationManager;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.support.v4.content.LocalBroadcastManager;
 import android.speech.tts.TextToSpeech;
+import android.util.DisplayMetrics;
 import android.util.Log;
 
+import com.drive.safe.glass.PowerModeCoordinator.Mode;
+import com.drive.safe.glass.StartupPipeline.Stage;
+import com.drive.safe.glass.alert.AlertScheduler;
+import com.drive.safe.glass.audio.AlertAudio;
+import com.drive.safe.glass.config.Config;
+import com.drive.safe.glass.config.ConfigStore;
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.FusedModel;
+import com.drive.safe.glass.eye.LeakyBucketModel;
 import com.drive.safe.glass.eye.SleepDetector;
+import com.drive.safe.glass.image.ImageLoadListener;
+import com.drive.safe.glass.image.ImageLoader;
+import com.drive.safe.glass.metrics.Counter;
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
+import com.drive.safe.glass.motion.HeadMotionSensor;
+import com.drive.safe.glass.motion.HeadNodDetector;
+import com.drive.safe.glass.rest.RestAreaIndex;
+import com.drive.safe.glass.session.SessionHistory;
+import com.drive.safe.glass.session.SessionRecorder;
+import com.drive.safe.glass.session.SessionStats;
+import com.drive.safe.glass.session.SessionSummary;
 import com.drive.safe.glass.view.LiveCardDrawer;
+import com.google.android.glass.app.Card;
 import com.google.android.glass.timeline.LiveCard;
 import com.google.android.glass.timeline.LiveCard.PublishMode;
 import com.google.android.glass.timeline.TimelineManager;
@@ -23,7 +59,40 @@ import com.google.android.glass.timeline.TimelineManager;
 public class KeepAwakeService extends Service implements SleepDetector.SleepListener {
 	private static final String TAG = "KeepAwakeService";
 
-	private static final String CARD_TAG = "DriveSafe4Glass_LiveCard";
+	/**
+	 * Send this action as a local broadcast when the user has responded to an
+	 * alert
+	 */
+	public static final String ACTION_ACKNOWLEDGE_ALERT = "com.drive.safe.glass.action.ACKNOWLEDGE_ALERT";
+
+	/**
+	 * Send this action as a local broadcast to get directions to a rest area
+	 * and stop the service
+	 */
+	public static final String ACTION_DIRECTIONS_TO_REST_AREA = "com.drive.safe.glass.action.DIRECTIONS_TO_REST_AREA";
+
+	private static final String PHRASE_WAKE_UP = "wake_up";
+
+	/**
+	 * The number of days the fatigue trend shown at start covers
+	 */
+	private static final int TREND_DAYS = 7;
+
+	/**
+	 * How long the card pulses for when the driver is warned before an alert
+	 */
+	private static final long PRE_ALERT_ANIMATION_MILLIS = 2000;
+
+	/**
+	 * The images shown on the live card, decoded while the service starts
+	 */
+	private static final int[] CARD_IMAGES = { R.drawable.ic_eye_150, R.drawable.ic_warning_150 };
+
+	/**
+	 * A rest area farther than this isn't worth navigating to; the rest area
+	 * search is used instead
+	 */
+	private static final double MAX_REST_AREA_METERS = 80000;
 
 	/**
 	 * A binder that allows other parts of the application to the speech
@@ -34,46 +103,268 @@ public class KeepAwakeService extends Service implements SleepDetector.SleepList
 		 * Get directions to a rest area
 		 */
 		public void getDirectionsToRestArea() {
-			Intent directionsIntent = new Intent(Intent.ACTION_VIEW);
-			directionsIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-			directionsIntent.setData(Uri.parse("google.navigation:q=rest+area"));
-			getApplication().startActivity(directionsIntent);
-
-			// Stop KeepAwakeService now that the user is in navigation
-			stopKeepAwakeService();
+			KeepAwakeService.this.getDirectionsToRestArea();
 		}
+
 	}
 
 	private final KeepAwakeBinder mBinder = new KeepAwakeBinder();
 
+	/**
+	 * Receives the menu actions. They're local broadcasts, so unlike intents
+	 * to this exported service, no other app can silence an alert or start
+	 * directions.
+	 */
+	private final BroadcastReceiver mMenuActionReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			if (ACTION_ACKNOWLEDGE_ALERT.equals(intent.getAction())) {
+				mAlertScheduler.acknowledge();
+			} else if (ACTION_DIRECTIONS_TO_REST_AREA.equals(intent.getAction())) {
+				getDirectionsToRestArea();
+			}
+		}
+	};
+
 	private Context mContext;
 
+	private ConfigStore mConfigStore;
+	private Config mConfig;
+
+	/**
+	 * The speech engine, or null while Glass is off the head
+	 */
 	private TextToSpeech mTTS;
 
+	/**
+	 * Counts the engines started, so a late onInit() from one that has been
+	 * shut down is ignored
+	 */
+	private int mTTSGeneration = 0;
+
+	private AlertAudio mAlertAudio;
+
 	private SleepDetector mSleepDetector;
 
+	private File mSessionDirectory;
+	private String mSessionName;
+	private SessionRecorder mSessionRecorder;
+	private SessionStats mSessionStats;
+	private SessionHistory mSessionHistory;
+
+	private HeadMotionSensor mHeadMotionSensor;
+
+	/**
+	 * The model that scores eye gestures, inside the model that also scores
+	 * head nods if there is one
+	 */
+	private LeakyBucketModel mEyeModel;
+
 	private LiveCard mLiveCard;
 	private TimelineManager mTimeline;
 
 	private LiveCardDrawer mLiveCardDrawer;
 
+	private StartupPipeline mStartupPipeline;
+
+	/**
+	 * The number of card images still being decoded
+	 */
+	private int mImagesRemaining;
+	private boolean mImagesSucceeded;
+
+	/**
+	 * True if the user fell asleep before the TextToSpeech engine was ready
+	 */
+	private boolean mSpeakWhenReady = false;
+	private float mSpeakWhenReadyVolume;
+
+	private AlertScheduler mAlertScheduler;
+
+	private PowerModeCoordinator mPowerModeCoordinator;
+
+	/**
+	 * The offline rest areas, or null if there is no index
+	 */
+	private RestAreaIndex mRestAreaIndex;
+
+	private boolean mDestroyed = false;
+
+	private final Handler mHandler = new Handler();
+
+	private final Counter mSpokenAlerts = MetricsRegistry.getInstance().counter("alert.spoken");
+	private final Counter mMenuAlerts = MetricsRegistry.getInstance().counter("alert.menus");
+	private final Histogram mTrendQueryTime = MetricsRegistry.getInstance().histogram("history.query_nanos");
+
+	private final Runnable mAlertTickRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mAlertScheduler.tick();
+
+			if (mAlertScheduler.getState() != AlertScheduler.State.NORMAL) {
+				mHandler.postDelayed(this, AlertScheduler.TICK_MILLIS);
+			}
+		}
+	};
+
+	private final AlertScheduler.AlertActions mAlertActions = new AlertScheduler.AlertActions() {
+		@Override
+		public void speak(float volume) {
+			mSpokenAlerts.increment();
+			mSessionStats.recordSpokenAlert();
+			mLiveCardDrawer.startAlertAnimation(LiveCardDrawer.DEFAULT_ALERT_ANIMATION_MILLIS);
+
+			if (mTTS == null) {
+				// Off the head, nobody would hear it
+				return;
+			}
+
+			if (mStartupPipeline.hasSucceeded(Stage.TTS)) {
+				speakWakeUp(volume);
+			} else if (!mStartupPipeline.isFinished(Stage.TTS)) {
+				// Speak as soon as the engine is ready, this alert matters most
+				mSpeakWhenReady = true;
+				mSpeakWhenReadyVolume = volume;
+			}
+		}
+
+		@Override
+		public void showMenu() {
+			mMenuAlerts.increment();
+
+			Intent menuIntent = new Intent(mContext, KeepAwakeMenuActivity.class);
+			menuIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+			menuIntent.putExtra(KeepAwakeMenuActivity.EXTRA_REQUEST_NANOS, System.nanoTime());
+
+			getApplication().startActivity(menuIntent);
+		}
+
+		@Override
+		public void onStateChanged(AlertScheduler.State state) {
+			Log.i(TAG, "Alert state: " + state);
+
+			mHandler.removeCallbacks(mAlertTickRunnable);
+			if (state == AlertScheduler.State.NORMAL) {
+				mLiveCardDrawer.stopAlertAnimation();
+				mSleepDetector.resetSleepLevel();
+			} else {
+				mHandler.postDelayed(mAlertTickRunnable, AlertScheduler.TICK_MILLIS);
+			}
+		}
+	};
+
+	private final ConfigStore.ConfigListener mConfigListener = new ConfigStore.ConfigListener() {
+		@Override
+		public void onConfigChanged(Config config) {
+			Config previous = mConfig;
+			mConfig = config;
+			Log.i(TAG, "Config reloaded: " + config);
+
+			mSleepDetector.setReceiverPriority(config.getReceiverPriority());
+			mSleepDetector.setPreAlertHorizon(config.getPreAlertHorizonMillis());
+
+			if (!config.getDetectorProfile().equals(previous.getDetectorProfile())) {
+				// Keeps the sleep level, and the model's clock
+				SleepDetector.loadDriverProfile(mContext, config.getDetectorProfile()).applyTo(mEyeModel);
+			}
+
+			// The card tag and navigation query are read when they're used
+		}
+	};
+
+	private final SleepDetector.PreAlertListener mPreAlertListener = new SleepDetector.PreAlertListener() {
+		@Override
+		public void onPreAlert(long millisToThreshold) {
+			Log.i(TAG, "Falling asleep in about " + millisToThreshold + "ms");
+
+			// A short pulse of the card; the alerts themselves take over if it's too late
+			if (mAlertScheduler.getState() == AlertScheduler.State.NORMAL) {
+				mLiveCardDrawer.startAlertAnimation(PRE_ALERT_ANIMATION_MILLIS);
+			}
+		}
+	};
+
+	private final SleepDetector.WearListener mWearListener = new SleepDetector.WearListener() {
+		@Override
+		public void onDon() {
+			mPowerModeCoordinator.setMode(Mode.ACTIVE);
+		}
+
+		@Override
+		public void onDoff() {
+			mPowerModeCoordinator.setMode(Mode.IDLE);
+		}
+	};
+
 	@Override
 	public void onCreate() {
 		super.onCreate();
 		mContext = this;
 
+		// One small memory-mapped read; everything below may depend on it
+		mConfigStore = new ConfigStore(new File(getFilesDir(), ConfigStore.FILE_NAME));
+		mConfig = mConfigStore.reload();
+
+		mStartupPipeline = new StartupPipeline();
+
+		// Start the slow stages first, so they run while the card is inflated
+		startSpeech();
+
+		prefetchCardImages();
+
+		mStartupPipeline.begin(Stage.LAYOUT);
 		mTimeline = TimelineManager.from(mContext);
 		mLiveCardDrawer = new LiveCardDrawer(mContext);
+		mLiveCardDrawer.setRenderLoopEnabled(true);
+		// Show the metrics on the card with: adb shell setprop log.tag.KeepAwakeService DEBUG
+		mLiveCardDrawer.setDiagnosticsEnabled(Log.isLoggable(TAG, Log.DEBUG));
+		mStartupPipeline.finish(Stage.LAYOUT, true);
 
-		mTTS = new TextToSpeech(mContext, new TextToSpeech.OnInitListener() {
-			@Override
-			public void onInit(int status) {
-				// Nothing to do here
-			}
-		});
+		mAlertScheduler = new AlertScheduler(SleepDetector.UPTIME, mAlertActions);
+
+		mHeadMotionSensor = new HeadMotionSensor(mContext, new HeadNodDetector(),
+				new HeadMotionSensor.HeadNodListener() {
+					@Override
+					public void onHeadNod(long uptimeMillis) {
+						mSleepDetector.onHeadNod(uptimeMillis);
+					}
+				});
+
+		mSleepDetector = new SleepDetector(mContext, this, createDrowsinessModel());
+		mSleepDetector.setReceiverPriority(mConfig.getReceiverPriority());
+		mSleepDetector.setPreAlertHorizon(mConfig.getPreAlertHorizonMillis());
+		mSleepDetector.setPreAlertListener(mPreAlertListener);
 
-		mSleepDetector = new SleepDetector(mContext, this);
-		mSleepDetector.setupReceiver();
+		final long sessionStart = System.currentTimeMillis();
+		mSessionDirectory = new File(getFilesDir(), "sessions");
+		mSessionName = "session-" + sessionStart;
+		mSessionStats = new SessionStats(sessionStart);
+		mSleepDetector.setSessionStats(mSessionStats);
+
+		mSessionHistory = new SessionHistory(new File(getFilesDir(), SessionHistory.DIRECTORY_NAME));
+		publishTrend(sessionStart);
+
+		SessionRecorder.deleteOldSessions(mSessionDirectory, SessionRecorder.DEFAULT_KEPT_SESSIONS - 1);
+		try {
+			mSessionRecorder = new SessionRecorder(mSessionDirectory, mSessionName,
+					SessionRecorder.DEFAULT_RECORDS_PER_SEGMENT);
+			mSleepDetector.setSessionRecorder(mSessionRecorder);
+		} catch (IOException e) {
+			Log.w(TAG, "Not recording this session", e);
+		}
+
+		mSleepDetector.setupReceiver(true);
+		mHeadMotionSensor.start();
+
+		setupPowerModes();
+
+		loadRestAreaIndex();
+
+		mConfigStore.startWatching(mConfigListener);
+
+		IntentFilter menuActionFilter = new IntentFilter(ACTION_ACKNOWLEDGE_ALERT);
+		menuActionFilter.addAction(ACTION_DIRECTIONS_TO_REST_AREA);
+		LocalBroadcastManager.getInstance(this).registerReceiver(mMenuActionReceiver, menuActionFilter);
 	}
 
 	@Override
@@ -86,7 +377,7 @@ public class KeepAwakeService extends Service implements SleepDetector.SleepList
 		if (mLiveCard == null) {
 			// Create the live card and publish it
 
-			mLiveCard = mTimeline.createLiveCard(CARD_TAG);
+			mLiveCard = mTimeline.createLiveCard(mConfig.getCardTag());
 
 			// Setup the drawing of the card
 			mLiveCard.setDirectRenderingEnabled(true);
@@ -114,12 +405,225 @@ public class KeepAwakeService extends Service implements SleepDetector.SleepList
 			mLiveCard.unpublish();
 			mLiveCard = null;
 		}
+		mLiveCardDrawer.release();
+
+		mConfigStore.stopWatching();
+		LocalBroadcastManager.getInstance(this).unregisterReceiver(mMenuActionReceiver);
 
 		mSleepDetector.removeReceiver();
+		mHeadMotionSensor.release();
+
+		if (mSessionRecorder != null) {
+			mSleepDetector.setSessionRecorder(null);
+			// Waits for a record in progress on the detection thread
+			mSessionRecorder.close();
+		}
+
+		mSleepDetector.setSessionStats(null);
+		publishSessionSummary(mSessionStats.getSummary(mSleepDetector.getModelTime(),
+				mSleepDetector.getSleepLevel()));
+
+		mHandler.removeCallbacks(mAlertTickRunnable);
+
+		Log.i(TAG, "Time active: " + mPowerModeCoordinator.getModeMillis(Mode.ACTIVE) + "ms, idle: "
+				+ mPowerModeCoordinator.getModeMillis(Mode.IDLE) + "ms");
+
+		releaseSpeech();
+
+		mDestroyed = true;
+		closeRestAreaIndex(mRestAreaIndex);
 		
 		super.onDestroy();
 	}
 
+	/**
+	 * Get directions to a rest area
+	 */
+	private void getDirectionsToRestArea() {
+		Intent directionsIntent = new Intent(Intent.ACTION_VIEW);
+		directionsIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+		directionsIntent.setData(Uri.parse("google.navigation:q=" + findRestArea()));
+		getApplication().startActivity(directionsIntent);
+
+		// Stop KeepAwakeService now that the user is in navigation
+		stopKeepAwakeService();
+	}
+
+	/**
+	 * @return the coordinates of the nearest rest area to the last known
+	 *         location, or a search for rest areas if there isn't one within
+	 *         MAX_REST_AREA_METERS
+	 */
+	private String findRestArea() {
+		if (mRestAreaIndex == null) {
+			return mConfig.getNavigationQuery();
+		}
+
+		Location location = getLastKnownLocation();
+		if (location == null) {
+			return mConfig.getNavigationQuery();
+		}
+
+		int[] nearest = new int[1];
+		if (mRestAreaIndex.findNearest(location.getLatitude(), location.getLongitude(), nearest) == 0
+				|| mRestAreaIndex.getDistanceMeters(nearest[0], location.getLatitude(),
+						location.getLongitude()) > MAX_REST_AREA_METERS) {
+			return mConfig.getNavigationQuery();
+		}
+
+		// Double.toString may use scientific notation, which navigation can't parse
+		return String.format(Locale.US, "%.6f,%.6f", mRestAreaIndex.getLatitude(nearest[0]),
+				mRestAreaIndex.getLongitude(nearest[0]));
+	}
+
+	/**
+	 * Install the rest area index bundled in the assets, if it's newer than
+	 * the installed one, and open it. The copy is done off the main thread.
+	 */
+	private void loadRestAreaIndex() {
+		final File file = new File(getFilesDir(), RestAreaIndex.FILE_NAME);
+
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				RestAreaIndex index = null;
+				try {
+					installRestAreaIndex(file);
+					// Only maps the file, the rest areas are paged in by the first lookup
+					index = RestAreaIndex.open(file);
+				} catch (IOException e) {
+					Log.w(TAG, "Couldn't open the rest area index", e);
+				}
+
+				final RestAreaIndex opened = index;
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (mDestroyed) {
+							closeRestAreaIndex(opened);
+						} else {
+							mRestAreaIndex = opened;
+						}
+					}
+				});
+			}
+		}, "RestAreaIndex").start();
+	}
+
+	/**
+	 * Copy the bundled index into place on the first run, and again whenever
+	 * the app has been updated since it was copied
+	 */
+	private void installRestAreaIndex(File file) throws IOException {
+		long updated;
+		try {
+			updated = getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+		} catch (PackageManager.NameNotFoundException e) {
+			updated = 0;
+		}
+		if (file.isFile() && file.lastModified() >= updated) {
+			return;
+		}
+
+		InputStream in;
+		try {
+			in = getAssets().open(RestAreaIndex.FILE_NAME);
+		} catch (FileNotFoundException e) {
+			// This build doesn't bundle rest areas
+			return;
+		}
+
+		RestAreaIndex.install(in, file);
+		Log.i(TAG, "Installed the rest area index");
+	}
+
+	private void closeRestAreaIndex(RestAreaIndex index) {
+		if (index == null) {
+			return;
+		}
+
+		try {
+			index.close();
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't close the rest area index", e);
+		}
+	}
+
+	/**
+	 * @return the newest location any provider knows, or null
+	 */
+	private Location getLastKnownLocation() {
+		LocationManager locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+
+		Location newest = null;
+		for (String provider : locationManager.getProviders(true)) {
+			Location location = locationManager.getLastKnownLocation(provider);
+			if (location != null && (newest == null || location.getTime() > newest.getTime())) {
+				newest = location;
+			}
+		}
+		return newest;
+	}
+
+	/**
+	 * Save the summary of the drive and show it on the timeline
+	 */
+	private void publishSessionSummary(SessionSummary summary) {
+		Log.i(TAG, "Session summary: " + summary);
+
+		try {
+			if (mSessionDirectory.isDirectory() || mSessionDirectory.mkdirs()) {
+				SessionSummary.write(SessionSummary.getFile(mSessionDirectory, mSessionName), summary);
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't save the session summary", e);
+		}
+
+		if (summary.eventCount == 0) {
+			return;
+		}
+
+		try {
+			mSessionHistory.append(summary);
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't add the session to the history", e);
+		}
+
+		Card card = new Card(mContext);
+		card.setText(getString(R.string.text_session_summary, summary.alertCount,
+				summary.durationMillis / 60000, Math.round(summary.getFractionAboveThreshold() * 100)));
+		card.setFootnote(R.string.footnote_session_summary);
+		mTimeline.insert(card);
+	}
+
+	/**
+	 * Show the fatigue trend of the last few days on the timeline
+	 */
+	private void publishTrend(long now) {
+		SessionHistory.Trend trend;
+		try {
+			final long start = System.nanoTime();
+			trend = mSessionHistory.getTrend(now, TREND_DAYS);
+			mTrendQueryTime.record(System.nanoTime() - start);
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't read the session history", e);
+			return;
+		}
+
+		Log.i(TAG, "Trend: " + trend);
+		if (trend.sessionCount == 0) {
+			return;
+		}
+
+		Card card = new Card(mContext);
+		card.setText(getString(R.string.text_history_trend, trend.getAlertsPerHour(), TREND_DAYS));
+		if (trend.medianMillisToFirstAlert >= 0) {
+			card.setFootnote(getString(R.string.footnote_history_first_alert,
+					trend.medianMillisToFirstAlert / 60000));
+		}
+		mTimeline.insert(card);
+	}
+
 	/**
 	 * Stops the KeepAwakeService (for all intensive purposes, stops the entire
 	 * application)
@@ -129,16 +633,195 @@ public class KeepAwakeService extends Service implements SleepDetector.SleepList
 		stopService(new Intent(mContext, KeepAwakeService.class));
 	}
 
+	/**
+	 * @return the driver's model, or one with the configured constants if the
+	 *         driver has no profile, also scoring head nods if there are
+	 *         sensors to detect them with
+	 */
+	private DrowsinessModel createDrowsinessModel() {
+		mEyeModel = SleepDetector.loadDriverModel(mContext, mConfig.getDetectorProfile());
+		DrowsinessModel model = mEyeModel;
+		if (mHeadMotionSensor.isSupported()) {
+			model = new FusedModel(model, SleepDetector.UPTIME);
+		}
+		return model;
+	}
+
+	/**
+	 * Suspend detection, drawing and speech while Glass is off the head. The
+	 * caches are kept, so everything is ready again as soon as it's put back on.
+	 */
+	private void setupPowerModes() {
+		mPowerModeCoordinator = new PowerModeCoordinator(SleepDetector.UPTIME);
+
+		mPowerModeCoordinator.addParticipant(new PowerModeCoordinator.Participant() {
+			@Override
+			public void onIdle() {
+				// Also freezes the sleep level
+				mSleepDetector.pause();
+				mHeadMotionSensor.stop();
+			}
+
+			@Override
+			public void onActive() {
+				mSleepDetector.resume();
+				mHeadMotionSensor.start();
+			}
+		});
+
+		mPowerModeCoordinator.addParticipant(new PowerModeCoordinator.Participant() {
+			@Override
+			public void onIdle() {
+				mLiveCardDrawer.setSuspended(true);
+			}
+
+			@Override
+			public void onActive() {
+				mLiveCardDrawer.setSuspended(false);
+			}
+		});
+
+		mPowerModeCoordinator.addParticipant(new PowerModeCoordinator.Participant() {
+			@Override
+			public void onIdle() {
+				// Nobody can hear it, so give back the engine and the cached audio
+				releaseSpeech();
+			}
+
+			@Override
+			public void onActive() {
+				// Restarts the TTS and SPEECH_WARMUP stages, which log how long they take
+				startSpeech();
+			}
+		});
+
+		mPowerModeCoordinator.addParticipant(new PowerModeCoordinator.Participant() {
+			@Override
+			public void onIdle() {
+				mHandler.removeCallbacks(mAlertTickRunnable);
+			}
+
+			@Override
+			public void onActive() {
+				if (mAlertScheduler.getState() != AlertScheduler.State.NORMAL) {
+					mHandler.postDelayed(mAlertTickRunnable, AlertScheduler.TICK_MILLIS);
+				}
+			}
+		});
+
+		mSleepDetector.setWearListener(mWearListener);
+	}
+
+	/**
+	 * Decode the card images into the cache in the background
+	 */
+	private void prefetchCardImages() {
+		mStartupPipeline.begin(Stage.IMAGES);
+
+		// LiveCardView decodes for the whole screen until it has been laid out
+		DisplayMetrics metrics = getResources().getDisplayMetrics();
+
+		mImagesRemaining = CARD_IMAGES.length;
+		mImagesSucceeded = true;
+		for (int image : CARD_IMAGES) {
+			ImageLoader.getInstance().prefetch(getResources(), image, metrics.widthPixels,
+					metrics.heightPixels, new ImageLoadListener() {
+						@Override
+						public void onImageLoad(boolean succeeded) {
+							mImagesSucceeded &= succeeded;
+							if (--mImagesRemaining == 0) {
+								mStartupPipeline.finish(Stage.IMAGES, mImagesSucceeded);
+							}
+						}
+					});
+		}
+	}
+
+	/**
+	 * Start the TextToSpeech engine, then warm up the wake up speech
+	 */
+	private void startSpeech() {
+		if (mTTS != null) {
+			return;
+		}
+
+		final int generation = ++mTTSGeneration;
+
+		mStartupPipeline.begin(Stage.TTS);
+		mTTS = new TextToSpeech(mContext, new TextToSpeech.OnInitListener() {
+			@Override
+			public void onInit(int status) {
+				if (generation != mTTSGeneration || mDestroyed) {
+					// This engine has already been shut down
+					return;
+				}
+
+				boolean succeeded = status == TextToSpeech.SUCCESS;
+				mStartupPipeline.finish(Stage.TTS, succeeded);
+
+				if (succeeded) {
+					warmUpSpeech();
+
+					if (mSpeakWhenReady) {
+						mSpeakWhenReady = false;
+						speakWakeUp(mSpeakWhenReadyVolume);
+					}
+				} else {
+					// There's nothing to warm up; it takes no time and fails
+					mStartupPipeline.begin(Stage.SPEECH_WARMUP);
+					mStartupPipeline.finish(Stage.SPEECH_WARMUP, false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Shut down the TextToSpeech engine and release the cached speech
+	 */
+	private void releaseSpeech() {
+		if (mTTS == null) {
+			return;
+		}
+
+		// Ignore the engine if it's still initializing
+		mTTSGeneration++;
+		mSpeakWhenReady = false;
+
+		if (mAlertAudio != null) {
+			mAlertAudio.release();
+			mAlertAudio = null;
+		}
+		mTTS.shutdown();
+		mTTS = null;
+	}
+
+	/**
+	 * Synthesize the wake up speech once and cache its audio, so the first
+	 * alert doesn't wait for the engine
+	 */
+	private void warmUpSpeech() {
+		mStartupPipeline.begin(Stage.SPEECH_WARMUP);
+
+		mAlertAudio = new AlertAudio(mTTS, getCacheDir());
+		mAlertAudio.prepare(PHRASE_WAKE_UP, getString(R.string.speech_wake_up),
+				new AlertAudio.PrepareListener() {
+					@Override
+					public void onPrepared(String phrase, boolean succeeded) {
+						mStartupPipeline.finish(Stage.SPEECH_WARMUP, succeeded);
+					}
+				});
+	}
+
+	private void speakWakeUp(float volume) {
+		mAlertAudio.play(PHRASE_WAKE_UP, volume);
+	}
+
 	@Override
 	public void onUserFallingAsleep() {
 		Log.i(TAG, "User is falling asleep");
-		
-		mTTS.speak(getString(R.string.speech_wake_up), TextToSpeech.QUEUE_FLUSH, null);
-		
-		Intent menuIntent = new Intent(mContext, KeepAwakeMenuActivity.class);
-		menuIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-		
-		getApplication().startActivity(menuIntent);
+
+		// The scheduler debounces repeated crossings and rate limits the alerts
+		mAlertScheduler.onFallingAsleep();
 	}
 
 }
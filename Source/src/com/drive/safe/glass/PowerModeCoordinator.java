@@ -0,0 +1,111 @@
+package com.drive.safe.glass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * Moves the parts of the app between an active mode, while Glass is worn,
+ * and an idle mode, while it's off the head. Each part registers a
+ * Participant that suspends its work when going idle and resumes it,
+ * without throwing away its caches, when going active again.
+ *
+ * The time spent in each mode is tracked so the savings can be reported.
+ * Only use this from the main thread.
+ */
+public class PowerModeCoordinator {
+
+	public static enum Mode {
+		/** Glass is worn; detect, draw and speak */
+		ACTIVE,
+		/** Glass is off the head; do as little as possible */
+		IDLE
+	}
+
+	/**
+	 * A part of the app that does less while idle
+	 */
+	public static interface Participant {
+		public void onIdle();
+
+		public void onActive();
+	}
+
+	private final SleepScorer.TimeSource mTimeSource;
+
+	private final List<Participant> mParticipants = new ArrayList<Participant>();
+
+	private Mode mMode = Mode.ACTIVE;
+	private long mModeStart;
+
+	private final long[] mModeMillis = new long[Mode.values().length];
+
+	private int mTransitions = 0;
+
+	/**
+	 * @param timeSource the clock the time in each mode is measured with
+	 */
+	public PowerModeCoordinator(SleepScorer.TimeSource timeSource) {
+		mTimeSource = timeSource;
+		mModeStart = timeSource.uptimeMillis();
+	}
+
+	/**
+	 * @param participant suspended and resumed along with the mode, in the
+	 *        order participants were added when resuming and the reverse order
+	 *        when suspending
+	 */
+	public void addParticipant(Participant participant) {
+		mParticipants.add(participant);
+	}
+
+	/**
+	 * Switch modes. Does nothing if already in the mode.
+	 */
+	public void setMode(Mode mode) {
+		if (mode == mMode) {
+			return;
+		}
+
+		final long now = mTimeSource.uptimeMillis();
+		mModeMillis[mMode.ordinal()] += now - mModeStart;
+		mModeStart = now;
+		mMode = mode;
+		mTransitions++;
+
+		if (mode == Mode.IDLE) {
+			for (int i = mParticipants.size() - 1; i >= 0; i--) {
+				mParticipants.get(i).onIdle();
+			}
+		} else {
+			for (int i = 0; i < mParticipants.size(); i++) {
+				mParticipants.get(i).onActive();
+			}
+		}
+	}
+
+	public Mode getMode() {
+		return mMode;
+	}
+
+	/**
+	 * @return the total time spent in a mode, including the time so far in the
+	 *         current mode
+	 */
+	public long getModeMillis(Mode mode) {
+		long millis = mModeMillis[mode.ordinal()];
+		if (mode == mMode) {
+			millis += mTimeSource.uptimeMillis() - mModeStart;
+		}
+		return millis;
+	}
+
+	/**
+	 * @return the number of times the mode has changed
+	 */
+	public int getTransitionCount() {
+		return mTransitions;
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.drive.safe.glass;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Tracks the stages that have to finish before the app can protect the
+ * user, and how long each of them took. The stages run in parallel; once
+ * every stage has finished the ReadyListener is called on the main thread.
+ */
+public class StartupPipeline {
+	private static final String TAG = "StartupPipeline";
+
+	/**
+	 * The stages of starting up
+	 */
+	public static enum Stage {
+		/** Inflating the live card layout */
+		LAYOUT,
+		/** Decoding the card images */
+		IMAGES,
+		/** Initializing the TextToSpeech engine */
+		TTS,
+		/** Synthesizing and caching the wake up speech audio */
+		SPEECH_WARMUP
+	}
+
+	/**
+	 * An interface for a listener to know when startup is done
+	 */
+	public static interface ReadyListener {
+		public void onReady(StartupPipeline pipeline);
+	}
+
+	private static final int STAGE_COUNT = Stage.values().length;
+
+	private final long mStartNanos = System.nanoTime();
+
+	private final long[] mStageStartNanos = new long[STAGE_COUNT];
+	private final long[] mStageEndNanos = new long[STAGE_COUNT];
+	private final boolean[] mStageSucceeded = new boolean[STAGE_COUNT];
+
+	private int mRemaining = STAGE_COUNT;
+	private long mReadyNanos = 0;
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	private ReadyListener mReadyListener;
+
+	private final Runnable mReadyRunnable = new Runnable() {
+		@Override
+		public void run() {
+			ReadyListener listener;
+			synchronized (StartupPipeline.this) {
+				listener = mReadyListener;
+			}
+
+			if (listener != null) {
+				listener.onReady(StartupPipeline.this);
+			}
+		}
+	};
+
+	/**
+	 * @param listener called on the main thread once every stage has finished
+	 */
+	public synchronized void setReadyListener(ReadyListener listener) {
+		mReadyListener = listener;
+	}
+
+	/**
+	 * Mark a stage as started. A stage that had finished is started over, ie.
+	 * once what it prepared has been released, and the pipeline isn't ready
+	 * until it finishes again.
+	 */
+	public synchronized void begin(Stage stage) {
+		int index = stage.ordinal();
+		if (mStageEndNanos[index] != 0) {
+			mStageEndNanos[index] = 0;
+			mStageSucceeded[index] = false;
+			mRemaining++;
+		}
+		mStageStartNanos[index] = System.nanoTime();
+	}
+
+	/**
+	 * Mark a stage as finished. May be called from any thread. A stage that
+	 * was never begun is taken to have begun now.
+	 *
+	 * @param succeeded false if the stage failed; startup goes on without it
+	 */
+	public void finish(Stage stage, boolean succeeded) {
+		boolean ready = false;
+
+		synchronized (this) {
+			int index = stage.ordinal();
+			if (mStageEndNanos[index] != 0) {
+				// Already finished
+				return;
+			}
+
+			mStageEndNanos[index] = System.nanoTime();
+			if (mStageStartNanos[index] == 0) {
+				mStageStartNanos[index] = mStageEndNanos[index];
+			}
+			mStageSucceeded[index] = succeeded;
+
+			// Only the first time counts as starting up
+			if (--mRemaining == 0 && mReadyNanos == 0) {
+				mReadyNanos = mStageEndNanos[index];
+				ready = true;
+			}
+		}
+
+		if (Log.isLoggable(TAG, Log.DEBUG)) {
+			Log.d(TAG, stage + " finished in " + getStageMillis(stage) + "ms"
+					+ (succeeded ? "" : " (failed)"));
+		}
+
+		if (ready) {
+			Log.i(TAG, "Ready in " + getTimeToReadyMillis() + "ms");
+			mMainHandler.post(mReadyRunnable);
+		}
+	}
+
+	/**
+	 * @return true once every stage has finished
+	 */
+	public synchronized boolean isReady() {
+		return mRemaining == 0;
+	}
+
+	/**
+	 * @return true once the stage has finished
+	 */
+	public synchronized boolean isFinished(Stage stage) {
+		return mStageEndNanos[stage.ordinal()] != 0;
+	}
+
+	/**
+	 * @return true if the stage finished without failing
+	 */
+	public synchronized boolean hasSucceeded(Stage stage) {
+		return mStageSucceeded[stage.ordinal()];
+	}
+
+	/**
+	 * @return how long the stage took, or -1 if it hasn't finished
+	 */
+	public synchronized long getStageMillis(Stage stage) {
+		int index = stage.ordinal();
+		if (mStageEndNanos[index] == 0) {
+			return -1;
+		}
+		return (mStageEndNanos[index] - mStageStartNanos[index]) / 1000000L;
+	}
+
+	/**
+	 * @return how long it took for every stage to finish the first time, or -1
+	 *         if they haven't
+	 */
+	public synchronized long getTimeToReadyMillis() {
+		if (mReadyNanos == 0) {
+			return -1;
+		}
+		return (mReadyNanos - mStartNanos) / 1000000L;
+	}
+
+}
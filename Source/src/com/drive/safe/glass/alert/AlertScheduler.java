@@ -0,0 +1,187 @@
+package com.drive.safe.glass.alert;
+
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * Decides what to do when the user is falling asleep. It sits between
+ * SleepDetector and the service, and moves through three states:
+ *
+ * NORMAL: nothing is happening.
+ * WARNING: the user started falling asleep. The wake up speech is played
+ * and the menu is shown, and further crossings are debounced.
+ * CRITICAL: the user hasn't responded for a while. The speech repeats on a
+ * timer, louder each time.
+ *
+ * Speech and menu launches are rate limited with token buckets. Only
+ * acknowledging the alert goes back to NORMAL, since a user whose eyes have
+ * closed produces no more eye events. All timing comes from a TimeSource, so
+ * the scheduler can run on a virtual clock.
+ */
+public class AlertScheduler {
+
+	public static enum State {
+		NORMAL, WARNING, CRITICAL
+	}
+
+	/**
+	 * What the scheduler asks for
+	 */
+	public static interface AlertActions {
+		/**
+		 * @param volume between 0 and 1
+		 */
+		public void speak(float volume);
+
+		public void showMenu();
+
+		public void onStateChanged(State state);
+	}
+
+	/**
+	 * Crossings closer together than this are treated as one
+	 */
+	public static final long DEBOUNCE_MILLIS = 3000;
+
+	/**
+	 * How long a warning goes unacknowledged before it becomes critical
+	 */
+	public static final long ESCALATE_AFTER_MILLIS = 15000;
+
+	/**
+	 * How often the speech repeats while critical
+	 */
+	public static final long CRITICAL_REPEAT_MILLIS = 5000;
+
+	/**
+	 * How often tick() should be called while not NORMAL
+	 */
+	public static final long TICK_MILLIS = 1000;
+
+	public static final float VOLUME_WARNING = 0.6f;
+	public static final float VOLUME_CRITICAL = 0.8f;
+	public static final float VOLUME_STEP = 0.1f;
+
+	private final SleepScorer.TimeSource mTimeSource;
+	private final AlertActions mActions;
+
+	private final TokenBucket mSpeechBucket;
+	private final TokenBucket mMenuBucket;
+
+	private State mState = State.NORMAL;
+	private long mStateEntered;
+	private long mLastCrossing;
+	private long mLastSpeech;
+	private float mVolume;
+
+	/**
+	 * @param timeSource the clock timing every decision
+	 * @param actions what to do when alerting
+	 */
+	public AlertScheduler(SleepScorer.TimeSource timeSource, AlertActions actions) {
+		mTimeSource = timeSource;
+		mActions = actions;
+
+		// At most 2 speeches in a burst, then one every 5 seconds
+		mSpeechBucket = new TokenBucket(2, CRITICAL_REPEAT_MILLIS, timeSource);
+		// At most one menu launch every 30 seconds
+		mMenuBucket = new TokenBucket(1, 30000, timeSource);
+	}
+
+	/**
+	 * The sleep level crossed the threshold
+	 */
+	public synchronized void onFallingAsleep() {
+		final long now = mTimeSource.uptimeMillis();
+
+		if (mState != State.NORMAL && now - mLastCrossing < DEBOUNCE_MILLIS) {
+			// Still the same crossing
+			mLastCrossing = now;
+			return;
+		}
+		mLastCrossing = now;
+
+		switch (mState) {
+		case NORMAL:
+			setState(State.WARNING, now);
+			mVolume = VOLUME_WARNING;
+			speak(now);
+			showMenu();
+			break;
+		case WARNING:
+			// Another crossing after the debounce, remind the user
+			speak(now);
+			showMenu();
+			break;
+		case CRITICAL:
+			// The timer is already repeating the speech
+			break;
+		}
+	}
+
+	/**
+	 * Move the timers along. Should be called every TICK_MILLIS while the
+	 * state isn't NORMAL.
+	 */
+	public synchronized void tick() {
+		final long now = mTimeSource.uptimeMillis();
+
+		switch (mState) {
+		case NORMAL:
+			break;
+		case WARNING:
+			if (now - mStateEntered >= ESCALATE_AFTER_MILLIS) {
+				setState(State.CRITICAL, now);
+				mVolume = VOLUME_CRITICAL;
+				speak(now);
+				showMenu();
+			}
+			break;
+		case CRITICAL:
+			if (now - mLastSpeech >= CRITICAL_REPEAT_MILLIS) {
+				mVolume = Math.min(1f, mVolume + VOLUME_STEP);
+				speak(now);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * The user responded to the alert
+	 */
+	public synchronized void acknowledge() {
+		if (mState != State.NORMAL) {
+			setState(State.NORMAL, mTimeSource.uptimeMillis());
+		}
+	}
+
+	public synchronized State getState() {
+		return mState;
+	}
+
+	/**
+	 * @return the volume of the latest speech
+	 */
+	public synchronized float getVolume() {
+		return mVolume;
+	}
+
+	private void setState(State state, long now) {
+		mState = state;
+		mStateEntered = now;
+		mActions.onStateChanged(state);
+	}
+
+	private void speak(long now) {
+		if (mSpeechBucket.tryAcquire()) {
+			mLastSpeech = now;
+			mActions.speak(mVolume);
+		}
+	}
+
+	private void showMenu() {
+		if (mMenuBucket.tryAcquire()) {
+			mActions.showMenu();
+		}
+	}
+
+}
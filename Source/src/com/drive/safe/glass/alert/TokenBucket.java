@@ -0,0 +1,67 @@
+package com.drive.safe.glass.alert;
+
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * A token bucket rate limiter. Tokens refill one at a time at a fixed
+ * interval, up to the capacity of the bucket.
+ */
+public class TokenBucket {
+
+	private final int mCapacity;
+	private final long mRefillMillis;
+	private final SleepScorer.TimeSource mTimeSource;
+
+	private int mTokens;
+	private long mLastRefill;
+
+	/**
+	 * @param capacity the most tokens the bucket holds; it starts full
+	 * @param refillMillis how often a token is added
+	 * @param timeSource the clock that drives the refills
+	 */
+	public TokenBucket(int capacity, long refillMillis, SleepScorer.TimeSource timeSource) {
+		mCapacity = capacity;
+		mRefillMillis = refillMillis;
+		mTimeSource = timeSource;
+
+		mTokens = capacity;
+		mLastRefill = timeSource.uptimeMillis();
+	}
+
+	/**
+	 * Take a token if one is available
+	 *
+	 * @return true if a token was taken
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+
+		if (mTokens == 0) {
+			return false;
+		}
+
+		mTokens--;
+		return true;
+	}
+
+	/**
+	 * @return the number of tokens available now
+	 */
+	public synchronized int getTokens() {
+		refill();
+		return mTokens;
+	}
+
+	private void refill() {
+		long now = mTimeSource.uptimeMillis();
+		long refills = (now - mLastRefill) / mRefillMillis;
+		if (refills <= 0) {
+			return;
+		}
+
+		mTokens = (int) Math.min(mCapacity, mTokens + refills);
+		mLastRefill = mTokens == mCapacity ? now : mLastRefill + refills * mRefillMillis;
+	}
+
+}
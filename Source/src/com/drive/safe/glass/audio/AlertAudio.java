@@ -0,0 +1,374 @@
+package com.drive.safe.glass.audio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
+
+/**
+ * Plays alert phrases with as little latency as possible.
+ *
+ * Each phrase is synthesized to a file once, its PCM is loaded into a static
+ * AudioTrack, and alerts replay that track. Until a phrase is ready, or if
+ * it can't be cached, it is spoken through TextToSpeech instead. The time
+ * from an alert being triggered to its first audio is measured for both
+ * paths.
+ */
+public class AlertAudio {
+	private static final String TAG = "AlertAudio";
+
+	private static final String UTTERANCE_PREPARE = "prepare:";
+	private static final String UTTERANCE_SPEAK = "speak:";
+
+	/**
+	 * The stream alerts are played on
+	 */
+	private static final int STREAM = AudioManager.STREAM_MUSIC;
+
+	/**
+	 * An interface for a listener to know when a phrase has been cached
+	 */
+	public static interface PrepareListener {
+		/**
+		 * @param succeeded false if the phrase will be spoken through TextToSpeech
+		 */
+		public void onPrepared(String phrase, boolean succeeded);
+	}
+
+	/**
+	 * A phrase, and its cached audio once it's ready
+	 */
+	private static class Clip {
+		final String text;
+		final PrepareListener listener;
+		volatile AudioTrack track;
+
+		Clip(String text, PrepareListener listener) {
+			this.text = text;
+			this.listener = listener;
+		}
+	}
+
+	private final TextToSpeech mTTS;
+
+	private final File mCacheDir;
+
+	private final Map<String, Clip> mClips = new HashMap<String, Clip>();
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Trigger to first audio through the cached AudioTrack
+	 */
+	private final Histogram mCachedTime = MetricsRegistry.getInstance().histogram("audio.cached_nanos");
+
+	/**
+	 * Trigger to first audio through TextToSpeech
+	 */
+	private final Histogram mSpeechTime = MetricsRegistry.getInstance().histogram("audio.speech_nanos");
+
+	private volatile long mTriggerNanos;
+
+	private final AudioTrack.OnPlaybackPositionUpdateListener mFirstAudioListener = new AudioTrack.OnPlaybackPositionUpdateListener() {
+		@Override
+		public void onMarkerReached(AudioTrack track) {
+			mCachedTime.record(System.nanoTime() - mTriggerNanos);
+		}
+
+		@Override
+		public void onPeriodicNotification(AudioTrack track) {
+			// Nothing to do here
+		}
+	};
+
+	/**
+	 * @param tts an initialized TextToSpeech engine. AlertAudio takes over its
+	 *        UtteranceProgressListener.
+	 * @param cacheDir where synthesized phrases are written
+	 */
+	public AlertAudio(TextToSpeech tts, File cacheDir) {
+		mTTS = tts;
+		mCacheDir = cacheDir;
+
+		mTTS.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+			@Override
+			public void onStart(String utteranceId) {
+				if (utteranceId.startsWith(UTTERANCE_SPEAK)) {
+					mSpeechTime.record(System.nanoTime() - mTriggerNanos);
+				}
+			}
+
+			@Override
+			public void onDone(String utteranceId) {
+				if (utteranceId.startsWith(UTTERANCE_PREPARE)) {
+					onSynthesized(utteranceId.substring(UTTERANCE_PREPARE.length()), true);
+				}
+			}
+
+			@Override
+			public void onError(String utteranceId) {
+				if (utteranceId.startsWith(UTTERANCE_PREPARE)) {
+					onSynthesized(utteranceId.substring(UTTERANCE_PREPARE.length()), false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Synthesize a phrase and cache its audio. Until it's ready, play() speaks
+	 * the phrase through TextToSpeech.
+	 *
+	 * @param phrase the name of the phrase
+	 * @param text what to say
+	 * @param listener called once the phrase is cached, may be null
+	 */
+	public void prepare(String phrase, String text, PrepareListener listener) {
+		Clip clip = new Clip(text, listener);
+		synchronized (mClips) {
+			mClips.put(phrase, clip);
+		}
+
+		HashMap<String, String> params = new HashMap<String, String>();
+		params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, UTTERANCE_PREPARE + phrase);
+
+		if (mTTS.synthesizeToFile(text, params, getFile(phrase).getAbsolutePath()) != TextToSpeech.SUCCESS) {
+			onSynthesized(phrase, false);
+		}
+	}
+
+	/**
+	 * Play a phrase
+	 *
+	 * @param phrase the name of a phrase that has been prepared
+	 * @param volume between 0 and 1
+	 */
+	public void play(String phrase, float volume) {
+		mTriggerNanos = System.nanoTime();
+
+		Clip clip;
+		synchronized (mClips) {
+			clip = mClips.get(phrase);
+		}
+		if (clip == null) {
+			Log.w(TAG, "Unknown phrase: " + phrase);
+			return;
+		}
+
+		AudioTrack track = clip.track;
+		if (track != null) {
+			// Rewind the cached audio and play it again
+			track.stop();
+			track.reloadStaticData();
+			track.setStereoVolume(volume * AudioTrack.getMaxVolume(), volume * AudioTrack.getMaxVolume());
+			track.setNotificationMarkerPosition(1);
+			track.play();
+		} else {
+			HashMap<String, String> params = new HashMap<String, String>();
+			params.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, UTTERANCE_SPEAK + phrase);
+			params.put(TextToSpeech.Engine.KEY_PARAM_VOLUME, String.valueOf(volume));
+
+			mTTS.speak(clip.text, TextToSpeech.QUEUE_FLUSH, params);
+		}
+	}
+
+	/**
+	 * Stop any phrase that's playing
+	 */
+	public void stop() {
+		synchronized (mClips) {
+			for (Clip clip : mClips.values()) {
+				AudioTrack track = clip.track;
+				if (track != null) {
+					track.stop();
+				}
+			}
+		}
+		mTTS.stop();
+	}
+
+	/**
+	 * @return true if the phrase will be played from cached audio
+	 */
+	public boolean isCached(String phrase) {
+		synchronized (mClips) {
+			Clip clip = mClips.get(phrase);
+			return clip != null && clip.track != null;
+		}
+	}
+
+	/**
+	 * Release every cached AudioTrack
+	 */
+	public void release() {
+		synchronized (mClips) {
+			for (Clip clip : mClips.values()) {
+				AudioTrack track = clip.track;
+				clip.track = null;
+				if (track != null) {
+					track.release();
+				}
+			}
+			mClips.clear();
+		}
+	}
+
+	private File getFile(String phrase) {
+		return new File(mCacheDir, "alert_" + phrase + ".wav");
+	}
+
+	/**
+	 * Load a synthesized phrase into an AudioTrack. Called on a TextToSpeech thread.
+	 */
+	private void onSynthesized(final String phrase, boolean synthesized) {
+		final Clip clip;
+		synchronized (mClips) {
+			clip = mClips.get(phrase);
+		}
+		if (clip == null) {
+			return;
+		}
+
+		AudioTrack track = null;
+		if (synthesized) {
+			try {
+				track = loadTrack(getFile(phrase));
+			} catch (IOException e) {
+				Log.w(TAG, "Couldn't load " + phrase, e);
+			}
+		}
+		clip.track = track;
+
+		final boolean succeeded = track != null;
+		if (clip.listener != null) {
+			mMainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					clip.listener.onPrepared(phrase, succeeded);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Read a PCM WAV file into a static AudioTrack
+	 */
+	private AudioTrack loadTrack(File file) throws IOException {
+		WavData wav = WavData.read(file);
+
+		int channelConfig = wav.channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+		int encoding = wav.bitsPerSample == 8 ? AudioFormat.ENCODING_PCM_8BIT : AudioFormat.ENCODING_PCM_16BIT;
+
+		AudioTrack track = new AudioTrack(STREAM, wav.sampleRate, channelConfig, encoding,
+				wav.pcm.length, AudioTrack.MODE_STATIC);
+		track.write(wav.pcm, 0, wav.pcm.length);
+
+		if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+			track.release();
+			throw new IOException("AudioTrack couldn't be initialized");
+		}
+
+		track.setPlaybackPositionUpdateListener(mFirstAudioListener, mMainHandler);
+		return track;
+	}
+
+	/**
+	 * The PCM data and format of a WAV file
+	 */
+	static class WavData {
+		int channels;
+		int sampleRate;
+		int bitsPerSample;
+		byte[] pcm;
+
+		static WavData read(File file) throws IOException {
+			InputStream in = new FileInputStream(file);
+			try {
+				byte[] header = new byte[12];
+				readFully(in, header, header.length);
+				if (!tag(header, 0).equals("RIFF") || !tag(header, 8).equals("WAVE")) {
+					throw new IOException("Not a WAV file");
+				}
+
+				WavData wav = new WavData();
+				byte[] chunkHeader = new byte[8];
+				while (true) {
+					readFully(in, chunkHeader, chunkHeader.length);
+					String id = tag(chunkHeader, 0);
+					int size = littleEndianInt(chunkHeader, 4);
+
+					if (id.equals("fmt ")) {
+						byte[] format = new byte[size];
+						readFully(in, format, size);
+						if (littleEndianShort(format, 0) != 1) {
+							throw new IOException("Not PCM");
+						}
+						wav.channels = littleEndianShort(format, 2);
+						wav.sampleRate = littleEndianInt(format, 4);
+						wav.bitsPerSample = littleEndianShort(format, 14);
+					} else if (id.equals("data")) {
+						if (wav.sampleRate == 0) {
+							throw new IOException("No format before the data");
+						}
+						// Some engines don't fill in the size of a streamed file
+						if (size <= 0 || size > file.length()) {
+							size = (int) (file.length() - 44);
+						}
+						wav.pcm = new byte[size];
+						readFully(in, wav.pcm, size);
+						return wav;
+					} else {
+						long skip = size + (size & 1);
+						while (skip > 0) {
+							long skipped = in.skip(skip);
+							if (skipped <= 0) {
+								throw new IOException("Unexpected end of file");
+							}
+							skip -= skipped;
+						}
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+			int read = 0;
+			while (read < length) {
+				int count = in.read(buffer, read, length - read);
+				if (count < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+				read += count;
+			}
+		}
+
+		private static String tag(byte[] bytes, int offset) {
+			return new String(bytes, offset, 4);
+		}
+
+		private static int littleEndianShort(byte[] bytes, int offset) {
+			return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+		}
+
+		private static int littleEndianInt(byte[] bytes, int offset) {
+			return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+					| (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.drive.safe.glass.config;
+
+import com.drive.safe.glass.eye.DriverProfile;
+import com.drive.safe.glass.eye.LevelPredictor;
+import com.drive.safe.glass.eye.SleepDetector;
+
+/**
+ * The app's tunable values. A Config never changes; a ConfigStore swaps in
+ * a new one when the file changes, so reading a value is one field read.
+ */
+public class Config {
+
+	/**
+	 * The tag of the live card
+	 */
+	public static final String DEFAULT_CARD_TAG = "DriveSafe4Glass_LiveCard";
+
+	/**
+	 * The navigation query used when there's no nearby rest area to go to
+	 */
+	public static final String DEFAULT_NAVIGATION_QUERY = "rest+area";
+
+	/**
+	 * The values used when there is no config file
+	 */
+	public static final Config DEFAULT = new Config(DriverProfile.getDefault(),
+			SleepDetector.DEFAULT_RECEIVER_PRIORITY, DEFAULT_CARD_TAG, DEFAULT_NAVIGATION_QUERY,
+			LevelPredictor.DEFAULT_HORIZON_MILLIS);
+
+	private final DriverProfile mDetectorProfile;
+	private final int mReceiverPriority;
+	private final String mCardTag;
+	private final String mNavigationQuery;
+	private final long mPreAlertHorizonMillis;
+
+	/**
+	 * @param detectorProfile the drowsiness model constants used when the
+	 *        driver has no profile of their own
+	 * @param receiverPriority the priority of the eye gesture receiver
+	 * @param cardTag the tag of the live card
+	 * @param navigationQuery the navigation query used when there's no nearby
+	 *        rest area to go to
+	 * @param preAlertHorizonMillis how long before the sleep level is
+	 *        predicted to reach the threshold to warn the driver
+	 */
+	public Config(DriverProfile detectorProfile, int receiverPriority, String cardTag, String navigationQuery,
+			long preAlertHorizonMillis) {
+		mDetectorProfile = detectorProfile;
+		mReceiverPriority = receiverPriority;
+		mCardTag = cardTag;
+		mNavigationQuery = navigationQuery;
+		mPreAlertHorizonMillis = preAlertHorizonMillis;
+	}
+
+	public DriverProfile getDetectorProfile() {
+		return mDetectorProfile;
+	}
+
+	public int getReceiverPriority() {
+		return mReceiverPriority;
+	}
+
+	public String getCardTag() {
+		return mCardTag;
+	}
+
+	public String getNavigationQuery() {
+		return mNavigationQuery;
+	}
+
+	public long getPreAlertHorizonMillis() {
+		return mPreAlertHorizonMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "detector=[" + mDetectorProfile + "] receiverPriority=" + mReceiverPriority + " cardTag="
+				+ mCardTag + " navigationQuery=" + mNavigationQuery + " preAlertHorizonMillis=" + mPreAlertHorizonMillis;
+	}
+
+}
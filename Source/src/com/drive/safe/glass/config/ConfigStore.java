@@ -0,0 +1,331 @@
+package com.drive.safe.glass.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.drive.safe.glass.eye.DriverProfile;
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
+
+/**
+ * Loads the Config from a small versioned binary file, and reloads it when
+ * the file is replaced.
+ *
+ * The file is a magic number, a version and an entry count, then each entry
+ * as a key, a type, the length of the value in bytes and the value. Ints and
+ * floats are 4 bytes, strings are UTF-8 bytes. Entries with unknown keys or
+ * types are skipped, so older versions of the app can read newer files, and
+ * missing entries keep their default values. Newer versions may add keys and
+ * types but must keep this entry layout; a different layout needs a different
+ * magic number. The file is parsed in one pass over a memory mapping.
+ *
+ * Version 1 files had no lengths, ints and floats were 4 bytes and strings
+ * were a length and UTF-8 bytes. They are still read.
+ */
+public class ConfigStore {
+	private static final String TAG = "ConfigStore";
+
+	/**
+	 * An interface for a listener to know when the config has been reloaded
+	 */
+	public static interface ConfigListener {
+		/**
+		 * Called on the main thread
+		 */
+		public void onConfigChanged(Config config);
+	}
+
+	/**
+	 * The name of the config file in the application's files directory
+	 */
+	public static final String FILE_NAME = "config.bin";
+
+	/** "DSCF" */
+	static final int MAGIC = 0x44534346;
+	static final int VERSION = 2;
+
+	/**
+	 * The version before each value had a length
+	 */
+	static final int VERSION_UNSIZED = 1;
+
+	static final int TYPE_INT = 0;
+	static final int TYPE_FLOAT = 1;
+	static final int TYPE_STRING = 2;
+
+	/*
+	 * The keys of the entries. A key is never reused for something else.
+	 */
+	static final int KEY_SLEEP_THRESHOLD = 1;
+	static final int KEY_MODIFIER_WINK = 2;
+	static final int KEY_MODIFIER_DOUBLE_BLINK = 3;
+	static final int KEY_DEGRADATION_PER_MILLISECOND = 4;
+	static final int KEY_RECEIVER_PRIORITY = 5;
+	static final int KEY_CARD_TAG = 6;
+	static final int KEY_NAVIGATION_QUERY = 7;
+	static final int KEY_PRE_ALERT_HORIZON_MILLIS = 8;
+
+	/**
+	 * The number of entries write() writes
+	 */
+	private static final int ENTRY_COUNT = 8;
+
+	/**
+	 * Loading the config is on the startup path; it should take well under
+	 * this
+	 */
+	public static final long PARSE_BUDGET_NANOS = 2000000;
+
+	private final File mFile;
+
+	private volatile Config mConfig = Config.DEFAULT;
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	private final Histogram mParseTime = MetricsRegistry.getInstance().histogram("config.parse_nanos");
+
+	private FileObserver mObserver;
+
+	private ConfigListener mListener;
+
+	private final Runnable mChangedRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (mListener != null) {
+				mListener.onConfigChanged(mConfig);
+			}
+		}
+	};
+
+	/**
+	 * @param file the config file, which doesn't have to exist
+	 */
+	public ConfigStore(File file) {
+		mFile = file;
+	}
+
+	/**
+	 * @return the current config
+	 */
+	public Config get() {
+		return mConfig;
+	}
+
+	/**
+	 * Read the file again. If it can't be read, the current config is kept.
+	 *
+	 * @return the current config
+	 */
+	public Config reload() {
+		final long start = System.nanoTime();
+		try {
+			Config config = read(mFile);
+			mConfig = config == null ? Config.DEFAULT : config;
+		} catch (IOException e) {
+			Log.w(TAG, "Keeping the current config", e);
+		}
+
+		final long elapsed = System.nanoTime() - start;
+		mParseTime.record(elapsed);
+		if (elapsed > PARSE_BUDGET_NANOS) {
+			Log.w(TAG, "Loading the config took " + elapsed / 1000 + "us");
+		}
+
+		return mConfig;
+	}
+
+	/**
+	 * Reload the config whenever the file is written or replaced
+	 *
+	 * @param listener called on the main thread after each reload
+	 */
+	public void startWatching(ConfigListener listener) {
+		mListener = listener;
+
+		if (mObserver == null) {
+			final String name = mFile.getName();
+			mObserver = new FileObserver(mFile.getParent(), FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO) {
+				@Override
+				public void onEvent(int event, String path) {
+					if (name.equals(path)) {
+						reload();
+						mMainHandler.post(mChangedRunnable);
+					}
+				}
+			};
+			mObserver.startWatching();
+		}
+	}
+
+	public void stopWatching() {
+		if (mObserver != null) {
+			mObserver.stopWatching();
+			mObserver = null;
+		}
+		mMainHandler.removeCallbacks(mChangedRunnable);
+		mListener = null;
+	}
+
+	/**
+	 * Read a config file
+	 *
+	 * @return the config, or null if the file doesn't exist
+	 * @throws IOException if the file exists but can't be read
+	 */
+	public static Config read(File file) throws IOException {
+		RandomAccessFile randomAccessFile;
+		try {
+			randomAccessFile = new RandomAccessFile(file, "r");
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+
+		try {
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					randomAccessFile.length());
+
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(file + " isn't a config file");
+			}
+			int version = buffer.getInt();
+			if (version < VERSION_UNSIZED) {
+				throw new IOException(file + " has unsupported version " + version);
+			}
+
+			Config defaults = Config.DEFAULT;
+			DriverProfile profile = defaults.getDetectorProfile();
+			float sleepThreshold = profile.sleepThreshold;
+			float modifierWink = profile.modifierWink;
+			float modifierDoubleBlink = profile.modifierDoubleBlink;
+			float degradationPerMillisecond = profile.degradationPerMillisecond;
+			int receiverPriority = defaults.getReceiverPriority();
+			String cardTag = defaults.getCardTag();
+			String navigationQuery = defaults.getNavigationQuery();
+			long preAlertHorizonMillis = defaults.getPreAlertHorizonMillis();
+
+			final int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				final int key = buffer.getInt();
+				final int type = buffer.getInt();
+
+				final int length;
+				if (version > VERSION_UNSIZED || type == TYPE_STRING) {
+					length = buffer.getInt();
+				} else if (type == TYPE_INT || type == TYPE_FLOAT) {
+					length = 4;
+				} else {
+					// Can't skip a value of an unknown size
+					throw new IOException(file + " has an entry of unknown type " + type);
+				}
+				if (length < 0 || length > buffer.remaining()) {
+					throw new IOException(file + " is truncated");
+				}
+				final int end = buffer.position() + length;
+
+				if (type == TYPE_INT && length == 4) {
+					int value = buffer.getInt();
+					if (key == KEY_RECEIVER_PRIORITY) {
+						receiverPriority = value;
+					} else if (key == KEY_PRE_ALERT_HORIZON_MILLIS) {
+						preAlertHorizonMillis = value;
+					}
+				} else if (type == TYPE_FLOAT && length == 4) {
+					float value = buffer.getFloat();
+					if (key == KEY_SLEEP_THRESHOLD) {
+						sleepThreshold = value;
+					} else if (key == KEY_MODIFIER_WINK) {
+						modifierWink = value;
+					} else if (key == KEY_MODIFIER_DOUBLE_BLINK) {
+						modifierDoubleBlink = value;
+					} else if (key == KEY_DEGRADATION_PER_MILLISECOND) {
+						degradationPerMillisecond = value;
+					}
+				} else if (type == TYPE_STRING && (key == KEY_CARD_TAG || key == KEY_NAVIGATION_QUERY)) {
+					byte[] bytes = new byte[length];
+					buffer.get(bytes);
+					if (key == KEY_CARD_TAG) {
+						cardTag = new String(bytes, "UTF-8");
+					} else {
+						navigationQuery = new String(bytes, "UTF-8");
+					}
+				}
+
+				// Skip whatever wasn't read
+				buffer.position(end);
+			}
+
+			return new Config(new DriverProfile(sleepThreshold, modifierWink, modifierDoubleBlink,
+					degradationPerMillisecond), receiverPriority, cardTag, navigationQuery,
+					preAlertHorizonMillis);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file + " is truncated");
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Write a config file, replacing it atomically
+	 */
+	public static void write(File file, Config config) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		DriverProfile profile = config.getDetectorProfile();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ENTRY_COUNT);
+			writeFloat(out, KEY_SLEEP_THRESHOLD, profile.sleepThreshold);
+			writeFloat(out, KEY_MODIFIER_WINK, profile.modifierWink);
+			writeFloat(out, KEY_MODIFIER_DOUBLE_BLINK, profile.modifierDoubleBlink);
+			writeFloat(out, KEY_DEGRADATION_PER_MILLISECOND, profile.degradationPerMillisecond);
+			writeInt(out, KEY_RECEIVER_PRIORITY, config.getReceiverPriority());
+			writeString(out, KEY_CARD_TAG, config.getCardTag());
+			writeString(out, KEY_NAVIGATION_QUERY, config.getNavigationQuery());
+			writeInt(out, KEY_PRE_ALERT_HORIZON_MILLIS, (int) config.getPreAlertHorizonMillis());
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	private static void writeInt(DataOutputStream out, int key, int value) throws IOException {
+		out.writeInt(key);
+		out.writeInt(TYPE_INT);
+		out.writeInt(4);
+		out.writeInt(value);
+	}
+
+	private static void writeFloat(DataOutputStream out, int key, float value) throws IOException {
+		out.writeInt(key);
+		out.writeInt(TYPE_FLOAT);
+		out.writeInt(4);
+		out.writeFloat(value);
+	}
+
+	private static void writeString(DataOutputStream out, int key, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(key);
+		out.writeInt(TYPE_STRING);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -0,0 +1,270 @@
+package com.drive.safe.glass.eye;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Runs drowsiness detection on its own thread. Eye gestures and head nods
+ * are put into a bounded queue in time order, drained in batches on the
+ * detection thread, and any alert hops back to the main thread only at the
+ * end.
+ *
+ * The queue is made of primitive arrays, so queueing an event doesn't
+ * allocate.
+ */
+public class DetectionPipeline {
+
+	/**
+	 * The work done by the pipeline
+	 */
+	public static interface Stage {
+		/**
+		 * Score a gesture. Called on the detection thread.
+		 *
+		 * @return true if the gesture should raise an alert
+		 */
+		public boolean process(EyeGesture gesture, long time);
+
+		/**
+		 * Score a head nod. Called on the detection thread.
+		 *
+		 * @return true if the nod should raise an alert
+		 */
+		public boolean processHeadNod(long time);
+
+		/**
+		 * Raise an alert. Called on the main thread.
+		 *
+		 * @param triggerNanos the System.nanoTime() at which the event that
+		 *        raised the alert was queued
+		 */
+		public void onAlert(long triggerNanos);
+	}
+
+	/**
+	 * The number of events the queue can hold before it is drained early
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final EyeGesture[] GESTURES = EyeGesture.values();
+
+	/**
+	 * The event queued for a head nod, in place of a gesture's ordinal
+	 */
+	private static final int HEAD_NOD = -1;
+
+	private final Stage mStage;
+
+	private final HandlerThread mThread;
+	private final Looper mDetectionLooper;
+	private final Handler mDetectionHandler;
+	private final Handler mMainHandler;
+
+	// The queue, guarded by mLock
+	private final Object mLock = new Object();
+	private final int[] mEvents;
+	private final long[] mTimes;
+	private final long[] mQueuedNanos;
+	private int mHead = 0;
+	private int mCount = 0;
+	private boolean mDrainScheduled = false;
+	private long mDropped = 0;
+
+	// The batch being processed, only touched on the detection thread
+	private final int[] mBatchEvents;
+	private final long[] mBatchTimes;
+	private final long[] mBatchQueuedNanos;
+
+	private volatile long mAlertTriggerNanos;
+
+	private final Runnable mDrainRunnable = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	private final Runnable mAlertRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mStage.onAlert(mAlertTriggerNanos);
+		}
+	};
+
+	/**
+	 * Create a pipeline running on a new detection thread
+	 *
+	 * @param stage the work to do on each event
+	 */
+	public static DetectionPipeline create(Stage stage) {
+		HandlerThread thread = new HandlerThread("SleepDetection", Process.THREAD_PRIORITY_DISPLAY);
+		thread.start();
+
+		return new DetectionPipeline(thread, thread.getLooper(), Looper.getMainLooper(), stage,
+				DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a pipeline on existing loopers, ie. for testing with a fake looper
+	 *
+	 * @param detectionLooper the looper that events are scored on
+	 * @param mainLooper the looper that alerts are raised on
+	 * @param stage the work to do on each event
+	 * @param capacity the number of events the queue can hold
+	 */
+	public DetectionPipeline(Looper detectionLooper, Looper mainLooper, Stage stage, int capacity) {
+		this(null, detectionLooper, mainLooper, stage, capacity);
+	}
+
+	private DetectionPipeline(HandlerThread thread, Looper detectionLooper, Looper mainLooper,
+			Stage stage, int capacity) {
+		mThread = thread;
+		mDetectionLooper = detectionLooper;
+		mDetectionHandler = new Handler(detectionLooper);
+		mMainHandler = new Handler(mainLooper);
+		mStage = stage;
+
+		mEvents = new int[capacity];
+		mTimes = new long[capacity];
+		mQueuedNanos = new long[capacity];
+		mBatchEvents = new int[capacity];
+		mBatchTimes = new long[capacity];
+		mBatchQueuedNanos = new long[capacity];
+	}
+
+	/**
+	 * @return the Handler of the detection thread, to register receivers on
+	 */
+	public Handler getHandler() {
+		return mDetectionHandler;
+	}
+
+	/**
+	 * Queue a gesture to be scored on the detection thread. May be called from
+	 * any thread.
+	 */
+	public void enqueue(EyeGesture gesture, long time) {
+		enqueue(gesture.ordinal(), time);
+	}
+
+	/**
+	 * Queue a head nod to be scored on the detection thread. May be called
+	 * from any thread. Nods are detected in batches, so it goes in front of
+	 * any queued gesture that happened after it.
+	 *
+	 * @param time when the nod happened, on the same clock as the gestures
+	 */
+	public void enqueueHeadNod(long time) {
+		enqueue(HEAD_NOD, time);
+	}
+
+	private void enqueue(int event, long time) {
+		if (Looper.myLooper() == mDetectionLooper) {
+			// We're on the detection thread, so empty a full queue instead of
+			// dropping from it. drain() takes the lock itself.
+			final boolean full;
+			synchronized (mLock) {
+				full = mCount == mEvents.length;
+			}
+			if (full) {
+				drain();
+			}
+		}
+
+		synchronized (mLock) {
+			if (mCount == mEvents.length) {
+				// Make room by dropping the oldest event. Checked under the same
+				// lock as the insert, so concurrent producers can't overfill it.
+				mHead = (mHead + 1) % mEvents.length;
+				mCount--;
+				mDropped++;
+			}
+
+			// Move any later events back by one, to keep the queue in time order
+			int index = (mHead + mCount) % mEvents.length;
+			for (int i = mCount; i > 0; i--) {
+				int previous = (index + mEvents.length - 1) % mEvents.length;
+				if (mTimes[previous] <= time) {
+					break;
+				}
+				mEvents[index] = mEvents[previous];
+				mTimes[index] = mTimes[previous];
+				mQueuedNanos[index] = mQueuedNanos[previous];
+				index = previous;
+			}
+
+			mEvents[index] = event;
+			mTimes[index] = time;
+			mQueuedNanos[index] = System.nanoTime();
+			mCount++;
+
+			if (!mDrainScheduled) {
+				mDrainScheduled = true;
+				mDetectionHandler.post(mDrainRunnable);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of events dropped because the queue was full
+	 */
+	public long getDroppedCount() {
+		synchronized (mLock) {
+			return mDropped;
+		}
+	}
+
+	/**
+	 * Stop the detection thread, if this pipeline created one
+	 */
+	public void quit() {
+		mDetectionHandler.removeCallbacks(mDrainRunnable);
+		mMainHandler.removeCallbacks(mAlertRunnable);
+
+		if (mThread != null) {
+			mThread.quit();
+		}
+	}
+
+	/**
+	 * Score every queued event, then raise at most one alert
+	 */
+	private void drain() {
+		final int count;
+		synchronized (mLock) {
+			count = mCount;
+			for (int i = 0; i < count; i++) {
+				int index = (mHead + i) % mEvents.length;
+				mBatchEvents[i] = mEvents[index];
+				mBatchTimes[i] = mTimes[index];
+				mBatchQueuedNanos[i] = mQueuedNanos[index];
+			}
+			mHead = 0;
+			mCount = 0;
+			mDrainScheduled = false;
+		}
+
+		long triggerNanos = 0;
+		boolean alert = false;
+		for (int i = 0; i < count; i++) {
+			final int event = mBatchEvents[i];
+			final boolean fallingAsleep = event == HEAD_NOD
+					? mStage.processHeadNod(mBatchTimes[i])
+					: mStage.process(GESTURES[event], mBatchTimes[i]);
+			if (fallingAsleep && !alert) {
+				alert = true;
+				triggerNanos = mBatchQueuedNanos[i];
+			}
+		}
+
+		if (alert) {
+			mAlertTriggerNanos = triggerNanos;
+			mMainHandler.post(mAlertRunnable);
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.drive.safe.glass.eye;
+
+import com.google.android.glass.eye.EyeGesture;
+import com.google.android.glass.eye.EyeGestureManager;
+
+/**
+ * Reference-counts the eye gesture detectors, so each one is only started
+ * by its first user and stopped by its last. The state of a detector is
+ * checked before changing it, so no call is made to the hardware when
+ * nothing would change.
+ *
+ * While Glass is off the head the gesture detectors are paused; the DON and
+ * DOFF detectors keep running so detection can resume.
+ */
+public class DetectorManager {
+
+	private final EyeGestureManager mEyeGestureManager;
+
+	private final int[] mReferences = new int[EyeGesture.values().length];
+
+	private boolean mPaused = false;
+
+	/**
+	 * @param eyeGestureManager the manager of the detectors, or a fake one for testing
+	 */
+	public DetectorManager(EyeGestureManager eyeGestureManager) {
+		mEyeGestureManager = eyeGestureManager;
+	}
+
+	/**
+	 * Start a detector, unless it's already been started
+	 *
+	 * @return false if the gesture isn't supported
+	 */
+	public synchronized boolean acquire(EyeGesture gesture) {
+		if (!mEyeGestureManager.isSupported(gesture)) {
+			return false;
+		}
+
+		if (mReferences[gesture.ordinal()]++ == 0 && !isPaused(gesture)) {
+			start(gesture);
+		}
+		return true;
+	}
+
+	/**
+	 * Stop a detector once nothing else is using it. Releasing a detector that
+	 * hasn't been acquired does nothing.
+	 */
+	public synchronized void release(EyeGesture gesture) {
+		if (mReferences[gesture.ordinal()] == 0) {
+			return;
+		}
+
+		if (--mReferences[gesture.ordinal()] == 0) {
+			stop(gesture);
+		}
+	}
+
+	/**
+	 * Stop the gesture detectors while Glass is off the head
+	 */
+	public synchronized void pause() {
+		if (mPaused) {
+			return;
+		}
+		mPaused = true;
+
+		for (EyeGesture gesture : EyeGesture.values()) {
+			if (mReferences[gesture.ordinal()] > 0 && isPaused(gesture)) {
+				stop(gesture);
+			}
+		}
+	}
+
+	/**
+	 * Restart the gesture detectors once Glass is back on the head
+	 */
+	public synchronized void resume() {
+		if (!mPaused) {
+			return;
+		}
+		mPaused = false;
+
+		for (EyeGesture gesture : EyeGesture.values()) {
+			if (mReferences[gesture.ordinal()] > 0) {
+				start(gesture);
+			}
+		}
+	}
+
+	public synchronized boolean isPaused() {
+		return mPaused;
+	}
+
+	/**
+	 * @return the number of users of a detector
+	 */
+	public synchronized int getReferences(EyeGesture gesture) {
+		return mReferences[gesture.ordinal()];
+	}
+
+	/**
+	 * @return true if the detector is paused right now
+	 */
+	private boolean isPaused(EyeGesture gesture) {
+		// DON and DOFF are what tell us to pause and resume
+		return mPaused && gesture != EyeGesture.DON && gesture != EyeGesture.DOFF;
+	}
+
+	private void start(EyeGesture gesture) {
+		if (!mEyeGestureManager.isDetectorRunning(gesture)) {
+			mEyeGestureManager.enableDetectorPersistently(gesture, true);
+		}
+	}
+
+	private void stop(EyeGesture gesture) {
+		if (mEyeGestureManager.isDetectorRunning(gesture)) {
+			mEyeGestureManager.stopDetector(gesture);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.drive.safe.glass.eye;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The tuned LeakyBucketModel constants of a driver, stored in a small
+ * versioned binary file that loads in microseconds.
+ *
+ * The file is a magic number, a version, then the four constants as floats.
+ */
+public class DriverProfile {
+
+	/** "DSDP" */
+	private static final int MAGIC = 0x44534450;
+	private static final int VERSION = 1;
+
+	/**
+	 * The name of the profile file in the application's files directory
+	 */
+	public static final String FILE_NAME = "driver_profile.bin";
+
+	public final float sleepThreshold;
+	public final float modifierWink;
+	public final float modifierDoubleBlink;
+	public final float degradationPerMillisecond;
+
+	public DriverProfile(float sleepThreshold, float modifierWink, float modifierDoubleBlink,
+			float degradationPerMillisecond) {
+		this.sleepThreshold = sleepThreshold;
+		this.modifierWink = modifierWink;
+		this.modifierDoubleBlink = modifierDoubleBlink;
+		this.degradationPerMillisecond = degradationPerMillisecond;
+	}
+
+	/**
+	 * @return the profile with the default LeakyBucketModel constants
+	 */
+	public static DriverProfile getDefault() {
+		return new DriverProfile(LeakyBucketModel.DEFAULT_SLEEP_THRESHOLD, LeakyBucketModel.DEFAULT_MODIFIER_WINK,
+				LeakyBucketModel.DEFAULT_MODIFIER_DOUBLE_BLINK, LeakyBucketModel.DEFAULT_DEGRADATION_PER_MILLISECOND);
+	}
+
+	/**
+	 * @return a model using this profile's constants
+	 */
+	public LeakyBucketModel createModel(SleepScorer.TimeSource timeSource) {
+		return new LeakyBucketModel(sleepThreshold, modifierWink, modifierDoubleBlink, degradationPerMillisecond,
+				timeSource);
+	}
+
+	/**
+	 * Give a model this profile's constants, keeping its sleep level
+	 */
+	public void applyTo(LeakyBucketModel model) {
+		model.setConstants(sleepThreshold, modifierWink, modifierDoubleBlink, degradationPerMillisecond);
+	}
+
+	/**
+	 * Load a profile
+	 *
+	 * @return the profile, or null if the file doesn't exist
+	 * @throws IOException if the file exists but can't be read
+	 */
+	public static DriverProfile load(File file) throws IOException {
+		DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64));
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " isn't a driver profile");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported version " + version);
+			}
+
+			return new DriverProfile(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Save the profile, replacing the file atomically
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeFloat(sleepThreshold);
+			out.writeFloat(modifierWink);
+			out.writeFloat(modifierDoubleBlink);
+			out.writeFloat(degradationPerMillisecond);
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof DriverProfile)) {
+			return false;
+		}
+
+		DriverProfile other = (DriverProfile) o;
+		return Float.compare(sleepThreshold, other.sleepThreshold) == 0
+				&& Float.compare(modifierWink, other.modifierWink) == 0
+				&& Float.compare(modifierDoubleBlink, other.modifierDoubleBlink) == 0
+				&& Float.compare(degradationPerMillisecond, other.degradationPerMillisecond) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = Float.floatToIntBits(sleepThreshold);
+		hash = hash * 31 + Float.floatToIntBits(modifierWink);
+		hash = hash * 31 + Float.floatToIntBits(modifierDoubleBlink);
+		return hash * 31 + Float.floatToIntBits(degradationPerMillisecond);
+	}
+
+	@Override
+	public String toString() {
+		return "threshold=" + sleepThreshold + " wink=" + modifierWink + " doubleBlink=" + modifierDoubleBlink
+				+ " degradationPerMs=" + degradationPerMillisecond;
+	}
+
+}
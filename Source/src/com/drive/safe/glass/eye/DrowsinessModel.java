@@ -0,0 +1,40 @@
+package com.drive.safe.glass.eye;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Turns a stream of eye gestures into a drowsiness level. SleepDetector
+ * considers the user to be falling asleep once the level reaches the
+ * model's threshold.
+ *
+ * Implementations may be called from any thread and should not allocate
+ * while scoring.
+ */
+public interface DrowsinessModel {
+
+	/**
+	 * Score an eye gesture
+	 *
+	 * @param gesture the gesture that was detected
+	 * @param time when the gesture happened, in monotonic milliseconds
+	 * @return the drowsiness level after the gesture
+	 */
+	public float onEyeGesture(EyeGesture gesture, long time);
+
+	/**
+	 * @param time the current time, in monotonic milliseconds
+	 * @return the drowsiness level at time
+	 */
+	public float getLevel(long time);
+
+	/**
+	 * @return the level at which the user is considered to be falling asleep
+	 */
+	public float getThreshold();
+
+	/**
+	 * Forget every gesture that has been scored
+	 */
+	public void reset();
+
+}
@@ -4,54 +4,56 @@
 
 package com.drive.safe.glass.eye;
 
-import com.google.android.glass.eye.EyeGesture;
-
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Bundle;
 import android.util.Log;
 
 public class EyeEventReceiver extends BroadcastReceiver {
 	private static final String TAG = "EyeEventReceiver";
-	
-	private static final String WINK = "WINK";
-	private static final String DOUBLE_BLINK = "DOUBLE_BLINK";
+
+	private static final String EXTRA_GESTURE = "gesture";
 
 	/**
-	 * An interface for a listener to capture wink and double blinks
+	 * An interface for a listener to capture eye gestures
 	 */
 	public static interface EyeEventListener {
 		public void onWink();
 		public void onDoubleBlink();
+		public void onDoubleWink();
+
+		/**
+		 * Glass has been put on
+		 */
+		public void onDon();
+
+		/**
+		 * Glass has been taken off
+		 */
+		public void onDoff();
 	}
 
-	private EyeEventListener mListener;
+	private final GestureDispatcher mDispatcher;
 
 	public EyeEventReceiver(EyeEventListener listener) {
-		mListener = listener;
+		mDispatcher = new GestureDispatcher(listener);
 	}
 
 	public void setEyeEventListener(EyeEventListener listener) {
-		mListener = listener;
+		mDispatcher.setEyeEventListener(listener);
 	}
 
 	@Override
 	public void onReceive(Context context, Intent intent) {
-		Bundle extras = intent.getExtras();
-
-		String eyeEvent = extras.getString("gesture");
+		// getStringExtra reads the extras in place instead of copying the Bundle
+		String eyeEvent = intent.getStringExtra(EXTRA_GESTURE);
 
-		Log.d(TAG, eyeEvent + " is detected");
+		if (Log.isLoggable(TAG, Log.DEBUG)) {
+			Log.d(TAG, eyeEvent + " is detected");
+		}
 
-		if (mListener != null) {
-			if (eyeEvent.equals(WINK)) {
-				mListener.onWink();
-			} else if (eyeEvent.equals(DOUBLE_BLINK)) {
-				mListener.onDoubleBlink();
-			} else{
-				Log.i(TAG, "Unknown Gesture: \"" + eyeEvent + "\"");
-			}
+		if (!mDispatcher.dispatch(eyeEvent) && Log.isLoggable(TAG, Log.INFO)) {
+			Log.i(TAG, "Unknown Gesture: \"" + eyeEvent + "\"");
 		}
 
 		abortBroadcast();
@@ -0,0 +1,100 @@
+package com.drive.safe.glass.eye;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Combines an eye gesture model with head nods. Nods go into their own
+ * leaky bucket, and the level is the eye model's level plus the nod level,
+ * so a few nods bring an eye level that's nearly at the threshold over it.
+ *
+ * The nod bucket is measured against LeakyBucketModel.DEFAULT_SLEEP_THRESHOLD
+ * and scaled to the eye model's threshold before it's added, so a nod is
+ * worth the same fraction of the threshold whatever the eye model is.
+ */
+public class FusedModel implements DrowsinessModel {
+
+	/**
+	 * When the user's head nods, add DEFAULT_MODIFIER_HEAD_NOD to the nod
+	 * level, out of a threshold of NOD_THRESHOLD
+	 */
+	public static final float DEFAULT_MODIFIER_HEAD_NOD = 4f;
+
+	/**
+	 * The threshold the head nod modifier and degradation are measured against
+	 */
+	public static final float NOD_THRESHOLD = LeakyBucketModel.DEFAULT_SLEEP_THRESHOLD;
+
+	private final DrowsinessModel mEyeModel;
+
+	private final SleepScorer mNodScorer;
+
+	private final float mModifierHeadNod;
+
+	/**
+	 * Create a model with the default head nod constants
+	 *
+	 * @param eyeModel the model that scores the eye gestures
+	 * @param timeSource the clock that gesture and nod times come from
+	 */
+	public FusedModel(DrowsinessModel eyeModel, SleepScorer.TimeSource timeSource) {
+		this(eyeModel, DEFAULT_MODIFIER_HEAD_NOD, LeakyBucketModel.DEFAULT_DEGRADATION_PER_MILLISECOND,
+				timeSource);
+	}
+
+	/**
+	 * @param eyeModel the model that scores the eye gestures
+	 * @param modifierHeadNod the amount a head nod adds to the nod level, out of NOD_THRESHOLD
+	 * @param degradationPerMillisecond the amount the nod level leaks every millisecond, out of NOD_THRESHOLD
+	 * @param timeSource the clock that gesture and nod times come from
+	 */
+	public FusedModel(DrowsinessModel eyeModel, float modifierHeadNod, float degradationPerMillisecond,
+			SleepScorer.TimeSource timeSource) {
+		mEyeModel = eyeModel;
+		mModifierHeadNod = modifierHeadNod;
+		mNodScorer = new SleepScorer(degradationPerMillisecond, timeSource);
+	}
+
+	@Override
+	public float onEyeGesture(EyeGesture gesture, long time) {
+		return mEyeModel.onEyeGesture(gesture, time) + getNodLevel(mNodScorer.getLevel(time));
+	}
+
+	/**
+	 * Score a head nod
+	 *
+	 * @param time when the nod happened, in monotonic milliseconds
+	 * @return the sleep level after the nod
+	 */
+	public float onHeadNod(long time) {
+		return mEyeModel.getLevel(time) + getNodLevel(mNodScorer.score(mModifierHeadNod, time));
+	}
+
+	@Override
+	public float getLevel(long time) {
+		return mEyeModel.getLevel(time) + getNodLevel(mNodScorer.getLevel(time));
+	}
+
+	@Override
+	public float getThreshold() {
+		return mEyeModel.getThreshold();
+	}
+
+	@Override
+	public void reset() {
+		mEyeModel.reset();
+		mNodScorer.reset();
+	}
+
+	/**
+	 * @param nodLevel the level of the nod bucket, out of NOD_THRESHOLD
+	 * @return nodLevel in units of the eye model's threshold
+	 */
+	private float getNodLevel(float nodLevel) {
+		return nodLevel * (mEyeModel.getThreshold() / NOD_THRESHOLD);
+	}
+
+	public DrowsinessModel getEyeModel() {
+		return mEyeModel;
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.drive.safe.glass.eye;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Forwards the gesture names sent in eye gesture broadcasts to an
+ * EyeEventListener. Looking up and dispatching a gesture doesn't allocate.
+ * This class has no Android dependencies, apart from the EyeGesture type.
+ */
+public class GestureDispatcher {
+
+	/**
+	 * Maps the gesture names sent in the broadcast to their EyeGesture. Built
+	 * once, so looking up a gesture doesn't allocate.
+	 */
+	private static final Map<String, EyeGesture> GESTURES = new HashMap<String, EyeGesture>();
+	static {
+		for (EyeGesture gesture : EyeGesture.values()) {
+			GESTURES.put(gesture.name(), gesture);
+		}
+	}
+
+	/**
+	 * Forwards one kind of gesture to the listener
+	 */
+	private static interface GestureHandler {
+		public void dispatch(EyeEventReceiver.EyeEventListener listener);
+	}
+
+	private EyeEventReceiver.EyeEventListener mListener;
+
+	/**
+	 * Handlers indexed by EyeGesture ordinal
+	 */
+	private final GestureHandler[] mHandlers = new GestureHandler[EyeGesture.values().length];
+
+	public GestureDispatcher(EyeEventReceiver.EyeEventListener listener) {
+		mListener = listener;
+
+		mHandlers[EyeGesture.WINK.ordinal()] = new GestureHandler() {
+			@Override
+			public void dispatch(EyeEventReceiver.EyeEventListener listener) {
+				listener.onWink();
+			}
+		};
+		mHandlers[EyeGesture.DOUBLE_BLINK.ordinal()] = new GestureHandler() {
+			@Override
+			public void dispatch(EyeEventReceiver.EyeEventListener listener) {
+				listener.onDoubleBlink();
+			}
+		};
+		mHandlers[EyeGesture.DOUBLE_WINK.ordinal()] = new GestureHandler() {
+			@Override
+			public void dispatch(EyeEventReceiver.EyeEventListener listener) {
+				listener.onDoubleWink();
+			}
+		};
+		mHandlers[EyeGesture.DON.ordinal()] = new GestureHandler() {
+			@Override
+			public void dispatch(EyeEventReceiver.EyeEventListener listener) {
+				listener.onDon();
+			}
+		};
+		mHandlers[EyeGesture.DOFF.ordinal()] = new GestureHandler() {
+			@Override
+			public void dispatch(EyeEventReceiver.EyeEventListener listener) {
+				listener.onDoff();
+			}
+		};
+	}
+
+	public void setEyeEventListener(EyeEventReceiver.EyeEventListener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Forward a gesture to the listener, if there is one
+	 *
+	 * @param eyeEvent the name of the gesture, or null
+	 * @return false if eyeEvent isn't a known gesture
+	 */
+	public boolean dispatch(String eyeEvent) {
+		EyeGesture gesture = eyeEvent == null ? null : GESTURES.get(eyeEvent);
+		if (gesture == null) {
+			return false;
+		}
+
+		final EyeEventReceiver.EyeEventListener listener = mListener;
+		if (listener != null) {
+			mHandlers[gesture.ordinal()].dispatch(listener);
+		}
+		return true;
+	}
+
+}
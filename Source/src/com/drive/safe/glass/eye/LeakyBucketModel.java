@@ -0,0 +1,109 @@
+package com.drive.safe.glass.eye;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * The original drowsiness model: every wink or double blink adds to the
+ * sleep level, and the level leaks away linearly over time.
+ */
+public class LeakyBucketModel implements DrowsinessModel {
+
+	/**
+	 * If the sleep level gets above DEFAULT_SLEEP_THRESHOLD, then consider the
+	 * user is falling asleep
+	 */
+	public static final float DEFAULT_SLEEP_THRESHOLD = 8f;
+
+	/**
+	 * When the user performs the wink gesture, add DEFAULT_MODIFIER_WINK to
+	 * the sleep level
+	 */
+	public static final float DEFAULT_MODIFIER_WINK = 7f;
+
+	/**
+	 * When the user performs the double blink gesture, add
+	 * DEFAULT_MODIFIER_DOUBLE_BLINK to the sleep level
+	 */
+	public static final float DEFAULT_MODIFIER_DOUBLE_BLINK = 3f;
+
+	/**
+	 * Every millisecond, the sleep level is reduced by
+	 * DEFAULT_DEGRADATION_PER_MILLISECOND
+	 */
+	public static final float DEFAULT_DEGRADATION_PER_MILLISECOND = 0.0003f;
+
+	private volatile float mSleepThreshold;
+	private volatile float mModifierWink;
+	private volatile float mModifierDoubleBlink;
+
+	private final SleepScorer mSleepScorer;
+
+	/**
+	 * Create a model with the default constants
+	 *
+	 * @param timeSource the clock that gesture times come from
+	 */
+	public LeakyBucketModel(SleepScorer.TimeSource timeSource) {
+		this(DEFAULT_SLEEP_THRESHOLD, DEFAULT_MODIFIER_WINK, DEFAULT_MODIFIER_DOUBLE_BLINK,
+				DEFAULT_DEGRADATION_PER_MILLISECOND, timeSource);
+	}
+
+	/**
+	 * @param sleepThreshold the sleep level at which the user is falling asleep
+	 * @param modifierWink the amount a wink adds to the sleep level
+	 * @param modifierDoubleBlink the amount a double blink adds to the sleep level
+	 * @param degradationPerMillisecond the amount the sleep level leaks every millisecond
+	 * @param timeSource the clock that gesture times come from
+	 */
+	public LeakyBucketModel(float sleepThreshold, float modifierWink, float modifierDoubleBlink,
+			float degradationPerMillisecond, SleepScorer.TimeSource timeSource) {
+		mSleepThreshold = sleepThreshold;
+		mModifierWink = modifierWink;
+		mModifierDoubleBlink = modifierDoubleBlink;
+		mSleepScorer = new SleepScorer(degradationPerMillisecond, timeSource);
+	}
+
+	/**
+	 * Change the constants, keeping the sleep level
+	 *
+	 * @param sleepThreshold the sleep level at which the user is falling asleep
+	 * @param modifierWink the amount a wink adds to the sleep level
+	 * @param modifierDoubleBlink the amount a double blink adds to the sleep level
+	 * @param degradationPerMillisecond the amount the sleep level leaks every millisecond
+	 */
+	public void setConstants(float sleepThreshold, float modifierWink, float modifierDoubleBlink,
+			float degradationPerMillisecond) {
+		mSleepThreshold = sleepThreshold;
+		mModifierWink = modifierWink;
+		mModifierDoubleBlink = modifierDoubleBlink;
+		mSleepScorer.setDegradationPerMillisecond(degradationPerMillisecond);
+	}
+
+	@Override
+	public float onEyeGesture(EyeGesture gesture, long time) {
+		switch (gesture) {
+		case WINK:
+			return mSleepScorer.score(mModifierWink, time);
+		case DOUBLE_BLINK:
+			return mSleepScorer.score(mModifierDoubleBlink, time);
+		default:
+			return mSleepScorer.getLevel(time);
+		}
+	}
+
+	@Override
+	public float getLevel(long time) {
+		return mSleepScorer.getLevel(time);
+	}
+
+	@Override
+	public float getThreshold() {
+		return mSleepThreshold;
+	}
+
+	@Override
+	public void reset() {
+		mSleepScorer.reset();
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.drive.safe.glass.eye;
+
+/**
+ * Predicts when the sleep level will reach the threshold from its recent
+ * trajectory, so the driver can be warned before the first alert.
+ *
+ * The predictor tracks the level and its rate of change. The rate is an
+ * exponentially weighted average of the slope between consecutive levels,
+ * where a slope counts for more the longer it was measured over, with
+ * mTimeConstantMillis as the time constant. The leaky bucket's level is a
+ * sawtooth, jumping at each event and leaking in between, so the average
+ * slope between events is the net rate at which the driver is heading for
+ * the threshold. Each update is a handful of arithmetic operations and an
+ * exp, and allocates nothing.
+ *
+ * When the level is reset after an alert, the rate is kept: the driver is no
+ * less drowsy for having acknowledged it, and alerts that follow a reset
+ * often come within a few events, too soon for a new rate to be measured.
+ *
+ * A pre-alert fires once the predicted time to the threshold falls within
+ * the horizon, and can fire again only after the prediction has moved back
+ * past twice the horizon or the level has been reset. This class has no
+ * Android dependencies.
+ */
+public class LevelPredictor {
+
+	/**
+	 * The time constant of the rate, by default
+	 */
+	public static final long DEFAULT_TIME_CONSTANT_MILLIS = 30000;
+
+	/**
+	 * Fire a pre-alert when the threshold is predicted within this long, by default
+	 */
+	public static final long DEFAULT_HORIZON_MILLIS = 10000;
+
+	/**
+	 * The number of slopes measured before predicting, by default
+	 */
+	public static final int DEFAULT_MIN_EVENTS = 2;
+
+	/**
+	 * The predicted time to the threshold when the level isn't heading towards it
+	 */
+	public static final long NO_PREDICTION = Long.MAX_VALUE;
+
+	private final double mTimeConstantMillis;
+	private final int mMinEvents;
+	private volatile long mHorizonMillis;
+
+	/**
+	 * The level at mLastTime
+	 */
+	private double mLevel;
+	private long mLastTime;
+	private boolean mHasLevel = false;
+
+	/**
+	 * The rate of change of the level, per millisecond, and the number of
+	 * slopes it has been measured from
+	 */
+	private double mSlope;
+	private int mSlopes;
+
+	private long mMillisToThreshold = NO_PREDICTION;
+	private boolean mArmed = true;
+
+	public LevelPredictor() {
+		this(DEFAULT_TIME_CONSTANT_MILLIS, DEFAULT_HORIZON_MILLIS, DEFAULT_MIN_EVENTS);
+	}
+
+	/**
+	 * @param timeConstantMillis how quickly older slopes stop counting
+	 * @param horizonMillis how far ahead of the threshold to fire a pre-alert
+	 * @param minEvents the number of slopes measured before predicting
+	 */
+	public LevelPredictor(long timeConstantMillis, long horizonMillis, int minEvents) {
+		mTimeConstantMillis = timeConstantMillis;
+		mHorizonMillis = horizonMillis;
+		mMinEvents = minEvents;
+	}
+
+	/**
+	 * Track the level after an event. An event older than the last one is
+	 * ignored, since the slope between them has already been measured.
+	 *
+	 * @param time when the event happened, in monotonic milliseconds
+	 * @param level the level after the event
+	 * @param threshold the level at which the user is falling asleep
+	 * @return true if a pre-alert should fire
+	 */
+	public synchronized boolean onLevel(long time, float level, float threshold) {
+		if (mHasLevel) {
+			if (time < mLastTime) {
+				return false;
+			}
+
+			final long elapsed = time - mLastTime;
+			if (elapsed > 0) {
+				final double slope = (level - mLevel) / elapsed;
+				if (mSlopes == 0) {
+					mSlope = slope;
+				} else {
+					mSlope += (1 - Math.exp(-elapsed / mTimeConstantMillis)) * (slope - mSlope);
+				}
+				mSlopes++;
+			}
+		}
+
+		mLevel = level;
+		mLastTime = time;
+		mHasLevel = true;
+
+		predict(threshold);
+
+		if (mMillisToThreshold > 2 * mHorizonMillis) {
+			mArmed = true;
+		}
+		if (mArmed && level < threshold && mMillisToThreshold <= mHorizonMillis) {
+			mArmed = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The level was reset to 0, ie. once the user has responded to an alert.
+	 * The rate is kept.
+	 *
+	 * @param time when the level was reset, in monotonic milliseconds
+	 */
+	public synchronized void onLevelReset(long time) {
+		mLevel = 0;
+		mLastTime = Math.max(mLastTime, time);
+		mHasLevel = true;
+		mMillisToThreshold = NO_PREDICTION;
+		mArmed = true;
+	}
+
+	/**
+	 * @return the predicted time from the last event to the threshold, or
+	 *         NO_PREDICTION
+	 */
+	public synchronized long getMillisToThreshold() {
+		return mMillisToThreshold;
+	}
+
+	/**
+	 * @return the rate of change of the level, per millisecond
+	 */
+	public synchronized double getSlope() {
+		return mSlope;
+	}
+
+	/**
+	 * @param horizonMillis fire a pre-alert when the threshold is predicted
+	 *        within this long
+	 */
+	public void setHorizonMillis(long horizonMillis) {
+		mHorizonMillis = horizonMillis;
+	}
+
+	public long getHorizonMillis() {
+		return mHorizonMillis;
+	}
+
+	/**
+	 * Forget the level and the rate, ie. when the drowsiness model is replaced
+	 */
+	public synchronized void reset() {
+		mLevel = 0;
+		mLastTime = 0;
+		mHasLevel = false;
+		mSlope = 0;
+		mSlopes = 0;
+		mMillisToThreshold = NO_PREDICTION;
+		mArmed = true;
+	}
+
+	private void predict(float threshold) {
+		mMillisToThreshold = NO_PREDICTION;
+		if (mSlopes < mMinEvents || mSlope <= 0) {
+			return;
+		}
+
+		final double millis = Math.max(0, (threshold - mLevel) / mSlope);
+		if (millis < NO_PREDICTION) {
+			mMillisToThreshold = (long) millis;
+		}
+	}
+
+}
@@ -1,10 +1,22 @@
 package com.drive.safe.glass.eye;
 
+import java.io.File;
+import java.io.IOException;
+
 import android.content.Context;
 import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.drive.safe.glass.eye.EyeEventReceiver.EyeEventListener;
+import com.drive.safe.glass.metrics.Counter;
+import com.drive.safe.glass.metrics.Gauge;
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
+import com.drive.safe.glass.session.SessionRecorder;
+import com.drive.safe.glass.session.SessionStats;
 import com.google.android.glass.eye.EyeGesture;
 import com.google.android.glass.eye.EyeGestureManager;
 
@@ -19,116 +31,649 @@ public class SleepDetector {
 	}
 
 	/**
-	 * If mSleepLevel gets above SLEEP_THRESHOLD, then consider the user is
-	 * falling asleep
+	 * An interface for a listener to be warned before the user falls asleep
 	 */
-	private static final float SLEEP_THRESHOLD = 8f;
+	public static interface PreAlertListener {
+		/**
+		 * @param millisToThreshold how long until the sleep level is predicted
+		 *        to reach the threshold
+		 */
+		public void onPreAlert(long millisToThreshold);
+	}
 
 	/**
-	 * When the user performs the wink gesture, add MODIFIER_WINK to mSleepLevel
+	 * An interface for a listener to know when Glass is put on and taken off
 	 */
-	private static final float MODIFIER_WINK = 7f;
+	public static interface WearListener {
+		public void onDon();
+
+		public void onDoff();
+	}
 
 	/**
-	 * When the user performs the wink gesture, add MODIFIER_DOUBLE_BLINK to
-	 * mSleepLevel
+	 * The priority of the eye gesture receiver, high enough to see gestures
+	 * before the system acts on them
 	 */
-	private static final float MODIFIER_DOUBLE_BLINK = 3f;
+	public static final int DEFAULT_RECEIVER_PRIORITY = 3000;
 
 	/**
-	 * Every millisecond, mSleepLevel is reduced by DEGRADATION_PER_MILLISECOND
+	 * Times eye events with the monotonic uptime clock
 	 */
-	private static final float DEGRADATION_PER_MILLISECOND = 0.0003f;
+	public static final SleepScorer.TimeSource UPTIME = new SleepScorer.TimeSource() {
+		@Override
+		public long uptimeMillis() {
+			return SystemClock.uptimeMillis();
+		}
+	};
 
 	private Context mContext;
 
+	/**
+	 * The gestures the detector listens for
+	 */
+	private static final EyeGesture[] GESTURES = { EyeGesture.DOUBLE_BLINK, EyeGesture.WINK, EyeGesture.DON,
+			EyeGesture.DOFF };
+
 	private EyeGestureManager mEyeGestureManager;
+	private DetectorManager mDetectorManager;
+
+	private boolean mReceiverRegistered = false;
+	private int mReceiverPriority = DEFAULT_RECEIVER_PRIORITY;
 	private EyeEventReceiver mEyeEventReceiver;
 	private EyeEventListener mEyeEventListener;
+	private DetectionPipeline.Stage mDetectionStage;
 
 	private SleepListener mSleepListener;
 
-	private float mSleepLevel = 0f;
+	private WearListener mWearListener;
+
+	private PreAlertListener mPreAlertListener;
+
+	/**
+	 * Predicts when the sleep level will reach the threshold; fed from the
+	 * same threads as the drowsiness model
+	 */
+	private final LevelPredictor mLevelPredictor = new LevelPredictor();
+
+	/**
+	 * The prediction of the pre-alert waiting to be delivered
+	 */
+	private volatile long mPreAlertMillis;
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * The drowsiness model's clock. It's replaced as a whole on pause and
+	 * resume, so it can be read on every event without a lock.
+	 */
+	private volatile ModelClock mModelClock = new ModelClock(false, 0, 0);
+
+	private final Runnable mDonRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (mWearListener != null) {
+				mWearListener.onDon();
+			}
+		}
+	};
+
+	private final Runnable mPreAlertRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (mPreAlertListener != null) {
+				mPreAlertListener.onPreAlert(mPreAlertMillis);
+			}
+		}
+	};
+
+	private final Runnable mDoffRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (mWearListener != null) {
+				mWearListener.onDoff();
+			}
+		}
+	};
+
+	private volatile DrowsinessModel mDrowsinessModel;
 
-	private long mLastEyeEvent = 0;
+	/**
+	 * The pipeline that gestures are scored on, or null if they are scored on
+	 * the main thread
+	 */
+	private volatile DetectionPipeline mDetectionPipeline;
+
+	/**
+	 * Records every scored eye event, or null
+	 */
+	private volatile SessionRecorder mSessionRecorder;
+	private volatile SessionStats mSessionStats;
+
+	/**
+	 * The number of each gesture scored, by ordinal
+	 */
+	private final Counter[] mGestureCounts = new Counter[EyeGesture.values().length];
+
+	/**
+	 * How long the drowsiness model takes to score an eye event
+	 */
+	private final Histogram mScoreTime = MetricsRegistry.getInstance().histogram("detector.score_nanos");
+
+	/**
+	 * How long it takes an eye event to reach onUserFallingAsleep, including
+	 * any time spent in the detection queue
+	 */
+	private final Histogram mAlertTime = MetricsRegistry.getInstance().histogram("detector.alert_nanos");
+
+	private final Counter mAlertCount = MetricsRegistry.getInstance().counter("detector.alerts");
+	private final Gauge mSleepLevelGauge = MetricsRegistry.getInstance().gauge("detector.sleep_level");
+	private final Counter mHeadNodCount = MetricsRegistry.getInstance().counter("detector.head_nods");
+	private final Counter mPreAlertCount = MetricsRegistry.getInstance().counter("detector.pre_alerts");
 
 	public SleepDetector(Context context, SleepListener listener) {
 		this(context);
 		mSleepListener = listener;
 	}
 
+	public SleepDetector(Context context, SleepListener listener, DrowsinessModel model) {
+		this(context, model);
+		mSleepListener = listener;
+	}
+
+	/**
+	 * Create a detector using the driver's tuned profile, if there is one
+	 */
 	public SleepDetector(Context context) {
+		this(context, loadDriverModel(context));
+	}
+
+	public SleepDetector(Context context, DrowsinessModel model) {
 		mContext = context;
 
 		mEyeGestureManager = EyeGestureManager.from(mContext);
+		mDetectorManager = new DetectorManager(mEyeGestureManager);
+
+		mDrowsinessModel = model;
+
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		for (EyeGesture gesture : EyeGesture.values()) {
+			mGestureCounts[gesture.ordinal()] = metrics.counter("gesture." + gesture.name());
+		}
 
 		mEyeEventListener = new EyeEventListener() {
 			@Override
 			public void onWink() {
-				mSleepLevel += MODIFIER_WINK;
-				degradeSleepLevel();
-				checkSleepLevel();
+				onEyeEvent(EyeGesture.WINK);
 			}
 
 			@Override
 			public void onDoubleBlink() {
-				mSleepLevel += MODIFIER_DOUBLE_BLINK;
-				degradeSleepLevel();
-				checkSleepLevel();
+				onEyeEvent(EyeGesture.DOUBLE_BLINK);
+			}
+
+			@Override
+			public void onDoubleWink() {
+				// Nothing to do here
+			}
+
+			@Override
+			public void onDon() {
+				mMainHandler.post(mDonRunnable);
+			}
+
+			@Override
+			public void onDoff() {
+				mMainHandler.post(mDoffRunnable);
+			}
+		};
+
+		mDetectionStage = new DetectionPipeline.Stage() {
+			@Override
+			public boolean process(EyeGesture gesture, long time) {
+				return scoreEyeGesture(gesture, time);
+			}
+
+			@Override
+			public boolean processHeadNod(long time) {
+				return scoreHeadNod(time);
+			}
+
+			@Override
+			public void onAlert(long triggerNanos) {
+				notifyFallingAsleep();
+				mAlertTime.record(System.nanoTime() - triggerNanos);
 			}
 		};
 
 		mEyeEventReceiver = new EyeEventReceiver(mEyeEventListener);
 	}
 
+	/**
+	 * Start listening for eye gestures, scoring them on the main thread
+	 */
 	public void setupReceiver() {
-		mEyeGestureManager.stopDetector(EyeGesture.DOUBLE_BLINK);
-		mEyeGestureManager.stopDetector(EyeGesture.WINK);
+		setupReceiver(false);
+	}
 
-		mEyeGestureManager.enableDetectorPersistently(EyeGesture.DOUBLE_BLINK,
-				true);
-		mEyeGestureManager.enableDetectorPersistently(EyeGesture.WINK, true);
+	/**
+	 * Start listening for eye gestures
+	 *
+	 * @param useDetectionThread if true, gestures are received and scored on a
+	 *        dedicated thread and only alerts are delivered on the main thread
+	 */
+	public void setupReceiver(boolean useDetectionThread) {
+		if (mReceiverRegistered) {
+			return;
+		}
 
-		IntentFilter eyeFilter = new IntentFilter(
-				"com.google.glass.action.EYE_GESTURE");
-		eyeFilter.setPriority(3000);
+		// Use the driver's saved gesture calibration, if there is one
+		mEyeGestureManager.loadCalibration(EyeGesture.DOUBLE_BLINK);
+		mEyeGestureManager.loadCalibration(EyeGesture.WINK);
 
-		mContext.registerReceiver(mEyeEventReceiver, eyeFilter);
+		for (EyeGesture gesture : GESTURES) {
+			mDetectorManager.acquire(gesture);
+		}
+
+		if (useDetectionThread) {
+			mDetectionPipeline = DetectionPipeline.create(mDetectionStage);
+		}
+
+		registerReceiver();
+		mReceiverRegistered = true;
 	}
 
+	/**
+	 * @param priority the priority of the eye gesture receiver. If the
+	 *        receiver is set up, it's registered again with the new priority.
+	 */
+	public void setReceiverPriority(int priority) {
+		if (priority == mReceiverPriority) {
+			return;
+		}
+		mReceiverPriority = priority;
+
+		if (mReceiverRegistered) {
+			mContext.unregisterReceiver(mEyeEventReceiver);
+			registerReceiver();
+		}
+	}
+
+	/**
+	 * Stop listening for eye gestures. Does nothing if the receiver isn't set up.
+	 */
 	public void removeReceiver() {
-		mEyeGestureManager.stopDetector(EyeGesture.DOUBLE_BLINK);
-		mEyeGestureManager.stopDetector(EyeGesture.WINK);
+		if (!mReceiverRegistered) {
+			return;
+		}
+		mReceiverRegistered = false;
+
+		for (EyeGesture gesture : GESTURES) {
+			mDetectorManager.release(gesture);
+		}
 
 		mContext.unregisterReceiver(mEyeEventReceiver);
+
+		if (mDetectionPipeline != null) {
+			mDetectionPipeline.quit();
+			mDetectionPipeline = null;
+		}
 	}
 
 	public void setSleepListener(SleepListener listener) {
 		mSleepListener = listener;
 	}
 
-	private void degradeSleepLevel() {
-		// Don't apply the degradation to the first eye event
-		if (mLastEyeEvent != 0) {
-			// mSleepLevel has to be at least 0
-			mSleepLevel = Math
-					.max(0,
-							mSleepLevel
-									- ((System.currentTimeMillis() - mLastEyeEvent) * DEGRADATION_PER_MILLISECOND));
+	/**
+	 * @param listener called on the main thread when Glass is put on or taken
+	 *        off
+	 */
+	public void setWearListener(WearListener listener) {
+		mWearListener = listener;
+	}
+
+	/**
+	 * @param listener called on the main thread when the sleep level is
+	 *        predicted to reach the threshold within the pre-alert horizon
+	 */
+	public void setPreAlertListener(PreAlertListener listener) {
+		mPreAlertListener = listener;
+	}
+
+	/**
+	 * @param horizonMillis warn this long before the sleep level is predicted
+	 *        to reach the threshold
+	 */
+	public void setPreAlertHorizon(long horizonMillis) {
+		mLevelPredictor.setHorizonMillis(horizonMillis);
+	}
+
+	/**
+	 * Stop the gesture detectors and freeze the sleep level, ie. while nobody
+	 * is wearing Glass
+	 */
+	public synchronized void pause() {
+		final ModelClock clock = mModelClock;
+		if (clock.mPaused) {
+			return;
 		}
+		mModelClock = new ModelClock(true, SystemClock.uptimeMillis(), clock.mPausedMillis);
 
-		mLastEyeEvent = System.currentTimeMillis();
+		mDetectorManager.pause();
 	}
 
-	private void checkSleepLevel() {
-		Log.d(TAG, "Sleep Level: " + mSleepLevel + "/" + SLEEP_THRESHOLD);
-		if (mSleepLevel >= SLEEP_THRESHOLD) {
-			// The user is falling asleep
-			Log.i(TAG, "The user is falling asleep");
+	/**
+	 * Restart the gesture detectors, carrying on from the frozen sleep level
+	 */
+	public synchronized void resume() {
+		final ModelClock clock = mModelClock;
+		if (!clock.mPaused) {
+			return;
+		}
+		mModelClock = new ModelClock(false, 0,
+				clock.mPausedMillis + SystemClock.uptimeMillis() - clock.mPauseStart);
+
+		mDetectorManager.resume();
+	}
 
-			if (mSleepListener != null) {
-				mSleepListener.onUserFallingAsleep();
+	public boolean isPaused() {
+		return mModelClock.mPaused;
+	}
+
+	/**
+	 * @return a model with the constants of the driver's profile, or the
+	 *         default constants if there is no profile
+	 */
+	public static DrowsinessModel loadDriverModel(Context context) {
+		return loadDriverModel(context, DriverProfile.getDefault());
+	}
+
+	/**
+	 * @param defaults the constants to use if there is no profile
+	 * @return a model with the constants of the driver's profile, or the
+	 *         default constants if there is no profile
+	 */
+	public static LeakyBucketModel loadDriverModel(Context context, DriverProfile defaults) {
+		return loadDriverProfile(context, defaults).createModel(UPTIME);
+	}
+
+	/**
+	 * @param defaults the constants to use if there is no profile
+	 * @return the driver's profile, or defaults if there is no profile
+	 */
+	public static DriverProfile loadDriverProfile(Context context, DriverProfile defaults) {
+		File file = new File(context.getFilesDir(), DriverProfile.FILE_NAME);
+		try {
+			DriverProfile profile = DriverProfile.load(file);
+			if (profile != null) {
+				Log.i(TAG, "Using driver profile: " + profile);
+				return profile;
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Couldn't load the driver profile", e);
+		}
+
+		return defaults;
+	}
+
+	/**
+	 * @return the current sleep level
+	 */
+	public float getSleepLevel() {
+		return mDrowsinessModel.getLevel(getModelTime());
+	}
+
+	/**
+	 * Forget the eye gestures scored so far, ie. once the user has responded to
+	 * an alert
+	 */
+	public void resetSleepLevel() {
+		final DrowsinessModel model = mDrowsinessModel;
+		final SessionStats stats = mSessionStats;
+		final long time = getModelTime();
+		if (stats != null) {
+			stats.recordReset(time, model.getLevel(time));
+		}
+
+		model.reset();
+		mLevelPredictor.onLevelReset(time);
+	}
+
+	/**
+	 * @param model the model that scores eye gestures from now on
+	 */
+	public synchronized void setDrowsinessModel(DrowsinessModel model) {
+		// The new model hasn't seen anything, so it starts on the real clock
+		final boolean paused = mModelClock.mPaused;
+		mModelClock = new ModelClock(paused, paused ? SystemClock.uptimeMillis() : 0, 0);
+		mDrowsinessModel = model;
+		mLevelPredictor.reset();
+	}
+
+	public DrowsinessModel getDrowsinessModel() {
+		return mDrowsinessModel;
+	}
+
+	/**
+	 * @param recorder records every eye event from now on, or null to stop
+	 *        recording. It is written from the thread gestures are scored on,
+	 *        with the drowsiness model's times, which leave out paused time.
+	 */
+	public void setSessionRecorder(SessionRecorder recorder) {
+		mSessionRecorder = recorder;
+	}
+
+	/**
+	 * @param stats aggregates every scored event from now on, or null to stop.
+	 *        Events are recorded with the drowsiness model's times.
+	 */
+	public void setSessionStats(SessionStats stats) {
+		mSessionStats = stats;
+	}
+
+	/**
+	 * @return the time on the drowsiness model's clock, which stops while
+	 *         detection is paused
+	 */
+	public long getModelTime() {
+		return mModelClock.now();
+	}
+
+	/**
+	 * Register the eye gesture receiver, on the detection thread if there is one
+	 */
+	private void registerReceiver() {
+		IntentFilter eyeFilter = new IntentFilter(
+				"com.google.glass.action.EYE_GESTURE");
+		eyeFilter.setPriority(mReceiverPriority);
+
+		if (mDetectionPipeline != null) {
+			mContext.registerReceiver(mEyeEventReceiver, eyeFilter, null,
+					mDetectionPipeline.getHandler());
+		} else {
+			mContext.registerReceiver(mEyeEventReceiver, eyeFilter);
+		}
+	}
+
+	/**
+	 * Score a head nod on the thread the eye gestures are scored on, in time
+	 * order with them. It only counts if the drowsiness model is a FusedModel.
+	 *
+	 * @param uptimeMillis when the nod happened, on the SystemClock.uptimeMillis() clock
+	 */
+	public void onHeadNod(long uptimeMillis) {
+		final ModelClock clock = mModelClock;
+		if (clock.mPaused || !(mDrowsinessModel instanceof FusedModel)) {
+			return;
+		}
+
+		final long time = clock.toModelTime(uptimeMillis);
+
+		final DetectionPipeline pipeline = mDetectionPipeline;
+		if (pipeline != null) {
+			pipeline.enqueueHeadNod(time);
+			return;
+		}
+
+		// Eye gestures are scored on the main thread
+		mMainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (scoreHeadNod(time)) {
+					notifyFallingAsleep();
+				}
 			}
+		});
+	}
+
+	/**
+	 * Score a head nod with the drowsiness model
+	 *
+	 * @return true if the user is falling asleep
+	 */
+	private boolean scoreHeadNod(long time) {
+		final DrowsinessModel model = mDrowsinessModel;
+		if (!(model instanceof FusedModel)) {
+			// The model was replaced while the nod was queued
+			return false;
+		}
+
+		final SessionStats stats = mSessionStats;
+		final float levelBefore = stats != null ? model.getLevel(time) : 0;
+
+		final float sleepLevel = ((FusedModel) model).onHeadNod(time);
+		mHeadNodCount.increment();
+		mSleepLevelGauge.set(sleepLevel);
+
+		if (Log.isLoggable(TAG, Log.DEBUG)) {
+			Log.d(TAG, "Head nod, Sleep Level: " + sleepLevel + "/" + model.getThreshold());
+		}
+
+		if (stats != null) {
+			stats.recordHeadNod(time, levelBefore, sleepLevel, model.getThreshold());
+		}
+
+		predictSleepLevel(time, sleepLevel, model.getThreshold());
+
+		return sleepLevel >= model.getThreshold();
+	}
+
+	private void onEyeEvent(EyeGesture gesture) {
+		if (isPaused()) {
+			// Detected just before the detectors stopped
+			return;
+		}
+
+		final DetectionPipeline pipeline = mDetectionPipeline;
+		if (pipeline != null) {
+			pipeline.enqueue(gesture, getModelTime());
+			return;
+		}
+
+		final long start = System.nanoTime();
+
+		if (scoreEyeGesture(gesture, getModelTime())) {
+			notifyFallingAsleep();
+			mAlertTime.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Score a gesture with the drowsiness model
+	 *
+	 * @return true if the user is falling asleep
+	 */
+	private boolean scoreEyeGesture(EyeGesture gesture, long time) {
+		final long start = System.nanoTime();
+
+		final DrowsinessModel model = mDrowsinessModel;
+		final SessionStats stats = mSessionStats;
+		final float levelBefore = stats != null ? model.getLevel(time) : 0;
+
+		final float sleepLevel = model.onEyeGesture(gesture, time);
+		final float threshold = model.getThreshold();
+
+		mScoreTime.record(System.nanoTime() - start);
+		mGestureCounts[gesture.ordinal()].increment();
+		mSleepLevelGauge.set(sleepLevel);
+
+		if (Log.isLoggable(TAG, Log.DEBUG)) {
+			Log.d(TAG, "Sleep Level: " + sleepLevel + "/" + threshold);
+		}
+
+		final boolean fallingAsleep = sleepLevel >= threshold;
+
+		final SessionRecorder recorder = mSessionRecorder;
+		if (recorder != null) {
+			recorder.record(time, gesture.ordinal(), sleepLevel,
+					fallingAsleep ? SessionRecorder.FLAG_ALERT : 0);
+		}
+
+		if (stats != null) {
+			stats.recordEvent(time, gesture == EyeGesture.DOUBLE_BLINK || gesture == EyeGesture.WINK,
+					levelBefore, sleepLevel, threshold);
+		}
+
+		predictSleepLevel(time, sleepLevel, threshold);
+
+		return fallingAsleep;
+	}
+
+	/**
+	 * Fit the sleep level's trajectory, and warn the listener if it's heading
+	 * for the threshold
+	 */
+	private void predictSleepLevel(long time, float sleepLevel, float threshold) {
+		if (mLevelPredictor.onLevel(time, sleepLevel, threshold)) {
+			mPreAlertCount.increment();
+			mPreAlertMillis = mLevelPredictor.getMillisToThreshold();
+			mMainHandler.post(mPreAlertRunnable);
+		}
+	}
+
+	private void notifyFallingAsleep() {
+		// The user is falling asleep
+		Log.i(TAG, "The user is falling asleep");
+		mAlertCount.increment();
+
+		if (mSleepListener != null) {
+			mSleepListener.onUserFallingAsleep();
+		}
+	}
+
+	/**
+	 * A snapshot of the drowsiness model's clock. The time spent paused is
+	 * taken out of the times given to the model, so the sleep level is frozen
+	 * while paused.
+	 */
+	private static final class ModelClock {
+		final boolean mPaused;
+
+		/**
+		 * When detection was paused, if it is
+		 */
+		final long mPauseStart;
+
+		/**
+		 * The total time detection has been paused for, up to the last resume
+		 */
+		final long mPausedMillis;
+
+		ModelClock(boolean paused, long pauseStart, long pausedMillis) {
+			mPaused = paused;
+			mPauseStart = pauseStart;
+			mPausedMillis = pausedMillis;
+		}
+
+		long now() {
+			return (mPaused ? mPauseStart : SystemClock.uptimeMillis()) - mPausedMillis;
+		}
+
+		/**
+		 * @param uptimeMillis a time since the last resume, on the
+		 *        SystemClock.uptimeMillis() clock
+		 */
+		long toModelTime(long uptimeMillis) {
+			return uptimeMillis - mPausedMillis;
 		}
 	}
 
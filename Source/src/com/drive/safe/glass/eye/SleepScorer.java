@@ -0,0 +1,163 @@
+package com.drive.safe.glass.eye;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A leaky bucket that scores eye events without locking or allocating.
+ *
+ * The sleep level and the time of the last eye event are packed into a
+ * single long, so an event arriving on any thread is applied with one
+ * compare-and-set. This class has no Android dependencies.
+ */
+public class SleepScorer {
+
+	/**
+	 * A monotonic source of time, in milliseconds
+	 */
+	public static interface TimeSource {
+		public long uptimeMillis();
+	}
+
+	/**
+	 * A TimeSource backed by System.nanoTime(), for use off the device
+	 */
+	public static final TimeSource NANO_TIME = new TimeSource() {
+		@Override
+		public long uptimeMillis() {
+			return System.nanoTime() / 1000000L;
+		}
+	};
+
+	/**
+	 * The packed state: the upper 32 bits hold the float bits of the sleep
+	 * level, the lower 32 bits hold the time of the last eye event relative to
+	 * mEpoch (0 if there hasn't been an eye event yet)
+	 */
+	private final AtomicLong mState = new AtomicLong(0);
+
+	private final TimeSource mTimeSource;
+
+	private final long mEpoch;
+
+	private volatile float mDegradationPerMillisecond;
+
+	/**
+	 * @param degradationPerMillisecond how much the sleep level is reduced by every millisecond
+	 * @param timeSource the monotonic clock used to time eye events
+	 */
+	public SleepScorer(float degradationPerMillisecond, TimeSource timeSource) {
+		mDegradationPerMillisecond = degradationPerMillisecond;
+		mTimeSource = timeSource;
+		// Relative time 0 is reserved for "no eye event yet"
+		mEpoch = timeSource.uptimeMillis() - 1;
+	}
+
+	/**
+	 * Score an eye event that happened now
+	 *
+	 * @param modifier the amount to add to the sleep level
+	 * @return the new sleep level
+	 */
+	public float score(float modifier) {
+		return score(modifier, mTimeSource.uptimeMillis());
+	}
+
+	/**
+	 * Score an eye event
+	 *
+	 * @param modifier the amount to add to the sleep level
+	 * @param time when the eye event happened, from the same clock as the TimeSource
+	 * @return the new sleep level
+	 */
+	public float score(float modifier, long time) {
+		final int eventTime = toRelativeTime(time);
+
+		while (true) {
+			final long state = mState.get();
+			final int lastEventTime = (int) state;
+
+			float level = Float.intBitsToFloat((int) (state >>> 32)) + modifier;
+			int newLastEventTime = eventTime;
+
+			// Don't apply the degradation to the first eye event
+			if (lastEventTime != 0) {
+				long elapsed = (eventTime & 0xffffffffL) - (lastEventTime & 0xffffffffL);
+				if (elapsed > 0) {
+					// The sleep level has to be at least 0
+					level = Math.max(0f, level - elapsed * mDegradationPerMillisecond);
+				} else {
+					// An older event lost the race to a newer one; keep the newer time
+					newLastEventTime = lastEventTime;
+				}
+			}
+
+			if (mState.compareAndSet(state, pack(level, newLastEventTime))) {
+				return level;
+			}
+		}
+	}
+
+	/**
+	 * @return the sleep level, degraded up to now
+	 */
+	public float getLevel() {
+		return getLevel(mTimeSource.uptimeMillis());
+	}
+
+	/**
+	 * @param time the time to degrade the sleep level up to
+	 * @return the sleep level, degraded up to time
+	 */
+	public float getLevel(long time) {
+		final long state = mState.get();
+		final int lastEventTime = (int) state;
+		float level = Float.intBitsToFloat((int) (state >>> 32));
+
+		if (lastEventTime != 0) {
+			long elapsed = (toRelativeTime(time) & 0xffffffffL) - (lastEventTime & 0xffffffffL);
+			if (elapsed > 0) {
+				level = Math.max(0f, level - elapsed * mDegradationPerMillisecond);
+			}
+		}
+
+		return level;
+	}
+
+	/**
+	 * Reset the sleep level to 0 and forget the last eye event
+	 */
+	public void reset() {
+		mState.set(0);
+	}
+
+	/**
+	 * Change how fast the sleep level leaks, keeping the level. The new rate
+	 * applies from the last eye event on.
+	 *
+	 * @param degradationPerMillisecond how much the sleep level is reduced by every millisecond
+	 */
+	public void setDegradationPerMillisecond(float degradationPerMillisecond) {
+		mDegradationPerMillisecond = degradationPerMillisecond;
+	}
+
+	/**
+	 * @return the TimeSource used to time eye events
+	 */
+	public TimeSource getTimeSource() {
+		return mTimeSource;
+	}
+
+	private int toRelativeTime(long time) {
+		long relative = time - mEpoch;
+		if (relative < 1) {
+			relative = 1;
+		}
+		// Wraps after ~49 days, far longer than any drive
+		return (int) relative;
+	}
+
+	private static long pack(float level, int eventTime) {
+		return ((long) Float.floatToRawIntBits(level) << 32) | (eventTime & 0xffffffffL);
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.drive.safe.glass.eye;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * A PERCLOS-style drowsiness model: the level is the fraction of a sliding
+ * time window that the eyes were estimated to be closed.
+ *
+ * Gesture times and closure estimates are kept in primitive ring buffers.
+ * Each gesture is added once and evicted once, so keeping the window up to
+ * date is O(1) per gesture, never rescans history and never allocates.
+ */
+public class SlidingWindowModel implements DrowsinessModel {
+
+	/**
+	 * The default length of the sliding window
+	 */
+	public static final long DEFAULT_WINDOW_MILLIS = 30000;
+
+	/**
+	 * The default number of gestures the window can hold. Once full, the
+	 * oldest gesture is evicted early.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * How long the eyes are estimated to be closed during a wink
+	 */
+	public static final int DEFAULT_CLOSURE_WINK_MILLIS = 400;
+
+	/**
+	 * How long the eyes are estimated to be closed during a double blink
+	 */
+	public static final int DEFAULT_CLOSURE_DOUBLE_BLINK_MILLIS = 250;
+
+	/**
+	 * If the fraction of the window the eyes were closed gets above
+	 * DEFAULT_THRESHOLD, then consider the user is falling asleep
+	 */
+	public static final float DEFAULT_THRESHOLD = 0.03f;
+
+	private final long mWindowMillis;
+	private final int mClosureWinkMillis;
+	private final int mClosureDoubleBlinkMillis;
+	private final float mThreshold;
+
+	private final long[] mTimes;
+	private final int[] mClosures;
+
+	private int mHead = 0;
+	private int mCount = 0;
+
+	private long mClosedMillis = 0;
+	private long mLastTime = Long.MIN_VALUE;
+
+	/**
+	 * Create a model with the default constants
+	 */
+	public SlidingWindowModel() {
+		this(DEFAULT_WINDOW_MILLIS, DEFAULT_CAPACITY, DEFAULT_CLOSURE_WINK_MILLIS,
+				DEFAULT_CLOSURE_DOUBLE_BLINK_MILLIS, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param windowMillis the length of the sliding window
+	 * @param capacity the number of gestures the window can hold
+	 * @param closureWinkMillis the estimated eye closure of a wink
+	 * @param closureDoubleBlinkMillis the estimated eye closure of a double blink
+	 * @param threshold the closed fraction at which the user is falling asleep
+	 */
+	public SlidingWindowModel(long windowMillis, int capacity, int closureWinkMillis,
+			int closureDoubleBlinkMillis, float threshold) {
+		mWindowMillis = windowMillis;
+		mClosureWinkMillis = closureWinkMillis;
+		mClosureDoubleBlinkMillis = closureDoubleBlinkMillis;
+		mThreshold = threshold;
+
+		mTimes = new long[capacity];
+		mClosures = new int[capacity];
+	}
+
+	@Override
+	public synchronized float onEyeGesture(EyeGesture gesture, long time) {
+		final int closure;
+		switch (gesture) {
+		case WINK:
+			closure = mClosureWinkMillis;
+			break;
+		case DOUBLE_BLINK:
+			closure = mClosureDoubleBlinkMillis;
+			break;
+		default:
+			return getLevel(time);
+		}
+
+		// Keep the ring ordered even if gestures arrive slightly out of order
+		time = Math.max(time, mLastTime);
+		mLastTime = time;
+
+		evictBefore(time - mWindowMillis);
+		if (mCount == mTimes.length) {
+			evictOldest();
+		}
+
+		int tail = (mHead + mCount) % mTimes.length;
+		mTimes[tail] = time;
+		mClosures[tail] = closure;
+		mCount++;
+		mClosedMillis += closure;
+
+		return (float) mClosedMillis / mWindowMillis;
+	}
+
+	@Override
+	public synchronized float getLevel(long time) {
+		evictBefore(time - mWindowMillis);
+		return (float) mClosedMillis / mWindowMillis;
+	}
+
+	/**
+	 * @param time the current time, in monotonic milliseconds
+	 * @return the number of winks and double blinks per minute over the window
+	 */
+	public synchronized float getBlinksPerMinute(long time) {
+		evictBefore(time - mWindowMillis);
+		return mCount * 60000f / mWindowMillis;
+	}
+
+	@Override
+	public float getThreshold() {
+		return mThreshold;
+	}
+
+	@Override
+	public synchronized void reset() {
+		mHead = 0;
+		mCount = 0;
+		mClosedMillis = 0;
+		mLastTime = Long.MIN_VALUE;
+	}
+
+	private void evictBefore(long time) {
+		while (mCount > 0 && mTimes[mHead] <= time) {
+			evictOldest();
+		}
+	}
+
+	private void evictOldest() {
+		mClosedMillis -= mClosures[mHead];
+		mHead = (mHead + 1) % mTimes.length;
+		mCount--;
+	}
+
+}
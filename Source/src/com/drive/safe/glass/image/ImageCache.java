@@ -0,0 +1,309 @@
+package com.drive.safe.glass.image;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * A cache of decoded image resources, bounded by the size of the bitmaps in
+ * bytes. Images are downsampled to fit the size they are shown at, and
+ * keyed by resource ID and how much they were downsampled, so asking for
+ * a slightly different size returns the same bitmap.
+ *
+ * Bitmaps evicted from the cache are kept (softly) and reused as the memory
+ * of later decodes through inBitmap. A bitmap that is on screen must be
+ * pinned while it's shown; it is only reused once it has been both evicted
+ * and unpinned.
+ */
+public class ImageCache {
+	private static final String TAG = "ImageCache";
+
+	/**
+	 * The default share of the heap the cache may use
+	 */
+	private static final int DEFAULT_HEAP_FRACTION = 16;
+
+	private static ImageCache sInstance;
+
+	private final LruCache<Long, Bitmap> mCache;
+
+	private final Bitmap.Config mPreferredConfig;
+
+	/**
+	 * Evicted bitmaps that can be decoded into
+	 */
+	private final List<SoftReference<Bitmap>> mReusable = new ArrayList<SoftReference<Bitmap>>();
+
+	/**
+	 * The number of pins on each bitmap that is on screen, and whether it has
+	 * been evicted since it was pinned. Guarded by mReusable.
+	 */
+	private final Map<Bitmap, Integer> mPins = new IdentityHashMap<Bitmap, Integer>();
+	private final Map<Bitmap, Boolean> mEvictedWhilePinned = new IdentityHashMap<Bitmap, Boolean>();
+
+	/**
+	 * The full size of each image decoded so far, packed as width << 32 | height
+	 */
+	private final Map<Integer, Long> mBounds = new HashMap<Integer, Long>();
+
+	/**
+	 * @return the cache shared by the application
+	 */
+	public static synchronized ImageCache getInstance() {
+		if (sInstance == null) {
+			int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+			sInstance = new ImageCache(maxBytes, Bitmap.Config.ARGB_8888);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @param maxBytes the total size of the cached bitmaps, in bytes
+	 * @param preferredConfig the config to decode images with
+	 */
+	public ImageCache(int maxBytes, Bitmap.Config preferredConfig) {
+		mPreferredConfig = preferredConfig;
+
+		mCache = new LruCache<Long, Bitmap>(maxBytes) {
+			@Override
+			protected int sizeOf(Long key, Bitmap bitmap) {
+				return bitmap.getRowBytes() * bitmap.getHeight();
+			}
+
+			@Override
+			protected void entryRemoved(boolean evicted, Long key, Bitmap oldBitmap, Bitmap newBitmap) {
+				if (evicted && oldBitmap.isMutable()) {
+					synchronized (mReusable) {
+						if (mPins.containsKey(oldBitmap)) {
+							// Still on screen; reuse it once it's unpinned
+							mEvictedWhilePinned.put(oldBitmap, Boolean.TRUE);
+						} else {
+							mReusable.add(new SoftReference<Bitmap>(oldBitmap));
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Get a cached image without decoding it
+	 *
+	 * @param resourceId the resource ID of the image
+	 * @param targetWidth the width the image will be shown at, or 0 if unknown
+	 * @param targetHeight the height the image will be shown at, or 0 if unknown
+	 * @return the image, or null if it isn't cached
+	 */
+	public Bitmap get(int resourceId, int targetWidth, int targetHeight) {
+		Long bounds = getBounds(resourceId);
+		if (bounds == null) {
+			// Never decoded, so it can't be cached
+			return null;
+		}
+		return mCache.get(key(resourceId, sampleSize(bounds, targetWidth, targetHeight)));
+	}
+
+	/**
+	 * Get an image, decoding it if it isn't cached. Decoding is slow, so this
+	 * shouldn't be called on the main thread.
+	 *
+	 * @param resources the Resources to load the image from
+	 * @param resourceId the resource ID of the image
+	 * @param targetWidth the width the image will be shown at, or 0 if unknown
+	 * @param targetHeight the height the image will be shown at, or 0 if unknown
+	 * @return the image, or null if it can't be decoded
+	 */
+	public Bitmap load(Resources resources, int resourceId, int targetWidth, int targetHeight) {
+		Long bounds = getBounds(resourceId);
+		if (bounds == null) {
+			bounds = decodeBounds(resources, resourceId);
+			if (bounds == null) {
+				return null;
+			}
+		}
+
+		final int sampleSize = sampleSize(bounds, targetWidth, targetHeight);
+		final Long key = key(resourceId, sampleSize);
+
+		Bitmap bitmap = mCache.get(key);
+		if (bitmap != null) {
+			return bitmap;
+		}
+
+		bitmap = decode(resources, resourceId, bounds, sampleSize);
+		if (bitmap != null) {
+			mCache.put(key, bitmap);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * @return a key that is the same for every request that gets the same
+	 *         bitmap, if the image has been decoded before, for sharing
+	 *         decodes that are in progress
+	 */
+	Long getRequestKey(int resourceId, int targetWidth, int targetHeight) {
+		Long bounds = getBounds(resourceId);
+		if (bounds == null) {
+			// Keep it apart from the downsampled keys
+			return Long.valueOf(((long) resourceId << 32) | 0x80000000L | ((targetWidth & 0x7fffL) << 16)
+					| (targetHeight & 0xffffL));
+		}
+		return key(resourceId, sampleSize(bounds, targetWidth, targetHeight));
+	}
+
+	/**
+	 * Keep a bitmap from being decoded into while it's on screen
+	 */
+	public void pin(Bitmap bitmap) {
+		synchronized (mReusable) {
+			Integer pins = mPins.get(bitmap);
+			mPins.put(bitmap, pins == null ? 1 : pins + 1);
+
+			// It may have been evicted since it was looked up
+			Iterator<SoftReference<Bitmap>> iterator = mReusable.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().get() == bitmap) {
+					iterator.remove();
+					mEvictedWhilePinned.put(bitmap, Boolean.TRUE);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release a pin taken by pin(), ie. once the bitmap is no longer shown
+	 */
+	public void unpin(Bitmap bitmap) {
+		synchronized (mReusable) {
+			Integer pins = mPins.get(bitmap);
+			if (pins == null) {
+				return;
+			}
+
+			if (pins > 1) {
+				mPins.put(bitmap, pins - 1);
+			} else {
+				mPins.remove(bitmap);
+				if (mEvictedWhilePinned.remove(bitmap) != null) {
+					mReusable.add(new SoftReference<Bitmap>(bitmap));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached image
+	 */
+	public void clear() {
+		mCache.evictAll();
+		synchronized (mReusable) {
+			mReusable.clear();
+		}
+	}
+
+	private Long getBounds(int resourceId) {
+		synchronized (mBounds) {
+			return mBounds.get(resourceId);
+		}
+	}
+
+	/**
+	 * Read the size of an image, without decoding it, to work out how much to
+	 * downsample it
+	 */
+	private Long decodeBounds(Resources resources, int resourceId) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeResource(resources, resourceId, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0) {
+			return null;
+		}
+
+		Long bounds = Long.valueOf(((long) options.outWidth << 32) | options.outHeight);
+		synchronized (mBounds) {
+			mBounds.put(resourceId, bounds);
+		}
+		return bounds;
+	}
+
+	private Bitmap decode(Resources resources, int resourceId, long bounds, int sampleSize) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+		options.inPreferredConfig = mPreferredConfig;
+		options.inMutable = true;
+
+		// Before KitKat, inBitmap needs a bitmap of the exact same size and no downsampling
+		if (sampleSize == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			options.inBitmap = takeReusable((int) (bounds >>> 32) / sampleSize, (int) bounds / sampleSize);
+		}
+
+		try {
+			return BitmapFactory.decodeResource(resources, resourceId, options);
+		} catch (IllegalArgumentException e) {
+			// The bitmap couldn't be reused after all
+			Log.w(TAG, "Couldn't reuse a bitmap", e);
+			options.inBitmap = null;
+			return BitmapFactory.decodeResource(resources, resourceId, options);
+		}
+	}
+
+	/**
+	 * Take a reusable bitmap that can hold an image of the given size
+	 */
+	private Bitmap takeReusable(int width, int height) {
+		synchronized (mReusable) {
+			Iterator<SoftReference<Bitmap>> iterator = mReusable.iterator();
+			while (iterator.hasNext()) {
+				Bitmap bitmap = iterator.next().get();
+				if (bitmap == null || bitmap.isRecycled()) {
+					iterator.remove();
+				} else if (bitmap.getWidth() == width && bitmap.getHeight() == height
+						&& bitmap.getConfig() == mPreferredConfig) {
+					iterator.remove();
+					return bitmap;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the largest power of 2 the image can be downsampled by while
+	 *         still covering the target size
+	 */
+	private static int sampleSize(long bounds, int targetWidth, int targetHeight) {
+		final int width = (int) (bounds >>> 32);
+		final int height = (int) bounds;
+
+		int sampleSize = 1;
+		if (targetWidth <= 0 || targetHeight <= 0) {
+			return sampleSize;
+		}
+
+		while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * @return the key an image is cached under
+	 */
+	private static Long key(int resourceId, int sampleSize) {
+		return Long.valueOf(((long) resourceId << 32) | sampleSize);
+	}
+
+}
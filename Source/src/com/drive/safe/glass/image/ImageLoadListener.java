@@ -0,0 +1,11 @@
+package com.drive.safe.glass.image;
+
+/**
+ * Called on the main thread once an image has been loaded
+ */
+public interface ImageLoadListener {
+	/**
+	 * @param succeeded false if the image couldn't be decoded
+	 */
+	public void onImageLoad(boolean succeeded);
+}
@@ -0,0 +1,321 @@
+package com.drive.safe.glass.image;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.widget.ImageView;
+
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
+
+/**
+ * Loads image resources into ImageViews through the ImageCache.
+ *
+ * Loading a new image into an ImageView supersedes any load still pending
+ * for it, concurrent loads of the same image share a single decode, and
+ * decoding happens on a small bounded pool instead of the AsyncTask queue.
+ * When the pool's queue is full the oldest queued decode is dropped and its
+ * requests fail, so a decode never runs on the main thread. The
+ * ImageLoadListener is called once the image is set. The bitmap an
+ * ImageView shows is pinned in the ImageCache until another image is loaded
+ * into it or it's released, so it's never decoded into while on screen.
+ * release() must be called once an ImageView is no longer used, or the
+ * loader keeps it and its bitmap.
+ *
+ * Every method must be called on the main thread.
+ */
+public class ImageLoader {
+
+	private static final int POOL_SIZE = 2;
+
+	private static final int QUEUE_SIZE = 16;
+
+	private static ImageLoader sInstance;
+
+	/**
+	 * A request to load an image into an ImageView
+	 */
+	private static class Request {
+		final ImageView imageView;
+		final ImageLoadListener listener;
+		boolean cancelled = false;
+
+		Request(ImageView imageView, ImageLoadListener listener) {
+			this.imageView = imageView;
+			this.listener = listener;
+		}
+	}
+
+	/**
+	 * A decode in progress, shared by every request for the same image
+	 */
+	private class Decode implements Runnable {
+		final Long key;
+		final Resources resources;
+		final int resourceId;
+		final int targetWidth;
+		final int targetHeight;
+		final List<Request> requests = new ArrayList<Request>(1);
+
+		Decode(Long key, Resources resources, int resourceId, int targetWidth, int targetHeight) {
+			this.key = key;
+			this.resources = resources;
+			this.resourceId = resourceId;
+			this.targetWidth = targetWidth;
+			this.targetHeight = targetHeight;
+		}
+
+		@Override
+		public void run() {
+			final long start = System.nanoTime();
+			final Bitmap bitmap = mImageCache.load(resources, resourceId, targetWidth, targetHeight);
+			mDecodeTime.record(System.nanoTime() - start);
+
+			// Held until the requests have pinned it themselves
+			if (bitmap != null) {
+				mImageCache.pin(bitmap);
+			}
+
+			mMainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					onDecoded(Decode.this, bitmap);
+				}
+			});
+		}
+	}
+
+	private final ImageCache mImageCache;
+
+	private final ThreadPoolExecutor mExecutor;
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Decodes in progress, by image key
+	 */
+	private final Map<Long, Decode> mDecodes = new HashMap<Long, Decode>();
+
+	/**
+	 * The latest request of each ImageView
+	 */
+	private final Map<ImageView, Request> mRequests = new HashMap<ImageView, Request>();
+
+	/**
+	 * The pinned bitmap each ImageView shows
+	 */
+	private final Map<ImageView, Bitmap> mShown = new HashMap<ImageView, Bitmap>();
+
+	private int mDecodeCount = 0;
+
+	private final Histogram mDecodeTime = MetricsRegistry.getInstance().histogram("image.decode_nanos");
+
+	/**
+	 * @return the loader shared by the application
+	 */
+	public static synchronized ImageLoader getInstance() {
+		if (sInstance == null) {
+			sInstance = new ImageLoader(ImageCache.getInstance());
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @param imageCache the cache to load images through
+	 */
+	public ImageLoader(ImageCache imageCache) {
+		mImageCache = imageCache;
+
+		mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						return new Thread(new Runnable() {
+							@Override
+							public void run() {
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								runnable.run();
+							}
+						}, "ImageLoader");
+					}
+				}, new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+						// Decodes are only started on the main thread, so this runs
+						// there; make room by dropping the oldest queued decode
+						Runnable oldest = executor.getQueue().poll();
+						if (oldest != null) {
+							onDecoded((Decode) oldest, null);
+						}
+						if (!executor.isShutdown()) {
+							executor.execute(runnable);
+						}
+					}
+				});
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Load an image into an ImageView, superseding any load pending for it
+	 *
+	 * @param resources the Resources to load the image from
+	 * @param resourceId the resource ID of the image
+	 * @param targetWidth the width the image will be shown at, or 0 if unknown
+	 * @param targetHeight the height the image will be shown at, or 0 if unknown
+	 * @param imageView the ImageView that will have its image set
+	 * @param listener called after the image is set, may be null
+	 */
+	public void load(Resources resources, int resourceId, int targetWidth, int targetHeight,
+			ImageView imageView, ImageLoadListener listener) {
+		cancel(imageView);
+
+		Bitmap cached = mImageCache.get(resourceId, targetWidth, targetHeight);
+		if (cached != null) {
+			// No need to decode the image again
+			deliver(new Request(imageView, listener), cached, true);
+			return;
+		}
+
+		Request request = new Request(imageView, listener);
+		mRequests.put(imageView, request);
+
+		decode(resources, resourceId, targetWidth, targetHeight, request);
+	}
+
+	/**
+	 * Decode an image into the cache ahead of time. A later load of the same
+	 * image shares this decode.
+	 *
+	 * @param resources the Resources to load the image from
+	 * @param resourceId the resource ID of the image
+	 * @param targetWidth the width the image will be shown at, or 0 if unknown
+	 * @param targetHeight the height the image will be shown at, or 0 if unknown
+	 * @param listener called once the image is cached, may be null
+	 */
+	public void prefetch(Resources resources, int resourceId, int targetWidth, int targetHeight,
+			ImageLoadListener listener) {
+		Request request = new Request(null, listener);
+
+		if (mImageCache.get(resourceId, targetWidth, targetHeight) != null) {
+			deliver(request, null, true);
+			return;
+		}
+
+		decode(resources, resourceId, targetWidth, targetHeight, request);
+	}
+
+	/**
+	 * Cancel the load pending for an ImageView, if there is one
+	 */
+	public void cancel(ImageView imageView) {
+		Request request = mRequests.remove(imageView);
+		if (request == null) {
+			return;
+		}
+
+		request.cancelled = true;
+
+		// Stop decoding if nobody else is waiting for the image
+		for (Decode decode : mDecodes.values()) {
+			if (decode.requests.remove(request) && decode.requests.isEmpty()) {
+				if (mExecutor.remove(decode)) {
+					mDecodes.remove(decode.key);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Forget an ImageView that's no longer used: cancel its pending load, clear
+	 * its image and unpin the bitmap it showed
+	 */
+	public void release(ImageView imageView) {
+		cancel(imageView);
+
+		Bitmap shown = mShown.remove(imageView);
+		if (shown != null) {
+			imageView.setImageBitmap(null);
+			mImageCache.unpin(shown);
+		}
+	}
+
+	/**
+	 * @return the number of decodes started, for checking that loads are shared
+	 */
+	public int getDecodeCount() {
+		return mDecodeCount;
+	}
+
+	/**
+	 * Add a request to the decode of its image, starting the decode if needed
+	 */
+	private void decode(Resources resources, int resourceId, int targetWidth, int targetHeight,
+			Request request) {
+		Long key = mImageCache.getRequestKey(resourceId, targetWidth, targetHeight);
+
+		Decode decode = mDecodes.get(key);
+		if (decode != null) {
+			// Share the decode that's already running
+			decode.requests.add(request);
+			return;
+		}
+
+		decode = new Decode(key, resources, resourceId, targetWidth, targetHeight);
+		mDecodes.put(key, decode);
+		mDecodeCount++;
+		decode.requests.add(request);
+		mExecutor.execute(decode);
+	}
+
+	private void onDecoded(Decode decode, Bitmap bitmap) {
+		if (mDecodes.get(decode.key) == decode) {
+			mDecodes.remove(decode.key);
+		}
+
+		for (Request request : decode.requests) {
+			if (request.imageView == null) {
+				// A prefetch
+				deliver(request, null, bitmap != null);
+			} else if (!request.cancelled && mRequests.get(request.imageView) == request) {
+				mRequests.remove(request.imageView);
+				if (bitmap != null) {
+					deliver(request, bitmap, true);
+				}
+			}
+		}
+
+		if (bitmap != null) {
+			mImageCache.unpin(bitmap);
+		}
+	}
+
+	private void deliver(Request request, Bitmap bitmap, boolean succeeded) {
+		if (request.imageView != null) {
+			mImageCache.pin(bitmap);
+			request.imageView.setImageBitmap(bitmap);
+
+			Bitmap previous = mShown.put(request.imageView, bitmap);
+			if (previous != null) {
+				mImageCache.unpin(previous);
+			}
+		}
+
+		if (request.listener != null) {
+			request.listener.onImageLoad(succeeded);
+		}
+	}
+
+}
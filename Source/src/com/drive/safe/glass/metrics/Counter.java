@@ -0,0 +1,39 @@
+package com.drive.safe.glass.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, ie. the number of winks. Safe to increment
+ * from any thread without locking or allocating.
+ */
+public class Counter {
+
+	private final String mName;
+
+	private final AtomicLong mCount = new AtomicLong(0);
+
+	Counter(String name) {
+		mName = name;
+	}
+
+	public void increment() {
+		mCount.incrementAndGet();
+	}
+
+	public void add(long amount) {
+		mCount.addAndGet(amount);
+	}
+
+	public long get() {
+		return mCount.get();
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	void reset() {
+		mCount.set(0);
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.drive.safe.glass.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that goes up and down, ie. the sleep level. Safe to set from any
+ * thread without locking or allocating.
+ */
+public class Gauge {
+
+	private final String mName;
+
+	/**
+	 * The bits of the double value
+	 */
+	private final AtomicLong mValue = new AtomicLong(Double.doubleToRawLongBits(0d));
+
+	Gauge(String name) {
+		mName = name;
+	}
+
+	public void set(double value) {
+		mValue.set(Double.doubleToRawLongBits(value));
+	}
+
+	public double get() {
+		return Double.longBitsToDouble(mValue.get());
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	void reset() {
+		set(0d);
+	}
+
+}
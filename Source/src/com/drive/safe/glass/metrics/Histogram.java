@@ -0,0 +1,142 @@
+package com.drive.safe.glass.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values, ie. latencies in nanoseconds, in log-linear buckets like an
+ * HDR histogram: every power of two is split into SUB_BUCKETS buckets, so
+ * any value is kept to within 1/SUB_BUCKETS of itself, from 0 up to
+ * Long.MAX_VALUE, in a fixed amount of memory.
+ *
+ * Recording a value takes no lock and allocates nothing.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * The number of buckets each power of two is split into
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Values below SUB_BUCKETS get a bucket each, the rest of the positive
+	 * longs take a row of SUB_BUCKETS buckets per power of two
+	 */
+	static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final String mName;
+
+	private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong mCount = new AtomicLong(0);
+	private final AtomicLong mSum = new AtomicLong(0);
+	private final AtomicLong mMax = new AtomicLong(0);
+
+	Histogram(String name) {
+		mName = name;
+	}
+
+	/**
+	 * @param value the value to count, negative values are counted as 0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		mBuckets.incrementAndGet(getBucket(value));
+		mCount.incrementAndGet();
+		mSum.addAndGet(value);
+
+		long max;
+		while (value > (max = mMax.get())) {
+			if (mMax.compareAndSet(max, value)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return mCount.get();
+	}
+
+	/**
+	 * @return the mean of the values, or 0 if there are none
+	 */
+	public double getMean() {
+		long count = mCount.get();
+		return count == 0 ? 0 : mSum.get() / (double) count;
+	}
+
+	public long getMax() {
+		return mMax.get();
+	}
+
+	/**
+	 * @param percentile the percentile to compute, between 0 and 100
+	 * @return the highest value that could be in the percentile's bucket, or 0
+	 *         if there are no values
+	 */
+	public long getPercentile(double percentile) {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += mBuckets.get(i);
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100d * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += mBuckets.get(i);
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), mMax.get());
+			}
+		}
+		return mMax.get();
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			mBuckets.set(i, 0);
+		}
+		mCount.set(0);
+		mSum.set(0);
+		mMax.set(0);
+	}
+
+	static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		// Keep the highest SUB_BUCKET_BITS bits after the leading one
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long getLowestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+
+	static long getHighestValue(int bucket) {
+		if (bucket == BUCKET_COUNT - 1) {
+			return Long.MAX_VALUE;
+		}
+		return getLowestValue(bucket + 1) - 1;
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.drive.safe.glass.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the app's counters, gauges and histograms by name.
+ *
+ * Looking a metric up takes a lock, so look it up once and keep it; updating
+ * it is lock and allocation free. The values can be copied out with
+ * snapshot(), or written out as text for the diagnostics card.
+ */
+public class MetricsRegistry {
+
+	private static MetricsRegistry sInstance;
+
+	/**
+	 * @return the registry shared by the whole app
+	 */
+	public static synchronized MetricsRegistry getInstance() {
+		if (sInstance == null) {
+			sInstance = new MetricsRegistry();
+		}
+		return sInstance;
+	}
+
+	private final List<Counter> mCounters = new ArrayList<Counter>();
+	private final List<Gauge> mGauges = new ArrayList<Gauge>();
+	private final List<Histogram> mHistograms = new ArrayList<Histogram>();
+
+	/**
+	 * @return the counter with the name, created if it doesn't exist yet
+	 */
+	public synchronized Counter counter(String name) {
+		for (int i = 0; i < mCounters.size(); i++) {
+			if (mCounters.get(i).getName().equals(name)) {
+				return mCounters.get(i);
+			}
+		}
+
+		Counter counter = new Counter(name);
+		mCounters.add(counter);
+		return counter;
+	}
+
+	/**
+	 * @return the gauge with the name, created if it doesn't exist yet
+	 */
+	public synchronized Gauge gauge(String name) {
+		for (int i = 0; i < mGauges.size(); i++) {
+			if (mGauges.get(i).getName().equals(name)) {
+				return mGauges.get(i);
+			}
+		}
+
+		Gauge gauge = new Gauge(name);
+		mGauges.add(gauge);
+		return gauge;
+	}
+
+	/**
+	 * @return the histogram with the name, created if it doesn't exist yet
+	 */
+	public synchronized Histogram histogram(String name) {
+		for (int i = 0; i < mHistograms.size(); i++) {
+			if (mHistograms.get(i).getName().equals(name)) {
+				return mHistograms.get(i);
+			}
+		}
+
+		Histogram histogram = new Histogram(name);
+		mHistograms.add(histogram);
+		return histogram;
+	}
+
+	/**
+	 * @return a copy of every value right now
+	 */
+	public synchronized MetricsSnapshot snapshot() {
+		MetricsSnapshot snapshot = new MetricsSnapshot(System.nanoTime());
+
+		for (int i = 0; i < mCounters.size(); i++) {
+			Counter counter = mCounters.get(i);
+			snapshot.putCounter(counter.getName(), counter.get());
+		}
+		for (int i = 0; i < mGauges.size(); i++) {
+			Gauge gauge = mGauges.get(i);
+			snapshot.putGauge(gauge.getName(), gauge.get());
+		}
+		for (int i = 0; i < mHistograms.size(); i++) {
+			Histogram histogram = mHistograms.get(i);
+			snapshot.putHistogram(histogram.getName(), histogram.getCount(), histogram.getMean(),
+					histogram.getPercentile(50), histogram.getPercentile(99), histogram.getMax());
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Write one line per metric, ending in '\n'. Histograms are assumed to
+	 * hold nanoseconds and are written in milliseconds.
+	 *
+	 * @param out cleared, then filled with the text
+	 */
+	public synchronized void describe(StringBuilder out) {
+		out.setLength(0);
+
+		for (int i = 0; i < mCounters.size(); i++) {
+			Counter counter = mCounters.get(i);
+			out.append(counter.getName()).append(": ").append(counter.get()).append('\n');
+		}
+		for (int i = 0; i < mGauges.size(); i++) {
+			Gauge gauge = mGauges.get(i);
+			out.append(gauge.getName()).append(": ");
+			appendFixed(out, gauge.get());
+			out.append('\n');
+		}
+		for (int i = 0; i < mHistograms.size(); i++) {
+			Histogram histogram = mHistograms.get(i);
+			out.append(histogram.getName()).append(": p50 ");
+			appendFixed(out, histogram.getPercentile(50) / 1000000d);
+			out.append(" p99 ");
+			appendFixed(out, histogram.getPercentile(99) / 1000000d);
+			out.append(" ms (").append(histogram.getCount()).append(")\n");
+		}
+	}
+
+	/**
+	 * Reset every value, keeping the metrics themselves
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < mCounters.size(); i++) {
+			mCounters.get(i).reset();
+		}
+		for (int i = 0; i < mGauges.size(); i++) {
+			mGauges.get(i).reset();
+		}
+		for (int i = 0; i < mHistograms.size(); i++) {
+			mHistograms.get(i).reset();
+		}
+	}
+
+	/**
+	 * Append a value with two decimals, without going through String.format
+	 */
+	private static void appendFixed(StringBuilder out, double value) {
+		long hundredths = Math.round(value * 100);
+		if (hundredths < 0) {
+			out.append('-');
+			hundredths = -hundredths;
+		}
+
+		out.append(hundredths / 100).append('.');
+		long fraction = hundredths % 100;
+		if (fraction < 10) {
+			out.append('0');
+		}
+		out.append(fraction);
+	}
+
+}
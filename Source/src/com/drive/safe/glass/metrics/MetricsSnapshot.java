@@ -0,0 +1,107 @@
+package com.drive.safe.glass.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A copy of the registry's values at one moment
+ */
+public class MetricsSnapshot {
+
+	/**
+	 * The summary of a histogram's values
+	 */
+	public static class HistogramValues {
+		public final long count;
+		public final double mean;
+		public final long p50;
+		public final long p99;
+		public final long max;
+
+		HistogramValues(long count, double mean, long p50, long p99, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+	}
+
+	private final long mTimeNanos;
+
+	private final Map<String, Long> mCounters = new LinkedHashMap<String, Long>();
+	private final Map<String, Double> mGauges = new LinkedHashMap<String, Double>();
+	private final Map<String, HistogramValues> mHistograms = new LinkedHashMap<String, HistogramValues>();
+
+	MetricsSnapshot(long timeNanos) {
+		mTimeNanos = timeNanos;
+	}
+
+	void putCounter(String name, long count) {
+		mCounters.put(name, count);
+	}
+
+	void putGauge(String name, double value) {
+		mGauges.put(name, value);
+	}
+
+	void putHistogram(String name, long count, double mean, long p50, long p99, long max) {
+		mHistograms.put(name, new HistogramValues(count, mean, p50, p99, max));
+	}
+
+	/**
+	 * @return when the snapshot was taken, from System.nanoTime()
+	 */
+	public long getTimeNanos() {
+		return mTimeNanos;
+	}
+
+	/**
+	 * @return the counter's value, or 0 if there is no such counter
+	 */
+	public long getCounter(String name) {
+		Long count = mCounters.get(name);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * @return the gauge's value, or 0 if there is no such gauge
+	 */
+	public double getGauge(String name) {
+		Double value = mGauges.get(name);
+		return value == null ? 0 : value;
+	}
+
+	/**
+	 * @return the histogram's values, or null if there is no such histogram
+	 */
+	public HistogramValues getHistogram(String name) {
+		return mHistograms.get(name);
+	}
+
+	public Map<String, Long> getCounters() {
+		return mCounters;
+	}
+
+	public Map<String, Double> getGauges() {
+		return mGauges;
+	}
+
+	public Map<String, HistogramValues> getHistograms() {
+		return mHistograms;
+	}
+
+	/**
+	 * @param earlier a snapshot taken before this one
+	 * @return how many times per second the counter went up between the two
+	 *         snapshots
+	 */
+	public double getRate(MetricsSnapshot earlier, String counter) {
+		long elapsed = mTimeNanos - earlier.mTimeNanos;
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return (getCounter(counter) - earlier.getCounter(counter)) * 1e9 / elapsed;
+	}
+
+}
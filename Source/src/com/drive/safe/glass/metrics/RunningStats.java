@@ -0,0 +1,75 @@
+package com.drive.safe.glass.metrics;
+
+/**
+ * The count, mean, variance, minimum and maximum of a stream of values, in
+ * constant memory, with Welford's method. It isn't thread safe.
+ */
+public class RunningStats {
+
+	private long mCount = 0;
+	private double mMean = 0;
+	private double mSumOfSquares = 0;
+	private double mMin = Double.NaN;
+	private double mMax = Double.NaN;
+
+	public void add(double value) {
+		mCount++;
+
+		final double delta = value - mMean;
+		mMean += delta / mCount;
+		mSumOfSquares += delta * (value - mMean);
+
+		if (mCount == 1) {
+			mMin = value;
+			mMax = value;
+		} else {
+			mMin = Math.min(mMin, value);
+			mMax = Math.max(mMax, value);
+		}
+	}
+
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return the mean, or 0 if there are no values
+	 */
+	public double getMean() {
+		return mMean;
+	}
+
+	/**
+	 * @return the sample variance, or 0 if there are fewer than two values
+	 */
+	public double getVariance() {
+		return mCount < 2 ? 0 : mSumOfSquares / (mCount - 1);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the smallest value, or NaN if there are no values
+	 */
+	public double getMin() {
+		return mMin;
+	}
+
+	/**
+	 * @return the largest value, or NaN if there are no values
+	 */
+	public double getMax() {
+		return mMax;
+	}
+
+	public void reset() {
+		mCount = 0;
+		mMean = 0;
+		mSumOfSquares = 0;
+		mMin = Double.NaN;
+		mMax = Double.NaN;
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.drive.safe.glass.metrics;
+
+/**
+ * Estimates quantiles of a stream of values in constant memory, with a
+ * merging t-digest: values are collected in a buffer and, when it fills,
+ * merged into a bounded set of weighted centroids. Centroids are kept small
+ * near the ends of the distribution, so the tails stay accurate.
+ *
+ * All storage is allocated up front; adding a value is a store into the
+ * buffer, with an occasional merge of a fixed size. It isn't thread safe.
+ */
+public class TDigest {
+
+	public static final double DEFAULT_COMPRESSION = 100;
+
+	private final double mCompression;
+
+	/*
+	 * The merged centroids, sorted by mean
+	 */
+	private final double[] mMeans;
+	private final double[] mWeights;
+	private int mCentroidCount = 0;
+
+	/*
+	 * Values added since the last merge, followed by room to merge the
+	 * centroids in with them
+	 */
+	private final double[] mBufferMeans;
+	private final double[] mBufferWeights;
+	private final int mBufferCapacity;
+	private int mBufferCount = 0;
+
+	private double mTotalWeight = 0;
+	private double mMin = Double.NaN;
+	private double mMax = Double.NaN;
+
+	public TDigest() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param compression more is more accurate and takes more memory; the
+	 *        digest keeps about compression / 2 centroids
+	 */
+	public TDigest(double compression) {
+		mCompression = compression;
+
+		final int maxCentroids = (int) Math.ceil(compression) + 8;
+		mMeans = new double[maxCentroids];
+		mWeights = new double[maxCentroids];
+
+		mBufferCapacity = maxCentroids * 4;
+		mBufferMeans = new double[mBufferCapacity + maxCentroids];
+		mBufferWeights = new double[mBufferCapacity + maxCentroids];
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+
+		if (mBufferCount == mBufferCapacity) {
+			merge();
+		}
+
+		mBufferMeans[mBufferCount] = value;
+		mBufferWeights[mBufferCount] = 1;
+		mBufferCount++;
+
+		if (mTotalWeight == 0 && mBufferCount == 1) {
+			mMin = value;
+			mMax = value;
+		} else {
+			mMin = Math.min(mMin, value);
+			mMax = Math.max(mMax, value);
+		}
+		mTotalWeight++;
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return (long) mTotalWeight;
+	}
+
+	/**
+	 * @param q the quantile, between 0 and 1
+	 * @return the estimated value at the quantile, or NaN if there are no values
+	 */
+	public double quantile(double q) {
+		merge();
+		if (mCentroidCount == 0) {
+			return Double.NaN;
+		}
+		if (mCentroidCount == 1 || q <= 0) {
+			return q <= 0 ? mMin : mMeans[0];
+		}
+		if (q >= 1) {
+			return mMax;
+		}
+
+		// Interpolate between the centers of neighbouring centroids
+		final double target = q * mTotalWeight;
+		double previousCenter = 0;
+		double previousMean = mMin;
+		double weightSoFar = 0;
+
+		for (int i = 0; i < mCentroidCount; i++) {
+			final double center = weightSoFar + mWeights[i] / 2;
+			if (target < center) {
+				final double fraction = (target - previousCenter) / (center - previousCenter);
+				return previousMean + fraction * (mMeans[i] - previousMean);
+			}
+
+			previousCenter = center;
+			previousMean = mMeans[i];
+			weightSoFar += mWeights[i];
+		}
+
+		final double fraction = (target - previousCenter) / (mTotalWeight - previousCenter);
+		return previousMean + fraction * (mMax - previousMean);
+	}
+
+	public double getMin() {
+		return mMin;
+	}
+
+	public double getMax() {
+		return mMax;
+	}
+
+	public void reset() {
+		mCentroidCount = 0;
+		mBufferCount = 0;
+		mTotalWeight = 0;
+		mMin = Double.NaN;
+		mMax = Double.NaN;
+	}
+
+	/**
+	 * Merge the buffered values into the centroids
+	 */
+	private void merge() {
+		if (mBufferCount == 0) {
+			return;
+		}
+
+		// Sort the centroids in with the buffered values
+		int count = mBufferCount;
+		System.arraycopy(mMeans, 0, mBufferMeans, count, mCentroidCount);
+		System.arraycopy(mWeights, 0, mBufferWeights, count, mCentroidCount);
+		count += mCentroidCount;
+		sort(mBufferMeans, mBufferWeights, 0, count - 1);
+
+		// Walk the sorted centroids, merging neighbours while the merged
+		// centroid stays within one unit of the scale function
+		int merged = 0;
+		mMeans[0] = mBufferMeans[0];
+		mWeights[0] = mBufferWeights[0];
+		double weightBefore = 0;
+		double limit = mTotalWeight * limitAfter(0);
+
+		for (int i = 1; i < count; i++) {
+			final double weight = mBufferWeights[i];
+			if (weightBefore + mWeights[merged] + weight <= limit) {
+				mWeights[merged] += weight;
+				mMeans[merged] += (mBufferMeans[i] - mMeans[merged]) * weight / mWeights[merged];
+			} else {
+				weightBefore += mWeights[merged];
+				limit = mTotalWeight * limitAfter(weightBefore / mTotalWeight);
+
+				merged++;
+				mMeans[merged] = mBufferMeans[i];
+				mWeights[merged] = weight;
+			}
+		}
+
+		mCentroidCount = merged + 1;
+		mBufferCount = 0;
+	}
+
+	/**
+	 * @return the quantile one unit of the k1 scale function after q
+	 */
+	private double limitAfter(double q) {
+		final double k = mCompression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+		if (k >= mCompression / 4) {
+			return 1;
+		}
+		return (Math.sin(k * 2 * Math.PI / mCompression) + 1) / 2;
+	}
+
+	/**
+	 * Sort centroids by mean, in place
+	 */
+	private static void sort(double[] means, double[] weights, int low, int high) {
+		while (high - low > 16) {
+			final double pivot = means[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (means[i] < pivot) {
+					i++;
+				}
+				while (means[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(means, weights, i++, j--);
+				}
+			}
+
+			// Recurse into the smaller half, loop on the larger one
+			if (j - low < high - i) {
+				sort(means, weights, low, j);
+				low = i;
+			} else {
+				sort(means, weights, i, high);
+				high = j;
+			}
+		}
+
+		for (int i = low + 1; i <= high; i++) {
+			final double mean = means[i];
+			final double weight = weights[i];
+			int j = i - 1;
+			while (j >= low && means[j] > mean) {
+				means[j + 1] = means[j];
+				weights[j + 1] = weights[j];
+				j--;
+			}
+			means[j + 1] = mean;
+			weights[j + 1] = weight;
+		}
+	}
+
+	private static void swap(double[] means, double[] weights, int a, int b) {
+		double mean = means[a];
+		means[a] = means[b];
+		means[b] = mean;
+
+		double weight = weights[a];
+		weights[a] = weights[b];
+		weights[b] = weight;
+	}
+
+}
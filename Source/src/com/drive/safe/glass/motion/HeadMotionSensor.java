@@ -0,0 +1,212 @@
+package com.drive.safe.glass.motion;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Reads the accelerometer and gyroscope on a background thread and looks
+ * for head nods with a HeadNodDetector.
+ *
+ * Samples are copied into SampleRings as they arrive and processed in
+ * batches every BATCH_MILLIS, in time order across both sensors. Sensor
+ * batching in the hardware (maxReportLatency) needs API 19, so the batching
+ * is done here instead.
+ */
+public class HeadMotionSensor implements SensorEventListener {
+
+	/**
+	 * An interface for a listener to know when the head nods
+	 */
+	public static interface HeadNodListener {
+		/**
+		 * Called on the motion thread, up to a batch after the nod
+		 *
+		 * @param uptimeMillis when the nod happened, on the
+		 *        SystemClock.uptimeMillis() clock
+		 */
+		public void onHeadNod(long uptimeMillis);
+	}
+
+	/**
+	 * 50 samples a second is plenty for a nod, which takes about a second
+	 */
+	private static final int SAMPLING_PERIOD_MICROS = 20000;
+
+	/**
+	 * How often the collected samples are processed
+	 */
+	private static final long BATCH_MILLIS = 250;
+
+	/**
+	 * Room for twice a batch of samples, in case the thread falls behind
+	 */
+	private static final int RING_CAPACITY = (int) (2 * BATCH_MILLIS * 1000 / SAMPLING_PERIOD_MICROS);
+
+	private final SensorManager mSensorManager;
+	private final Sensor mAccelerometer;
+	private final Sensor mGyroscope;
+
+	private final HeadNodDetector mDetector;
+	private final HeadNodListener mListener;
+
+	private final SampleRing mAccelerometerSamples = new SampleRing(RING_CAPACITY);
+	private final SampleRing mGyroscopeSamples = new SampleRing(RING_CAPACITY);
+
+	/**
+	 * SystemClock.uptimeMillis() in nanoseconds, minus the timestamp of the
+	 * latest accelerometer sample. Sensor timestamps don't share a clock with
+	 * uptimeMillis() on every device, so the offset is measured as samples arrive.
+	 */
+	private long mSensorClockOffsetNanos;
+
+	private HandlerThread mThread;
+	private Handler mHandler;
+
+	private boolean mRunning = false;
+
+	private final Runnable mBatchRunnable = new Runnable() {
+		@Override
+		public void run() {
+			processSamples();
+			mHandler.postDelayed(this, BATCH_MILLIS);
+		}
+	};
+
+	private final Runnable mResetRunnable = new Runnable() {
+		@Override
+		public void run() {
+			// The posture may have changed by the time the sensors restart
+			mAccelerometerSamples.clear();
+			mGyroscopeSamples.clear();
+			mDetector.reset();
+		}
+	};
+
+	/**
+	 * @param detector looks for nods in the samples, on the motion thread
+	 * @param listener told about every nod
+	 */
+	public HeadMotionSensor(Context context, HeadNodDetector detector, HeadNodListener listener) {
+		mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+		mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+		mGyroscope = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+
+		mDetector = detector;
+		mListener = listener;
+	}
+
+	/**
+	 * @return false if there's no accelerometer to detect nods with
+	 */
+	public boolean isSupported() {
+		return mAccelerometer != null;
+	}
+
+	/**
+	 * Start reading the sensors. Does nothing if already started.
+	 */
+	public void start() {
+		if (mRunning || !isSupported()) {
+			return;
+		}
+		mRunning = true;
+
+		if (mThread == null) {
+			mThread = new HandlerThread("HeadMotion", Process.THREAD_PRIORITY_BACKGROUND);
+			mThread.start();
+			mHandler = new Handler(mThread.getLooper());
+		}
+
+		mSensorManager.registerListener(this, mAccelerometer, SAMPLING_PERIOD_MICROS, mHandler);
+		if (mGyroscope != null) {
+			mSensorManager.registerListener(this, mGyroscope, SAMPLING_PERIOD_MICROS, mHandler);
+		}
+
+		mHandler.postDelayed(mBatchRunnable, BATCH_MILLIS);
+	}
+
+	/**
+	 * Stop reading the sensors, keeping the motion thread for a restart. Does
+	 * nothing if already stopped.
+	 */
+	public void stop() {
+		if (!mRunning) {
+			return;
+		}
+		mRunning = false;
+
+		mSensorManager.unregisterListener(this);
+
+		mHandler.removeCallbacks(mBatchRunnable);
+		// Runs after any samples already delivered to the motion thread
+		mHandler.post(mResetRunnable);
+	}
+
+	/**
+	 * Stop reading the sensors and end the motion thread
+	 */
+	public void release() {
+		stop();
+
+		if (mThread != null) {
+			mThread.quit();
+			mThread = null;
+			mHandler = null;
+		}
+	}
+
+	/**
+	 * @return the number of samples dropped because a batch fell behind
+	 */
+	public long getDroppedCount() {
+		return mAccelerometerSamples.getDroppedCount() + mGyroscopeSamples.getDroppedCount();
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent event) {
+		// The event is reused by the framework, so only its values are kept
+		final float[] values = event.values;
+		if (event.sensor == mAccelerometer) {
+			mSensorClockOffsetNanos = SystemClock.uptimeMillis() * 1000000L - event.timestamp;
+			mAccelerometerSamples.add(event.timestamp, values[0], values[1], values[2]);
+		} else if (event.sensor == mGyroscope) {
+			mGyroscopeSamples.add(event.timestamp, values[0], values[1], values[2]);
+		}
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+		// Nothing to do here
+	}
+
+	/**
+	 * Give the detector every collected sample, oldest first
+	 */
+	private void processSamples() {
+		final SampleRing accelerometer = mAccelerometerSamples;
+		final SampleRing gyroscope = mGyroscopeSamples;
+
+		while (accelerometer.size() > 0 || gyroscope.size() > 0) {
+			if (gyroscope.size() > 0
+					&& (accelerometer.size() == 0 || gyroscope.getTime(0) <= accelerometer.getTime(0))) {
+				mDetector.onGyroscope(gyroscope.getTime(0), gyroscope.getX(0), gyroscope.getY(0),
+						gyroscope.getZ(0));
+				gyroscope.removeFirst();
+			} else {
+				if (mDetector.onAccelerometer(accelerometer.getTime(0), accelerometer.getX(0),
+						accelerometer.getY(0), accelerometer.getZ(0))) {
+					mListener.onHeadNod((accelerometer.getTime(0) + mSensorClockOffsetNanos) / 1000000L);
+				}
+				accelerometer.removeFirst();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.drive.safe.glass.motion;
+
+/**
+ * Detects the head nods of micro-sleeps from accelerometer and gyroscope
+ * samples, one sample at a time.
+ *
+ * The head's pitch is taken from the direction of gravity and smoothed
+ * with a fast low-pass filter, and a much slower one tracks the driver's
+ * usual posture. A nod is the pitch moving away from the posture by
+ * dropDegrees and coming back within maxNodMillis, with a jerk of at least
+ * recoveryDegreesPerSecond on the way back if there is a gyroscope.
+ * Holding the head away for longer, ie. to look at something, isn't a nod.
+ *
+ * Processing a sample allocates nothing. This class has no Android
+ * dependencies; sample times are in nanoseconds.
+ */
+public class HeadNodDetector {
+
+	public static final float DEFAULT_DROP_DEGREES = 15f;
+	public static final long DEFAULT_MAX_NOD_MILLIS = 1500;
+	public static final float DEFAULT_RECOVERY_DEGREES_PER_SECOND = 45f;
+
+	/**
+	 * How quickly the smoothed pitch follows the measured pitch
+	 */
+	private static final float PITCH_TIME_CONSTANT_MILLIS = 80f;
+
+	/**
+	 * How quickly the posture follows the smoothed pitch
+	 */
+	private static final float POSTURE_TIME_CONSTANT_MILLIS = 8000f;
+
+	private static final int STATE_LEVEL = 0;
+	private static final int STATE_DROPPED = 1;
+	private static final int STATE_HELD = 2;
+
+	private final float mDropDegrees;
+	private final long mMaxNodNanos;
+	private final float mRecoveryDegreesPerSecond;
+
+	private boolean mInitialized = false;
+	private long mLastTime;
+	private float mPitch;
+	private float mPosture;
+
+	private int mState = STATE_LEVEL;
+	private long mDropTime;
+
+	private boolean mHasGyroscope = false;
+	private float mPeakRate;
+
+	private int mNodCount = 0;
+
+	/**
+	 * Create a detector with the default constants
+	 */
+	public HeadNodDetector() {
+		this(DEFAULT_DROP_DEGREES, DEFAULT_MAX_NOD_MILLIS, DEFAULT_RECOVERY_DEGREES_PER_SECOND);
+	}
+
+	/**
+	 * @param dropDegrees how far the head has to move from the posture
+	 * @param maxNodMillis how soon it has to come back
+	 * @param recoveryDegreesPerSecond how fast it has to come back
+	 */
+	public HeadNodDetector(float dropDegrees, long maxNodMillis, float recoveryDegreesPerSecond) {
+		mDropDegrees = dropDegrees;
+		mMaxNodNanos = maxNodMillis * 1000000L;
+		mRecoveryDegreesPerSecond = recoveryDegreesPerSecond;
+	}
+
+	/**
+	 * @param time when the sample was taken, in nanoseconds
+	 * @param x acceleration along the device's x axis, in m/s^2
+	 * @param y acceleration along the device's y axis
+	 * @param z acceleration along the device's z axis
+	 * @return true if the sample completed a nod
+	 */
+	public boolean onAccelerometer(long time, float x, float y, float z) {
+		// Nodding turns the head around the x axis, moving gravity between y and z
+		final float pitch = (float) Math.toDegrees(Math.atan2(z, y));
+
+		if (!mInitialized) {
+			mInitialized = true;
+			mLastTime = time;
+			mPitch = pitch;
+			mPosture = pitch;
+			return false;
+		}
+
+		final float elapsedMillis = Math.max(0, time - mLastTime) / 1000000f;
+		mLastTime = time;
+
+		mPitch += (pitch - mPitch) * elapsedMillis / (PITCH_TIME_CONSTANT_MILLIS + elapsedMillis);
+		if (mState != STATE_DROPPED) {
+			// The posture stays put during a nod, so the nod can't drag it along
+			mPosture += (mPitch - mPosture) * elapsedMillis / (POSTURE_TIME_CONSTANT_MILLIS + elapsedMillis);
+		}
+
+		final float deviation = Math.abs(mPitch - mPosture);
+
+		switch (mState) {
+		case STATE_LEVEL:
+			if (deviation >= mDropDegrees) {
+				mState = STATE_DROPPED;
+				mDropTime = time;
+				mPeakRate = 0;
+			}
+			return false;
+
+		case STATE_DROPPED:
+			if (time - mDropTime > mMaxNodNanos) {
+				// Looking at something, not nodding off
+				mState = STATE_HELD;
+				return false;
+			}
+			if (deviation < mDropDegrees / 2) {
+				mState = STATE_LEVEL;
+				if (!mHasGyroscope || mPeakRate >= mRecoveryDegreesPerSecond) {
+					mNodCount++;
+					return true;
+				}
+			}
+			return false;
+
+		default:
+			if (deviation < mDropDegrees / 2) {
+				mState = STATE_LEVEL;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @param time when the sample was taken, in nanoseconds
+	 * @param x rotation around the device's x axis, in rad/s
+	 * @param y rotation around the device's y axis
+	 * @param z rotation around the device's z axis
+	 */
+	public void onGyroscope(long time, float x, float y, float z) {
+		mHasGyroscope = true;
+
+		if (mState == STATE_DROPPED) {
+			mPeakRate = Math.max(mPeakRate, Math.abs((float) Math.toDegrees(x)));
+		}
+	}
+
+	/**
+	 * @return the number of nods detected so far
+	 */
+	public int getNodCount() {
+		return mNodCount;
+	}
+
+	/**
+	 * Forget the posture and any nod in progress
+	 */
+	public void reset() {
+		mInitialized = false;
+		mState = STATE_LEVEL;
+	}
+
+}
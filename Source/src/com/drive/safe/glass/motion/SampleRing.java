@@ -0,0 +1,99 @@
+package com.drive.safe.glass.motion;
+
+/**
+ * A fixed size queue of three axis sensor samples, kept in primitive
+ * arrays so adding and removing samples allocates nothing. Once full, the
+ * oldest sample is dropped. It isn't thread safe.
+ */
+public class SampleRing {
+
+	private final long[] mTimes;
+	private final float[] mX;
+	private final float[] mY;
+	private final float[] mZ;
+
+	private int mHead = 0;
+	private int mSize = 0;
+
+	private long mDropped = 0;
+
+	/**
+	 * @param capacity the number of samples to hold
+	 */
+	public SampleRing(int capacity) {
+		mTimes = new long[capacity];
+		mX = new float[capacity];
+		mY = new float[capacity];
+		mZ = new float[capacity];
+	}
+
+	/**
+	 * Add a sample after the newest one
+	 *
+	 * @return false if the oldest sample was dropped to make room
+	 */
+	public boolean add(long time, float x, float y, float z) {
+		boolean dropped = false;
+		if (mSize == mTimes.length) {
+			removeFirst();
+			mDropped++;
+			dropped = true;
+		}
+
+		int index = (mHead + mSize) % mTimes.length;
+		mTimes[index] = time;
+		mX[index] = x;
+		mY[index] = y;
+		mZ[index] = z;
+		mSize++;
+
+		return !dropped;
+	}
+
+	/**
+	 * Remove the oldest sample
+	 */
+	public void removeFirst() {
+		if (mSize == 0) {
+			return;
+		}
+		mHead = (mHead + 1) % mTimes.length;
+		mSize--;
+	}
+
+	public void clear() {
+		mHead = 0;
+		mSize = 0;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @param i the age of the sample, 0 being the oldest
+	 */
+	public long getTime(int i) {
+		return mTimes[(mHead + i) % mTimes.length];
+	}
+
+	public float getX(int i) {
+		return mX[(mHead + i) % mTimes.length];
+	}
+
+	public float getY(int i) {
+		return mY[(mHead + i) % mTimes.length];
+	}
+
+	public float getZ(int i) {
+		return mZ[(mHead + i) % mTimes.length];
+	}
+
+	/**
+	 * @return the number of samples dropped because the ring was full
+	 */
+	public long getDroppedCount() {
+		return mDropped;
+	}
+
+}
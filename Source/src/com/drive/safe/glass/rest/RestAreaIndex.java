@@ -0,0 +1,376 @@
+package com.drive.safe.glass.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The locations of rest areas in a k-d tree that is memory-mapped straight
+ * from a file, so opening it reads nothing and finding the nearest rest
+ * areas needs no network.
+ *
+ * The file is a magic number, a version and a count, then each rest area as
+ * its latitude and longitude in millionths of a degree. The rest areas are
+ * stored in k-d order: the middle rest area of any range splits the range
+ * by latitude or longitude, alternating with depth, so the tree needs no
+ * pointers.
+ *
+ * Distances are measured on a flat projection around the query, which is
+ * accurate over the distances a driver would go to rest. Queries allocate
+ * nothing. This class has no Android dependencies.
+ */
+public class RestAreaIndex {
+
+	/** "DSRA" */
+	static final int MAGIC = 0x44535241;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 12;
+	static final int RECORD_SIZE = 8;
+
+	/**
+	 * The name of the index file in the application's files directory, and of
+	 * the bundled index in the assets
+	 */
+	public static final String FILE_NAME = "rest_areas.bin";
+
+	private static final double E6 = 1000000d;
+
+	private final RandomAccessFile mFile;
+
+	/**
+	 * Latitude and longitude pairs, in k-d order
+	 */
+	private final IntBuffer mRecords;
+
+	private final int mCount;
+
+	/*
+	 * The state of the query in progress. The heap keeps the nearest rest
+	 * areas found so far, farthest first.
+	 */
+	private int[] mHeapIndices = new int[0];
+	private double[] mHeapDistances = new double[0];
+	private int mHeapSize;
+	private int mHeapCapacity;
+	private double mQueryLatitude;
+	private double mQueryLongitude;
+	private double mLongitudeScale;
+
+	private RestAreaIndex(RandomAccessFile file, IntBuffer records, int count) {
+		mFile = file;
+		mRecords = records;
+		mCount = count;
+	}
+
+	/**
+	 * Map an index file
+	 *
+	 * @return the index, or null if the file doesn't exist
+	 */
+	public static RestAreaIndex open(File file) throws IOException {
+		RandomAccessFile randomAccessFile;
+		try {
+			randomAccessFile = new RandomAccessFile(file, "r");
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+
+		try {
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					randomAccessFile.length());
+
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException(file + " isn't a rest area index");
+			}
+			int version = buffer.getInt(4);
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported version " + version);
+			}
+			int count = buffer.getInt(8);
+			if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > buffer.limit()) {
+				throw new IOException(file + " is truncated");
+			}
+
+			buffer.position(HEADER_SIZE);
+			return new RestAreaIndex(randomAccessFile, buffer.slice().asIntBuffer(), count);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Build an index file, replacing it atomically
+	 *
+	 * @param latitudesE6 the latitudes of the rest areas, in millionths of a degree
+	 * @param longitudesE6 the longitudes of the rest areas, in the same order
+	 */
+	public static void write(File file, int[] latitudesE6, int[] longitudesE6) throws IOException {
+		if (latitudesE6.length != longitudesE6.length) {
+			throw new IllegalArgumentException("Every rest area needs a latitude and a longitude");
+		}
+
+		final int count = latitudesE6.length;
+		int[] records = new int[count * 2];
+		for (int i = 0; i < count; i++) {
+			records[i * 2] = latitudesE6[i];
+			records[i * 2 + 1] = longitudesE6[i];
+		}
+		build(records, 0, count, 0);
+
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(count);
+			for (int record : records) {
+				out.writeInt(record);
+			}
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	/**
+	 * Copy an index file, ie. one bundled with the app, replacing file
+	 * atomically. The stream is closed.
+	 */
+	public static void install(InputStream in, File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	/**
+	 * @return the number of rest areas
+	 */
+	public int size() {
+		return mCount;
+	}
+
+	public double getLatitude(int index) {
+		return mRecords.get(index * 2) / E6;
+	}
+
+	public double getLongitude(int index) {
+		return mRecords.get(index * 2 + 1) / E6;
+	}
+
+	/**
+	 * Find the rest areas nearest to a location
+	 *
+	 * @param nearest filled with the indices of the nearest rest areas,
+	 *        nearest first. Its length is the number of rest areas to find.
+	 * @return the number of rest areas found, which is less than
+	 *         nearest.length if there are fewer rest areas
+	 */
+	public synchronized int findNearest(double latitude, double longitude, int[] nearest) {
+		if (mHeapIndices.length < nearest.length) {
+			mHeapIndices = new int[nearest.length];
+			mHeapDistances = new double[nearest.length];
+		}
+		mHeapCapacity = nearest.length;
+		mHeapSize = 0;
+
+		mQueryLatitude = latitude * E6;
+		mQueryLongitude = longitude * E6;
+		mLongitudeScale = Math.cos(Math.toRadians(latitude));
+
+		if (mHeapCapacity > 0) {
+			search(0, mCount, 0);
+		}
+
+		// Empty the heap farthest first, so the results end up nearest first
+		final int found = mHeapSize;
+		for (int i = found - 1; i >= 0; i--) {
+			nearest[i] = mHeapIndices[0];
+			removeFarthest();
+		}
+		return found;
+	}
+
+	/**
+	 * @return the distance from a location to a rest area in meters, along the
+	 *         great circle
+	 */
+	public double getDistanceMeters(int index, double latitude, double longitude) {
+		double lat1 = Math.toRadians(latitude);
+		double lat2 = Math.toRadians(getLatitude(index));
+		double dLat = lat2 - lat1;
+		double dLon = Math.toRadians(getLongitude(index) - longitude);
+
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(lat1) * Math.cos(lat2)
+				* Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * 6371000d * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	/**
+	 * Unmap the index
+	 */
+	public void close() throws IOException {
+		mFile.close();
+	}
+
+	private void search(int low, int high, int axis) {
+		if (low >= high) {
+			return;
+		}
+
+		final int middle = (low + high) >>> 1;
+		final double dLat = mRecords.get(middle * 2) - mQueryLatitude;
+		final double dLon = (mRecords.get(middle * 2 + 1) - mQueryLongitude) * mLongitudeScale;
+		offer(middle, dLat * dLat + dLon * dLon);
+
+		// How far the splitting line is from the query, positive if the query is below it
+		final double split = axis == 0 ? dLat : dLon;
+		if (split > 0) {
+			search(low, middle, axis ^ 1);
+			if (mHeapSize < mHeapCapacity || split * split < mHeapDistances[0]) {
+				search(middle + 1, high, axis ^ 1);
+			}
+		} else {
+			search(middle + 1, high, axis ^ 1);
+			if (mHeapSize < mHeapCapacity || split * split < mHeapDistances[0]) {
+				search(low, middle, axis ^ 1);
+			}
+		}
+	}
+
+	private void offer(int index, double distance) {
+		if (mHeapSize < mHeapCapacity) {
+			// Sift up
+			int child = mHeapSize++;
+			while (child > 0) {
+				int parent = (child - 1) >>> 1;
+				if (mHeapDistances[parent] >= distance) {
+					break;
+				}
+				mHeapIndices[child] = mHeapIndices[parent];
+				mHeapDistances[child] = mHeapDistances[parent];
+				child = parent;
+			}
+			mHeapIndices[child] = index;
+			mHeapDistances[child] = distance;
+		} else if (distance < mHeapDistances[0]) {
+			siftDown(index, distance);
+		}
+	}
+
+	private void removeFarthest() {
+		mHeapSize--;
+		if (mHeapSize > 0) {
+			siftDown(mHeapIndices[mHeapSize], mHeapDistances[mHeapSize]);
+		}
+	}
+
+	/**
+	 * Replace the farthest rest area in the heap
+	 */
+	private void siftDown(int index, double distance) {
+		int parent = 0;
+		while (true) {
+			int child = parent * 2 + 1;
+			if (child >= mHeapSize) {
+				break;
+			}
+			if (child + 1 < mHeapSize && mHeapDistances[child + 1] > mHeapDistances[child]) {
+				child++;
+			}
+			if (mHeapDistances[child] <= distance) {
+				break;
+			}
+			mHeapIndices[parent] = mHeapIndices[child];
+			mHeapDistances[parent] = mHeapDistances[child];
+			parent = child;
+		}
+		mHeapIndices[parent] = index;
+		mHeapDistances[parent] = distance;
+	}
+
+	/**
+	 * Put the records of a range in k-d order, splitting on an axis
+	 */
+	private static void build(int[] records, int low, int high, int axis) {
+		if (high - low <= 1) {
+			return;
+		}
+
+		final int middle = (low + high) >>> 1;
+		select(records, low, high - 1, middle, axis);
+
+		build(records, low, middle, axis ^ 1);
+		build(records, middle + 1, high, axis ^ 1);
+	}
+
+	/**
+	 * Quickselect: move the record that belongs at k, by the axis, to k, with
+	 * smaller records before it and larger records after it
+	 */
+	private static void select(int[] records, int left, int right, int k, int axis) {
+		while (left < right) {
+			final int pivot = records[((left + right) >>> 1) * 2 + axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (records[i * 2 + axis] < pivot) {
+					i++;
+				}
+				while (records[j * 2 + axis] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(records, i++, j--);
+				}
+			}
+
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static void swap(int[] records, int a, int b) {
+		int latitude = records[a * 2];
+		int longitude = records[a * 2 + 1];
+		records[a * 2] = records[b * 2];
+		records[a * 2 + 1] = records[b * 2 + 1];
+		records[b * 2] = latitude;
+		records[b * 2 + 1] = longitude;
+	}
+
+}
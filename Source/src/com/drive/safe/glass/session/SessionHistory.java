@@ -0,0 +1,389 @@
+package com.drive.safe.glass.session;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * The summaries of past sessions, for fatigue trends across days and weeks.
+ *
+ * Sessions are appended to one file per column, each a raw little-endian
+ * array in session order, so a query only reads the columns it needs. A
+ * day index rolls the sessions up by local day: each record holds the day,
+ * the session the day starts at, and the day's session count, alert count
+ * and driving time. The index is written after the columns and is what
+ * makes a session count, so a session that was only partly appended is
+ * ignored and overwritten by the next one.
+ *
+ * Queries memory-map only the part of the index and the columns they
+ * cover. This class has no Android dependencies.
+ */
+public class SessionHistory {
+
+	/** "DSDI" */
+	static final int MAGIC = 0x44534449;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 16;
+	static final int DAY_RECORD_SIZE = 32;
+
+	// Offsets within a day record
+	static final int OFFSET_DAY = 0;
+	static final int OFFSET_FIRST_SESSION = 4;
+	static final int OFFSET_SESSION_COUNT = 8;
+	static final int OFFSET_ALERT_COUNT = 12;
+	static final int OFFSET_DRIVING_MILLIS = 16;
+	static final int OFFSET_MILLIS_ABOVE_THRESHOLD = 24;
+
+	/**
+	 * The name of the history directory in the application's files directory
+	 */
+	public static final String DIRECTORY_NAME = "history";
+
+	static final String INDEX_FILE = "days.idx";
+	static final String START_TIME_COLUMN = "start_time.col";
+	static final String DURATION_COLUMN = "duration.col";
+	static final String ALERT_COUNT_COLUMN = "alert_count.col";
+	static final String FIRST_ALERT_COLUMN = "first_alert.col";
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final double MILLIS_PER_HOUR = 60 * 60 * 1000d;
+
+	/**
+	 * The fatigue trend over a range of days
+	 */
+	public static class Trend {
+		public final int days;
+		public final int sessionCount;
+		public final int alertCount;
+		public final long drivingMillis;
+		public final long millisAboveThreshold;
+
+		/**
+		 * The median time into a session of its first alert, over the
+		 * sessions that had one, or -1 if none did
+		 */
+		public final long medianMillisToFirstAlert;
+
+		Trend(int days, int sessionCount, int alertCount, long drivingMillis, long millisAboveThreshold,
+				long medianMillisToFirstAlert) {
+			this.days = days;
+			this.sessionCount = sessionCount;
+			this.alertCount = alertCount;
+			this.drivingMillis = drivingMillis;
+			this.millisAboveThreshold = millisAboveThreshold;
+			this.medianMillisToFirstAlert = medianMillisToFirstAlert;
+		}
+
+		/**
+		 * @return the number of alerts per hour of driving, or 0 if there was
+		 *         no driving
+		 */
+		public float getAlertsPerHour() {
+			return drivingMillis == 0 ? 0 : (float) (alertCount * MILLIS_PER_HOUR / drivingMillis);
+		}
+
+		@Override
+		public String toString() {
+			return "Last " + days + " days: " + sessionCount + " sessions, " + drivingMillis + "ms, "
+					+ alertCount + " alerts (" + getAlertsPerHour() + "/h), median first alert: "
+					+ medianMillisToFirstAlert + "ms";
+		}
+	}
+
+	private final File mDirectory;
+	private final TimeZone mTimeZone;
+
+	/**
+	 * @param directory where the history is kept
+	 * @param timeZone the time zone days start and end in
+	 */
+	public SessionHistory(File directory, TimeZone timeZone) {
+		mDirectory = directory;
+		mTimeZone = timeZone;
+	}
+
+	public SessionHistory(File directory) {
+		this(directory, TimeZone.getDefault());
+	}
+
+	/**
+	 * Add a session to the history. Sessions must be appended in the order
+	 * they started; one that starts on an earlier day than the last session
+	 * is counted in the last session's day.
+	 */
+	public synchronized void append(SessionSummary summary) throws IOException {
+		if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+			throw new IOException("Couldn't create " + mDirectory);
+		}
+
+		RandomAccessFile index = new RandomAccessFile(new File(mDirectory, INDEX_FILE), "rw");
+		try {
+			ByteBuffer record = ByteBuffer.allocate(DAY_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			int dayCount = readHeader(index);
+			if (dayCount < 0) {
+				writeHeader(index, 0);
+				dayCount = 0;
+			}
+
+			// Continue the last day, or start a new one
+			int day = getDay(summary.startTime);
+			int session = 0;
+			if (dayCount > 0) {
+				readRecord(index, dayCount - 1, record);
+				int lastDay = record.getInt(OFFSET_DAY);
+				session = record.getInt(OFFSET_FIRST_SESSION) + record.getInt(OFFSET_SESSION_COUNT);
+
+				if (day > lastDay) {
+					record.putInt(OFFSET_FIRST_SESSION, session);
+					record.putInt(OFFSET_SESSION_COUNT, 0);
+					record.putInt(OFFSET_ALERT_COUNT, 0);
+					record.putLong(OFFSET_DRIVING_MILLIS, 0);
+					record.putLong(OFFSET_MILLIS_ABOVE_THRESHOLD, 0);
+				} else {
+					day = lastDay;
+					dayCount--;
+				}
+			}
+			record.putInt(OFFSET_DAY, day);
+
+			appendLong(START_TIME_COLUMN, session, summary.startTime);
+			appendLong(DURATION_COLUMN, session, summary.durationMillis);
+			appendInt(ALERT_COUNT_COLUMN, session, summary.alertCount);
+			appendLong(FIRST_ALERT_COLUMN, session, summary.millisToFirstAlert);
+
+			record.putInt(OFFSET_SESSION_COUNT, record.getInt(OFFSET_SESSION_COUNT) + 1);
+			record.putInt(OFFSET_ALERT_COUNT, record.getInt(OFFSET_ALERT_COUNT) + summary.alertCount);
+			record.putLong(OFFSET_DRIVING_MILLIS, record.getLong(OFFSET_DRIVING_MILLIS) + summary.durationMillis);
+			record.putLong(OFFSET_MILLIS_ABOVE_THRESHOLD, record.getLong(OFFSET_MILLIS_ABOVE_THRESHOLD)
+					+ summary.millisAboveThreshold);
+
+			// The record first, then the count that makes a new day visible
+			index.seek(HEADER_SIZE + (long) dayCount * DAY_RECORD_SIZE);
+			index.write(record.array());
+			writeHeader(index, dayCount + 1);
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * @return the number of sessions in the history
+	 */
+	public synchronized int getSessionCount() throws IOException {
+		RandomAccessFile index = openIndex();
+		if (index == null) {
+			return 0;
+		}
+
+		try {
+			int dayCount = readHeader(index);
+			if (dayCount <= 0) {
+				return 0;
+			}
+
+			ByteBuffer record = ByteBuffer.allocate(DAY_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readRecord(index, dayCount - 1, record);
+			return record.getInt(OFFSET_FIRST_SESSION) + record.getInt(OFFSET_SESSION_COUNT);
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * @param now the current wall clock time, in milliseconds
+	 * @param days the number of days to look back over, including today
+	 * @return the trend over the last days
+	 */
+	public synchronized Trend getTrend(long now, int days) throws IOException {
+		RandomAccessFile index = openIndex();
+		if (index == null) {
+			return new Trend(days, 0, 0, 0, 0, -1);
+		}
+
+		try {
+			final int dayCount = Math.max(0, readHeader(index));
+			if (dayCount == 0) {
+				return new Trend(days, 0, 0, 0, 0, -1);
+			}
+
+			MappedByteBuffer records = index.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+					(long) dayCount * DAY_RECORD_SIZE);
+			records.order(ByteOrder.LITTLE_ENDIAN);
+
+			// Days are in order, so only the ones in range are read
+			final int firstDay = getDay(now) - days + 1;
+			int first = findFirstDay(records, dayCount, firstDay);
+
+			int sessionCount = 0;
+			int alertCount = 0;
+			long drivingMillis = 0;
+			long millisAboveThreshold = 0;
+			for (int i = first; i < dayCount; i++) {
+				final int offset = i * DAY_RECORD_SIZE;
+				sessionCount += records.getInt(offset + OFFSET_SESSION_COUNT);
+				alertCount += records.getInt(offset + OFFSET_ALERT_COUNT);
+				drivingMillis += records.getLong(offset + OFFSET_DRIVING_MILLIS);
+				millisAboveThreshold += records.getLong(offset + OFFSET_MILLIS_ABOVE_THRESHOLD);
+			}
+
+			long median = -1;
+			if (alertCount > 0) {
+				median = getMedianFirstAlert(records.getInt(first * DAY_RECORD_SIZE + OFFSET_FIRST_SESSION),
+						sessionCount);
+			}
+
+			return new Trend(days, sessionCount, alertCount, drivingMillis, millisAboveThreshold, median);
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * @return the local day of a wall clock time, counted from the epoch
+	 */
+	int getDay(long time) {
+		long local = time + mTimeZone.getOffset(time);
+		return (int) (local >= 0 ? local / MILLIS_PER_DAY : (local + 1) / MILLIS_PER_DAY - 1);
+	}
+
+	/**
+	 * @return the index of the first day record on or after day
+	 */
+	private static int findFirstDay(ByteBuffer records, int dayCount, int day) {
+		int low = 0;
+		int high = dayCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (records.getInt(middle * DAY_RECORD_SIZE + OFFSET_DAY) < day) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the median time to the first alert of the sessions that had
+	 *         one, from the first alert column only
+	 */
+	private long getMedianFirstAlert(int firstSession, int sessionCount) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(new File(mDirectory, FIRST_ALERT_COLUMN), "r");
+		try {
+			MappedByteBuffer column = file.getChannel().map(FileChannel.MapMode.READ_ONLY, firstSession * 8L,
+					sessionCount * 8L);
+			column.order(ByteOrder.LITTLE_ENDIAN);
+
+			long[] values = new long[sessionCount];
+			int count = 0;
+			for (int i = 0; i < sessionCount; i++) {
+				long value = column.getLong(i * 8);
+				if (value >= 0) {
+					values[count++] = value;
+				}
+			}
+			if (count == 0) {
+				return -1;
+			}
+
+			Arrays.sort(values, 0, count);
+			return values[count / 2];
+		} finally {
+			file.close();
+		}
+	}
+
+	private RandomAccessFile openIndex() throws IOException {
+		try {
+			return new RandomAccessFile(new File(mDirectory, INDEX_FILE), "r");
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of day records, or -1 if the index is empty
+	 */
+	private static int readHeader(RandomAccessFile index) throws IOException {
+		if (index.length() == 0) {
+			return -1;
+		}
+		if (index.length() < HEADER_SIZE) {
+			throw new IOException("The session history index is truncated");
+		}
+
+		index.seek(0);
+		byte[] header = new byte[HEADER_SIZE];
+		index.readFully(header);
+		ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException("The session history index is corrupt");
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("The session history index has unsupported version " + version);
+		}
+		int dayCount = buffer.getInt(8);
+		if (dayCount < 0 || HEADER_SIZE + (long) dayCount * DAY_RECORD_SIZE > index.length()) {
+			throw new IOException("The session history index is truncated");
+		}
+		return dayCount;
+	}
+
+	private static void writeHeader(RandomAccessFile index, int dayCount) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, dayCount);
+		buffer.putInt(12, DAY_RECORD_SIZE);
+
+		index.seek(0);
+		index.write(buffer.array());
+	}
+
+	private static void readRecord(RandomAccessFile index, int day, ByteBuffer record) throws IOException {
+		index.seek(HEADER_SIZE + (long) day * DAY_RECORD_SIZE);
+		index.readFully(record.array());
+	}
+
+	private void appendLong(String column, int session, long value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(0, value);
+		writeAt(column, session * 8L, buffer.array());
+	}
+
+	private void appendInt(String column, int session, int value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0, value);
+		writeAt(column, session * 4L, buffer.array());
+	}
+
+	/**
+	 * Write a column value, dropping anything past it that a partly appended
+	 * session left behind
+	 */
+	private void writeAt(String column, long offset, byte[] bytes) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(new File(mDirectory, column), "rw");
+		try {
+			if (file.length() < offset) {
+				throw new IOException(column + " is missing sessions");
+			}
+			file.setLength(offset);
+			file.seek(offset);
+			file.write(bytes);
+		} finally {
+			file.close();
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.drive.safe.glass.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.util.Log;
+
+/**
+ * Records every eye event of a drive into memory-mapped segment files.
+ *
+ * Each segment starts with a header, followed by fixed-size records of the
+ * event time, gesture ordinal, sleep level and flags. A record's commit
+ * marker is written last and depends on the record's index, so a record is
+ * only trusted if it was completely written, even after a crash. Nothing is
+ * allocated or synced per record; the kernel writes the pages back.
+ *
+ * There must be a single writer: record() must always be called from the
+ * same thread. close() may be called from any other thread; it waits for a
+ * record() in progress, and later records are dropped.
+ *
+ * Segments aren't deleted when a session ends. deleteOldSessions() keeps
+ * the most recent sessions and deletes the rest.
+ */
+public class SessionRecorder {
+	private static final String TAG = "SessionRecorder";
+
+	/** "DSG1" */
+	public static final int MAGIC = 0x44534731;
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 24;
+
+	// Offsets within a record
+	static final int OFFSET_TIME = 0;
+	static final int OFFSET_GESTURE = 8;
+	static final int OFFSET_LEVEL = 12;
+	static final int OFFSET_FLAGS = 16;
+	static final int OFFSET_COMMIT = 20;
+
+	/**
+	 * The record raised an alert
+	 */
+	public static final int FLAG_ALERT = 1;
+
+	/**
+	 * The number of records in each segment by default, about 768KB
+	 */
+	public static final int DEFAULT_RECORDS_PER_SEGMENT = 32768;
+
+	/**
+	 * The number of sessions deleteOldSessions() keeps by default, about 15MB
+	 * if every drive fits in one segment
+	 */
+	public static final int DEFAULT_KEPT_SESSIONS = 20;
+
+	private static final String SEGMENT_SUFFIX = ".bin";
+
+	private static final int COMMIT_MAGIC = 0x5AFEC0DE;
+
+	private final File mDirectory;
+	private final String mSessionName;
+	private final int mRecordsPerSegment;
+
+	private RandomAccessFile mFile;
+	private MappedByteBuffer mBuffer;
+	private int mSegment = -1;
+	private int mIndex;
+
+	private long mRecordCount = 0;
+
+	/**
+	 * @param directory where the segment files are written
+	 * @param sessionName the name the segment files of this session start with
+	 * @param recordsPerSegment the number of records in each segment file
+	 */
+	public SessionRecorder(File directory, String sessionName, int recordsPerSegment) throws IOException {
+		mDirectory = directory;
+		mSessionName = sessionName;
+		mRecordsPerSegment = recordsPerSegment;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create " + directory);
+		}
+
+		openSegment(0);
+	}
+
+	/**
+	 * Record an eye event. Must be called from the writer thread.
+	 *
+	 * @param time when the event happened, in monotonic milliseconds
+	 * @param gesture the ordinal of the EyeGesture
+	 * @param level the sleep level after the event
+	 * @param flags FLAG_ALERT if the event raised an alert
+	 */
+	public synchronized void record(long time, int gesture, float level, int flags) {
+		if (mBuffer == null) {
+			return;
+		}
+
+		if (mIndex == mRecordsPerSegment && !rotate()) {
+			return;
+		}
+
+		final int offset = HEADER_SIZE + mIndex * RECORD_SIZE;
+		mBuffer.putLong(offset + OFFSET_TIME, time);
+		mBuffer.putInt(offset + OFFSET_GESTURE, gesture);
+		mBuffer.putFloat(offset + OFFSET_LEVEL, level);
+		mBuffer.putInt(offset + OFFSET_FLAGS, flags);
+		// Written last; the record only counts once this is in place
+		mBuffer.putInt(offset + OFFSET_COMMIT, commitMarker(mIndex));
+
+		mIndex++;
+		mRecordCount++;
+	}
+
+	/**
+	 * @return the number of records written in this session
+	 */
+	public long getRecordCount() {
+		return mRecordCount;
+	}
+
+	/**
+	 * Stop recording. The records already written stay on disk.
+	 */
+	public synchronized void close() {
+		closeSegment();
+	}
+
+	/**
+	 * @return the file of a segment of a session
+	 */
+	public static File getSegmentFile(File directory, String sessionName, int segment) {
+		return new File(directory, sessionName + "-" + segment + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Delete every session but the most recently written ones
+	 *
+	 * @param directory where the segment files are written
+	 * @param keepSessions the number of sessions to keep
+	 * @return the number of segment files deleted
+	 */
+	public static int deleteOldSessions(File directory, int keepSessions) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+
+		// The last time each session was written
+		Map<String, Long> sessions = new HashMap<String, Long>();
+		for (File file : files) {
+			String sessionName = getSessionName(file);
+			if (sessionName != null) {
+				Long modified = sessions.get(sessionName);
+				if (modified == null || modified < file.lastModified()) {
+					sessions.put(sessionName, file.lastModified());
+				}
+			}
+		}
+		if (sessions.size() <= keepSessions) {
+			return 0;
+		}
+
+		List<Map.Entry<String, Long>> byAge = new ArrayList<Map.Entry<String, Long>>(sessions.entrySet());
+		Collections.sort(byAge, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+				// Newest first
+				return b.getValue().compareTo(a.getValue());
+			}
+		});
+		Set<String> deleted = new HashSet<String>();
+		for (int i = keepSessions; i < byAge.size(); i++) {
+			deleted.add(byAge.get(i).getKey());
+		}
+
+		int count = 0;
+		for (File file : files) {
+			if (deleted.contains(getSessionName(file))) {
+				if (file.delete()) {
+					count++;
+				} else {
+					Log.w(TAG, "Couldn't delete " + file);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the name of the session a segment file belongs to, or null if
+	 *         it isn't a segment file
+	 */
+	private static String getSessionName(File file) {
+		String name = file.getName();
+		int dash = name.lastIndexOf('-');
+		if (dash <= 0 || !name.endsWith(SEGMENT_SUFFIX)) {
+			return null;
+		}
+		for (int i = dash + 1; i < name.length() - SEGMENT_SUFFIX.length(); i++) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return null;
+			}
+		}
+		return name.substring(0, dash);
+	}
+
+	/**
+	 * @return the commit marker of the record at index
+	 */
+	static int commitMarker(int index) {
+		return COMMIT_MAGIC ^ index;
+	}
+
+	private boolean rotate() {
+		try {
+			openSegment(mSegment + 1);
+			return true;
+		} catch (IOException e) {
+			Log.e(TAG, "Couldn't open the next segment", e);
+			closeSegment();
+			return false;
+		}
+	}
+
+	private void openSegment(int segment) throws IOException {
+		closeSegment();
+
+		File file = getSegmentFile(mDirectory, mSessionName, segment);
+		long size = HEADER_SIZE + (long) mRecordsPerSegment * RECORD_SIZE;
+
+		mFile = new RandomAccessFile(file, "rw");
+		mFile.setLength(size);
+		mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		mBuffer.putInt(0, MAGIC);
+		mBuffer.putInt(4, VERSION);
+		mBuffer.putInt(8, RECORD_SIZE);
+		mBuffer.putInt(12, mRecordsPerSegment);
+
+		mSegment = segment;
+		mIndex = 0;
+	}
+
+	private void closeSegment() {
+		mBuffer = null;
+
+		if (mFile != null) {
+			try {
+				mFile.close();
+			} catch (IOException e) {
+				Log.w(TAG, "Couldn't close a segment", e);
+			}
+			mFile = null;
+		}
+	}
+
+}
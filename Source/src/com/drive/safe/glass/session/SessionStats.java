@@ -0,0 +1,165 @@
+package com.drive.safe.glass.session;
+
+import com.drive.safe.glass.metrics.RunningStats;
+import com.drive.safe.glass.metrics.TDigest;
+
+/**
+ * Aggregates the statistics of a drive as it happens, in constant memory:
+ * the time between blinks, the distribution of the sleep level, alerts and
+ * the time spent at or above the threshold.
+ *
+ * Recording an event only updates primitives, and the sleep level digest
+ * merges a fixed number of centroids now and then, so memory and the cost
+ * of an event don't grow with the length of the drive. Events are recorded
+ * with the drowsiness model's times, which leave out paused time.
+ */
+public class SessionStats {
+
+	private final long mStartTime;
+
+	private final RunningStats mBlinkIntervals = new RunningStats();
+	private final TDigest mLevels = new TDigest();
+
+	private long mEventCount = 0;
+	private long mBlinkCount = 0;
+	private long mFirstEventTime = -1;
+	private long mLastEventTime = -1;
+	private long mLastBlinkTime = -1;
+	private float mLastLevel = 0;
+	private float mThreshold = Float.MAX_VALUE;
+
+	private double mMillisAboveThreshold = 0;
+	private int mAlertCount = 0;
+	private long mFirstAlertTime = -1;
+	private int mSpokenAlertCount = 0;
+	private int mHeadNodCount = 0;
+
+	/**
+	 * @param startTime the wall clock time the session started at, in milliseconds
+	 */
+	public SessionStats(long startTime) {
+		mStartTime = startTime;
+	}
+
+	/**
+	 * Record a scored eye event
+	 *
+	 * @param time when the event happened, in monotonic milliseconds
+	 * @param blink whether the event was a blink or wink
+	 * @param levelBefore the sleep level just before the event
+	 * @param levelAfter the sleep level after the event
+	 * @param threshold the level at which the user is falling asleep
+	 */
+	public synchronized void recordEvent(long time, boolean blink, float levelBefore, float levelAfter,
+			float threshold) {
+		if (blink) {
+			mBlinkCount++;
+			if (mLastBlinkTime >= 0 && time >= mLastBlinkTime) {
+				mBlinkIntervals.add(time - mLastBlinkTime);
+			}
+			mLastBlinkTime = time;
+		}
+
+		recordLevel(time, levelBefore, levelAfter, threshold);
+	}
+
+	/**
+	 * Record a scored head nod
+	 *
+	 * @see #recordEvent(long, boolean, float, float, float)
+	 */
+	public synchronized void recordHeadNod(long time, float levelBefore, float levelAfter, float threshold) {
+		mHeadNodCount++;
+		recordLevel(time, levelBefore, levelAfter, threshold);
+	}
+
+	/**
+	 * Record the sleep level being reset to 0, ie. once the user has
+	 * responded to an alert
+	 *
+	 * @param time when the level was reset, in monotonic milliseconds
+	 * @param levelBefore the sleep level just before it was reset
+	 */
+	public synchronized void recordReset(long time, float levelBefore) {
+		if (mFirstEventTime < 0 || time <= mLastEventTime) {
+			return;
+		}
+
+		mMillisAboveThreshold += getMillisAbove(mLastLevel, levelBefore, time - mLastEventTime, mThreshold);
+		mLastEventTime = time;
+		mLastLevel = 0;
+	}
+
+	/**
+	 * Record a wake up alert being spoken
+	 */
+	public synchronized void recordSpokenAlert() {
+		mSpokenAlertCount++;
+	}
+
+	/**
+	 * @param endTime when the session ended, on the same clock as the events
+	 * @param endLevel the sleep level at endTime
+	 * @return the statistics of the session so far
+	 */
+	public synchronized SessionSummary getSummary(long endTime, float endLevel) {
+		double millisAboveThreshold = mMillisAboveThreshold;
+		long duration = 0;
+		if (mFirstEventTime >= 0 && endTime > mLastEventTime) {
+			millisAboveThreshold += getMillisAbove(mLastLevel, endLevel, endTime - mLastEventTime, mThreshold);
+			duration = endTime - mFirstEventTime;
+		} else if (mFirstEventTime >= 0) {
+			duration = mLastEventTime - mFirstEventTime;
+		}
+
+		return new SessionSummary(mStartTime, duration, mEventCount, mBlinkCount, mBlinkIntervals.getMean(),
+				mBlinkIntervals.getStandardDeviation(), getLevel(0.5), getLevel(0.9), getLevel(0.99),
+				getLevel(1), Math.round(millisAboveThreshold), mAlertCount, mSpokenAlertCount, mHeadNodCount,
+				mFirstAlertTime >= 0 ? mFirstAlertTime - mFirstEventTime : -1);
+	}
+
+	private void recordLevel(long time, float levelBefore, float levelAfter, float threshold) {
+		if (mFirstEventTime < 0) {
+			mFirstEventTime = time;
+		} else if (time > mLastEventTime) {
+			mMillisAboveThreshold += getMillisAbove(mLastLevel, levelBefore, time - mLastEventTime, threshold);
+		}
+
+		if (levelBefore < threshold && levelAfter >= threshold) {
+			if (mAlertCount == 0) {
+				mFirstAlertTime = time;
+			}
+			mAlertCount++;
+		}
+
+		mLevels.add(levelAfter);
+		mEventCount++;
+		mLastEventTime = Math.max(mLastEventTime, time);
+		mLastLevel = levelAfter;
+		mThreshold = threshold;
+	}
+
+	private float getLevel(double quantile) {
+		return mEventCount == 0 ? 0 : (float) mLevels.quantile(quantile);
+	}
+
+	/**
+	 * The sleep level only degrades between events, so it's taken to fall
+	 * linearly from one to the next
+	 *
+	 * @return how long a level going linearly from start to end over millis
+	 *         is at or above threshold
+	 */
+	private static double getMillisAbove(float start, float end, long millis, float threshold) {
+		if (start >= threshold && end >= threshold) {
+			return millis;
+		}
+		if (start < threshold && end < threshold) {
+			return 0;
+		}
+
+		double fraction = (threshold - start) / (double) (end - start);
+		return start >= threshold ? fraction * millis : (1 - fraction) * millis;
+	}
+
+}
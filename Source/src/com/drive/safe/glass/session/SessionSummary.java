@@ -0,0 +1,187 @@
+package com.drive.safe.glass.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The statistics of a finished drive, as computed by SessionStats. It is
+ * written next to the session's records in a small fixed-size file.
+ */
+public class SessionSummary {
+
+	/** "DSSS" */
+	public static final int MAGIC = 0x44535353;
+	public static final int VERSION = 2;
+
+	/**
+	 * The wall clock time the session started at, in milliseconds
+	 */
+	public final long startTime;
+
+	/**
+	 * How long detection ran for, in milliseconds, leaving out paused time
+	 */
+	public final long durationMillis;
+
+	/**
+	 * The number of eye events and head nods scored
+	 */
+	public final long eventCount;
+
+	/**
+	 * The number of blinks and winks, and the mean and standard deviation of
+	 * the time between them, in milliseconds
+	 */
+	public final long blinkCount;
+	public final double blinkIntervalMean;
+	public final double blinkIntervalStdDev;
+
+	/**
+	 * The sleep level after each event, at the median, 90th and 99th
+	 * percentiles, and its maximum
+	 */
+	public final float levelMedian;
+	public final float level90th;
+	public final float level99th;
+	public final float levelMax;
+
+	/**
+	 * How long the sleep level was at or above the threshold, in milliseconds
+	 */
+	public final long millisAboveThreshold;
+
+	/**
+	 * The number of times the sleep level reached the threshold
+	 */
+	public final int alertCount;
+
+	/**
+	 * The number of wake up alerts that were spoken
+	 */
+	public final int spokenAlertCount;
+
+	public final int headNodCount;
+
+	/**
+	 * How long into the session the first alert came, in milliseconds, or -1
+	 * if there wasn't one
+	 */
+	public final long millisToFirstAlert;
+
+	public SessionSummary(long startTime, long durationMillis, long eventCount, long blinkCount,
+			double blinkIntervalMean, double blinkIntervalStdDev, float levelMedian, float level90th,
+			float level99th, float levelMax, long millisAboveThreshold, int alertCount, int spokenAlertCount,
+			int headNodCount, long millisToFirstAlert) {
+		this.startTime = startTime;
+		this.durationMillis = durationMillis;
+		this.eventCount = eventCount;
+		this.blinkCount = blinkCount;
+		this.blinkIntervalMean = blinkIntervalMean;
+		this.blinkIntervalStdDev = blinkIntervalStdDev;
+		this.levelMedian = levelMedian;
+		this.level90th = level90th;
+		this.level99th = level99th;
+		this.levelMax = levelMax;
+		this.millisAboveThreshold = millisAboveThreshold;
+		this.alertCount = alertCount;
+		this.spokenAlertCount = spokenAlertCount;
+		this.headNodCount = headNodCount;
+		this.millisToFirstAlert = millisToFirstAlert;
+	}
+
+	/**
+	 * @return the fraction of the session spent at or above the threshold
+	 */
+	public float getFractionAboveThreshold() {
+		return durationMillis == 0 ? 0 : (float) millisAboveThreshold / durationMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "Duration: " + durationMillis + "ms, events: " + eventCount + ", blinks: " + blinkCount
+				+ " (every " + Math.round(blinkIntervalMean) + " +/- " + Math.round(blinkIntervalStdDev)
+				+ "ms), sleep level p50/p90/p99/max: " + levelMedian + "/" + level90th + "/" + level99th + "/"
+				+ levelMax + ", above threshold: " + millisAboveThreshold + "ms, alerts: " + alertCount
+				+ " (" + spokenAlertCount + " spoken), first alert: " + millisToFirstAlert + "ms, head nods: "
+				+ headNodCount;
+	}
+
+	/**
+	 * @return the summary file of a session
+	 */
+	public static File getFile(File directory, String sessionName) {
+		return new File(directory, sessionName + ".summary");
+	}
+
+	/**
+	 * Write a summary, replacing the file atomically
+	 */
+	public static void write(File file, SessionSummary summary) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(summary.startTime);
+			out.writeLong(summary.durationMillis);
+			out.writeLong(summary.eventCount);
+			out.writeLong(summary.blinkCount);
+			out.writeDouble(summary.blinkIntervalMean);
+			out.writeDouble(summary.blinkIntervalStdDev);
+			out.writeFloat(summary.levelMedian);
+			out.writeFloat(summary.level90th);
+			out.writeFloat(summary.level99th);
+			out.writeFloat(summary.levelMax);
+			out.writeLong(summary.millisAboveThreshold);
+			out.writeInt(summary.alertCount);
+			out.writeInt(summary.spokenAlertCount);
+			out.writeInt(summary.headNodCount);
+			out.writeLong(summary.millisToFirstAlert);
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	/**
+	 * @return the summary in file, or null if there isn't one
+	 */
+	public static SessionSummary read(File file) throws IOException {
+		DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " isn't a session summary");
+			}
+			int version = in.readInt();
+			if (version != 1 && version != VERSION) {
+				throw new IOException(file + " has unsupported version " + version);
+			}
+
+			return new SessionSummary(in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+					in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat(), in.readFloat(),
+					in.readFloat(), in.readLong(), in.readInt(), in.readInt(), in.readInt(),
+					// Version 1 didn't time the first alert
+					version >= 2 ? in.readLong() : -1);
+		} finally {
+			in.close();
+		}
+	}
+
+}
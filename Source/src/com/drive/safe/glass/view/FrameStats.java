@@ -0,0 +1,103 @@
+package com.drive.safe.glass.view;
+
+/**
+ * Frame time instrumentation for the live card. Frame times are counted in
+ * a fixed histogram of one millisecond buckets, so recording a frame never
+ * allocates.
+ */
+public class FrameStats {
+
+	/**
+	 * Frames taking MAX_TRACKED_MILLIS or longer all land in the last bucket
+	 */
+	private static final int MAX_TRACKED_MILLIS = 100;
+
+	private final int[] mBuckets = new int[MAX_TRACKED_MILLIS + 1];
+
+	private long mFrameCount = 0;
+	private long mTotalNanos = 0;
+	private long mMaxNanos = 0;
+	private long mDroppedFrames = 0;
+
+	/**
+	 * @param frameNanos how long the frame took to draw
+	 * @param dropped true if the frame started late enough to miss its slot
+	 */
+	public synchronized void recordFrame(long frameNanos, boolean dropped) {
+		int millis = (int) Math.min(MAX_TRACKED_MILLIS, frameNanos / 1000000L);
+		mBuckets[millis]++;
+
+		mFrameCount++;
+		mTotalNanos += frameNanos;
+		mMaxNanos = Math.max(mMaxNanos, frameNanos);
+
+		if (dropped) {
+			mDroppedFrames++;
+		}
+	}
+
+	/**
+	 * @return the number of frames drawn
+	 */
+	public synchronized long getFrameCount() {
+		return mFrameCount;
+	}
+
+	/**
+	 * @return the number of frames that missed their slot
+	 */
+	public synchronized long getDroppedFrames() {
+		return mDroppedFrames;
+	}
+
+	/**
+	 * @return the average frame time, in milliseconds
+	 */
+	public synchronized float getAverageMillis() {
+		if (mFrameCount == 0) {
+			return 0;
+		}
+		return mTotalNanos / (float) mFrameCount / 1000000f;
+	}
+
+	/**
+	 * @return the longest frame time, in milliseconds
+	 */
+	public synchronized float getMaxMillis() {
+		return mMaxNanos / 1000000f;
+	}
+
+	/**
+	 * @param percentile the percentile to compute, between 0 and 100
+	 * @return the frame time at the percentile, to the millisecond
+	 */
+	public synchronized int getPercentileMillis(double percentile) {
+		if (mFrameCount == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(percentile / 100d * mFrameCount);
+		long seen = 0;
+		for (int millis = 0; millis < mBuckets.length; millis++) {
+			seen += mBuckets[millis];
+			if (seen >= rank) {
+				return millis;
+			}
+		}
+		return MAX_TRACKED_MILLIS;
+	}
+
+	/**
+	 * Forget every frame
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < mBuckets.length; i++) {
+			mBuckets[i] = 0;
+		}
+		mFrameCount = 0;
+		mTotalNanos = 0;
+		mMaxNanos = 0;
+		mDroppedFrames = 0;
+	}
+
+}
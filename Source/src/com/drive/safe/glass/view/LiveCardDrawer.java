@@ -5,9 +5,16 @@
 package com.drive.safe.glass.view;
 
 import com.drive.safe.glass.R;
+import com.drive.safe.glass.metrics.Histogram;
+import com.drive.safe.glass.metrics.MetricsRegistry;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.View;
@@ -15,11 +22,107 @@ import android.view.View;
 public class LiveCardDrawer implements SurfaceHolder.Callback, LiveCardView.DrawListener {
 	private static final String TAG = "LiveCardDrawer";
 
+	/**
+	 * Redraw requests are coalesced to at most one frame per FRAME_INTERVAL_MILLIS
+	 */
+	private static final long FRAME_INTERVAL_MILLIS = 16;
+
+	/**
+	 * How long the warning image pulses after an alert, by default
+	 */
+	public static final long DEFAULT_ALERT_ANIMATION_MILLIS = 5000;
+
+	/**
+	 * How long one pulse of the warning image lasts
+	 */
+	private static final long PULSE_PERIOD_MILLIS = 800;
+
 	private final LiveCardView mLiveCardView;
 
 	private SurfaceHolder mHolder;
 	private Context mContext;
 
+	private final Handler mHandler = new Handler();
+
+	/**
+	 * If true, only the parts of the card that changed are redrawn
+	 */
+	private boolean mPartialRedrawEnabled = true;
+
+	/**
+	 * The region of the card that needs to be redrawn in the next frame
+	 */
+	private final Rect mDirty = new Rect();
+	private boolean mFullRedraw = true;
+
+	private final Rect mChildBounds = new Rect();
+
+	private int mWidth = 0;
+	private int mHeight = 0;
+
+	private boolean mFrameScheduled = false;
+	private long mLastFrameTime = 0;
+	private long mScheduledFrameTime = 0;
+
+	/**
+	 * If true, the card keeps drawing frames while an alert is animating
+	 */
+	private boolean mRenderLoopEnabled = false;
+
+	/**
+	 * If true, nothing is drawn until the drawer is resumed
+	 */
+	private boolean mSuspended = false;
+
+	private boolean mAnimating = false;
+	private long mAnimationStart = 0;
+	private long mAnimationEnd = 0;
+
+	private final FrameStats mFrameStats = new FrameStats();
+
+	private final Histogram mDrawTime = MetricsRegistry.getInstance().histogram("card.draw_nanos");
+
+	/**
+	 * How often the diagnostics on the card are refreshed
+	 */
+	private static final long DIAGNOSTICS_INTERVAL_MILLIS = 1000;
+
+	private static final float DIAGNOSTICS_TEXT_SIZE = 16;
+
+	/**
+	 * If true, the app's metrics are drawn over the card
+	 */
+	private boolean mDiagnosticsEnabled = false;
+
+	private final StringBuilder mDiagnostics = new StringBuilder();
+
+	private final Paint mDiagnosticsPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	private final Runnable mDiagnosticsRunnable = new Runnable() {
+		@Override
+		public void run() {
+			MetricsRegistry.getInstance().describe(mDiagnostics);
+			requestFullDraw();
+
+			mHandler.postDelayed(this, DIAGNOSTICS_INTERVAL_MILLIS);
+		}
+	};
+
+	private final Runnable mFrameRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mFrameScheduled = false;
+			drawFrame();
+		}
+	};
+
+	private final Runnable mStopAnimationRunnable = new Runnable() {
+		@Override
+		public void run() {
+			stopAlertAnimation();
+		}
+	};
+
 	public LiveCardDrawer(Context context) {
 		mContext = context;
 
@@ -29,18 +132,18 @@ public class LiveCardDrawer implements SurfaceHolder.Callback, LiveCardView.Draw
 		
 		mLiveCardView.setTitle(mContext.getString(R.string.text_keeping_you_awake));
 		mLiveCardView.setImage(R.drawable.ic_eye_150);
+
+		mDiagnosticsPaint.setColor(Color.WHITE);
+		mDiagnosticsPaint.setTextSize(DIAGNOSTICS_TEXT_SIZE);
 	}
 
 	@Override
 	public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-		// Measure and layout the view with the canvas dimensions.
-		int measuredWidth = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
-		int measuredHeight = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+		mWidth = width;
+		mHeight = height;
 
-		mLiveCardView.measure(measuredWidth, measuredHeight);
-		mLiveCardView.layout(0, 0, mLiveCardView.getMeasuredWidth(), mLiveCardView.getMeasuredHeight());
-		
-		draw(mLiveCardView);
+		layoutCard();
+		requestFullDraw();
 	}
 
 	@Override
@@ -48,45 +151,301 @@ public class LiveCardDrawer implements SurfaceHolder.Callback, LiveCardView.Draw
 		Log.d(TAG, "Surface created");
 		mHolder = holder;
 		
-		draw(mLiveCardView);
+		requestFullDraw();
 	}
 
 	@Override
 	public void surfaceDestroyed(SurfaceHolder holder) {
 		Log.d(TAG, "Surface destroyed");
 		mHolder = null;
+
+		// Stop the render loop; it picks up again if the surface comes back
+		mHandler.removeCallbacks(mFrameRunnable);
+		mFrameScheduled = false;
 	}
-	
+
 	/**
-	 * Draw the view in the SurfaceHolder's canvas
+	 * Stop drawing for good and let go of the card's images
 	 */
-	private void draw(View view){
-		if(mHolder == null){
+	public void release() {
+		setSuspended(true);
+		mLiveCardView.release();
+	}
+
+	/**
+	 * @param enabled if true, the card is redrawn every frame while an alert is
+	 *        animating, and not at all while nothing changes
+	 */
+	public void setRenderLoopEnabled(boolean enabled) {
+		mRenderLoopEnabled = enabled;
+
+		if (!enabled && mAnimating) {
+			stopAlertAnimation();
+		}
+	}
+
+	/**
+	 * Stop drawing the card, ie. while nobody is looking at it. Changes made
+	 * while suspended are drawn on resuming.
+	 *
+	 * @param suspended true to stop drawing, false to draw again
+	 */
+	public void setSuspended(boolean suspended) {
+		if (suspended == mSuspended) {
 			return;
 		}
-		
+
+		if (suspended) {
+			if (mAnimating) {
+				stopAlertAnimation();
+			}
+
+			mSuspended = true;
+			mHandler.removeCallbacks(mFrameRunnable);
+			mHandler.removeCallbacks(mDiagnosticsRunnable);
+			mFrameScheduled = false;
+		} else {
+			mSuspended = false;
+			if (mDiagnosticsEnabled) {
+				mDiagnosticsRunnable.run();
+			} else {
+				requestFullDraw();
+			}
+		}
+	}
+
+	/**
+	 * @param enabled if true, the app's metrics are drawn over the card and
+	 *        refreshed every second
+	 */
+	public void setDiagnosticsEnabled(boolean enabled) {
+		if (enabled == mDiagnosticsEnabled) {
+			return;
+		}
+		mDiagnosticsEnabled = enabled;
+
+		mHandler.removeCallbacks(mDiagnosticsRunnable);
+		if (enabled && !mSuspended) {
+			mDiagnosticsRunnable.run();
+		} else {
+			mDiagnostics.setLength(0);
+			requestFullDraw();
+		}
+	}
+
+	/**
+	 * Pulse the warning image on the card
+	 *
+	 * @param durationMillis how long to pulse the image for
+	 */
+	public void startAlertAnimation(long durationMillis) {
+		if (!mAnimating) {
+			mLiveCardView.setImage(R.drawable.ic_warning_150);
+			mAnimationStart = SystemClock.uptimeMillis();
+		}
+
+		mAnimationEnd = SystemClock.uptimeMillis() + durationMillis;
+
+		if (mRenderLoopEnabled) {
+			mAnimating = true;
+			scheduleFrame();
+		} else {
+			// Without the render loop, just show the warning until the alert is over
+			mHandler.removeCallbacks(mStopAnimationRunnable);
+			mHandler.postAtTime(mStopAnimationRunnable, mAnimationEnd);
+		}
+	}
+
+	/**
+	 * Stop pulsing the warning image and go back to the eye
+	 */
+	public void stopAlertAnimation() {
+		mAnimating = false;
+		mHandler.removeCallbacks(mStopAnimationRunnable);
+
+		mLiveCardView.setImageAlpha(1f);
+		mLiveCardView.setImage(R.drawable.ic_eye_150);
+	}
+
+	/**
+	 * @return the frame time instrumentation of the card
+	 */
+	public FrameStats getFrameStats() {
+		return mFrameStats;
+	}
+
+	/**
+	 * @param enabled if true, only the parts of the card that changed are
+	 *        redrawn; otherwise the whole card is redrawn every frame
+	 */
+	public void setPartialRedrawEnabled(boolean enabled) {
+		mPartialRedrawEnabled = enabled;
+	}
+
+	public LiveCardView getLiveCardView() {
+		return mLiveCardView;
+	}
+
+	/**
+	 * Measure and layout the view with the canvas dimensions
+	 */
+	private void layoutCard() {
+		int measuredWidth = View.MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY);
+		int measuredHeight = View.MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY);
+
+		mLiveCardView.measure(measuredWidth, measuredHeight);
+		mLiveCardView.layout(0, 0, mLiveCardView.getMeasuredWidth(), mLiveCardView.getMeasuredHeight());
+	}
+
+	/**
+	 * Redraw the whole card in the next frame
+	 */
+	private void requestFullDraw() {
+		mFullRedraw = true;
+		scheduleFrame();
+	}
+
+	/**
+	 * Post a frame, unless one is already waiting
+	 */
+	private void scheduleFrame() {
+		if (mFrameScheduled || mHolder == null || mSuspended) {
+			return;
+		}
+
+		mFrameScheduled = true;
+		mScheduledFrameTime = Math.max(SystemClock.uptimeMillis(), mLastFrameTime + FRAME_INTERVAL_MILLIS);
+		mHandler.postAtTime(mFrameRunnable, mScheduledFrameTime);
+	}
+
+	/**
+	 * Move the alert animation to the current frame
+	 */
+	private void animate(long now) {
+		if (now >= mAnimationEnd) {
+			stopAlertAnimation();
+			return;
+		}
+
+		double phase = (now - mAnimationStart) % PULSE_PERIOD_MILLIS / (double) PULSE_PERIOD_MILLIS;
+		mLiveCardView.setImageAlpha((float) (0.6 + 0.4 * Math.cos(2 * Math.PI * phase)));
+	}
+
+	/**
+	 * Draw the dirty region of the card in the SurfaceHolder's canvas
+	 */
+	private void drawFrame() {
+		if (mHolder == null) {
+			return;
+		}
+
+		final long frameStart = SystemClock.uptimeMillis();
+		final boolean dropped = frameStart - mScheduledFrameTime >= FRAME_INTERVAL_MILLIS;
+		mLastFrameTime = frameStart;
+
+		if (mAnimating) {
+			// Schedules the next frame, keeping the loop going until the animation ends
+			animate(frameStart);
+		}
+
+		final long drawStart = System.nanoTime();
+		final boolean fullRedraw = mFullRedraw || !mPartialRedrawEnabled;
+
 		Canvas canvas;
-		try{
-			canvas = mHolder.lockCanvas();
-		} catch (Exception e){
+		try {
+			// lockCanvas(Rect) may grow the dirty region, and the whole grown region must be drawn
+			canvas = fullRedraw ? mHolder.lockCanvas() : mHolder.lockCanvas(mDirty);
+		} catch (Exception e) {
 			e.printStackTrace();
 			return;
 		}
-		
-		if(canvas != null){
-			//We can draw the view
-			view.draw(canvas);
+
+		mFullRedraw = false;
+		mDirty.setEmpty();
+
+		if (canvas != null) {
+			// We can draw the view; the canvas is clipped to the dirty region
+			mLiveCardView.draw(canvas);
+			if (mDiagnosticsEnabled) {
+				drawDiagnostics(canvas);
+			}
 			mHolder.unlockCanvasAndPost(canvas);
+
+			final long drawTime = System.nanoTime() - drawStart;
+			mFrameStats.recordFrame(drawTime, dropped);
+			mDrawTime.record(drawTime);
+		}
+	}
+
+	/**
+	 * Draw the last description of the metrics over the card, a line at a time
+	 */
+	private void drawDiagnostics(Canvas canvas) {
+		float y = DIAGNOSTICS_TEXT_SIZE;
+		int lineStart = 0;
+
+		for (int i = 0; i < mDiagnostics.length(); i++) {
+			if (mDiagnostics.charAt(i) == '\n') {
+				canvas.drawText(mDiagnostics, lineStart, i, DIAGNOSTICS_TEXT_SIZE, y, mDiagnosticsPaint);
+				lineStart = i + 1;
+				y += DIAGNOSTICS_TEXT_SIZE;
+			}
 		}
 	}
 
 	/**
 	 * Redraw the LiveCardView when it wants
-	 * ie. when the LiveCardView is done loading its image
 	 */
 	@Override
 	public void onCallForDraw() {
-		draw(mLiveCardView);
+		requestFullDraw();
+	}
+
+	/**
+	 * Redraw the part of the LiveCardView taken by the child that changed
+	 * ie. when the LiveCardView is done loading its image
+	 */
+	@Override
+	public void onCallForDraw(View changed) {
+		if (changed.isLayoutRequested() && mWidth > 0 && mHeight > 0) {
+			// The change moved things around, so the card has to be laid out again
+			layoutCard();
+			requestFullDraw();
+			return;
+		}
+
+		if (!getBoundsInCard(changed, mChildBounds)) {
+			requestFullDraw();
+			return;
+		}
+
+		mDirty.union(mChildBounds);
+		scheduleFrame();
+	}
+
+	/**
+	 * Find the bounds of a descendant of the LiveCardView in the card's coordinates
+	 *
+	 * @return false if the view isn't laid out inside the LiveCardView
+	 */
+	private boolean getBoundsInCard(View view, Rect bounds) {
+		if (view.getWidth() == 0 || view.getHeight() == 0) {
+			return false;
+		}
+
+		bounds.set(0, 0, view.getWidth(), view.getHeight());
+
+		View current = view;
+		while (current != mLiveCardView) {
+			bounds.offset(current.getLeft(), current.getTop());
+
+			if (!(current.getParent() instanceof View)) {
+				return false;
+			}
+			current = (View) current.getParent();
+		}
+
+		return true;
 	}
 
 }
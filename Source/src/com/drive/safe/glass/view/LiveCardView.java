@@ -7,20 +7,30 @@ package com.drive.safe.glass.view;
 import android.content.Context;
 import android.text.Html;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.drive.safe.glass.R;
-import com.drive.safe.glass.image.AsyncImageResourceLoadTask;
-import com.drive.safe.glass.image.AsyncImageResourceLoadTask.ImageLoadListener;
+import com.drive.safe.glass.image.ImageLoadListener;
+import com.drive.safe.glass.image.ImageLoader;
 
 public class LiveCardView extends FrameLayout {
 	public static final String TAG = "LiveCardView";
 
 	public static interface DrawListener {
+		/**
+		 * Redraw the whole card
+		 */
 		public void onCallForDraw();
+
+		/**
+		 * Redraw the part of the card taken by a child view that changed
+		 */
+		public void onCallForDraw(View changed);
 	}
 
 	private ImageView mImageView;
@@ -30,6 +40,15 @@ public class LiveCardView extends FrameLayout {
 
 	private DrawListener mDrawListener;
 
+	private final ImageLoadListener mImageLoadListener = new ImageLoadListener() {
+		@Override
+		public void onImageLoad(boolean succeeded) {
+			if(mDrawListener != null){
+				mDrawListener.onCallForDraw(mImageView);
+			}
+		}
+	};
+
 	public LiveCardView(Context context) {
 		this(context, null, 0);
 	}
@@ -50,24 +69,47 @@ public class LiveCardView extends FrameLayout {
 	}
 
 	/**
-	 * Set the image from the resource. Once the image is loaded, onCallForDraw
-	 * will be called in the DrawListener
+	 * Set the image from the resource, replacing any image still loading. Once
+	 * the image is loaded, onCallForDraw will be called in the DrawListener
 	 */
 	public void setImage(int resource) {
-		AsyncImageResourceLoadTask loadTask = new AsyncImageResourceLoadTask(mContext.getResources(), mImageView, new ImageLoadListener() {
-			@Override
-			public void onImageLoad() {
-				if(mDrawListener != null){
-					mDrawListener.onCallForDraw();
-				}
-			}
-		});
-		
-		loadTask.execute(resource);
+		// Decode for the space the image has, or the whole screen if it hasn't been laid out yet
+		int targetWidth = mImageView.getMeasuredWidth();
+		int targetHeight = mImageView.getMeasuredHeight();
+		if (targetWidth == 0 || targetHeight == 0) {
+			DisplayMetrics metrics = mContext.getResources().getDisplayMetrics();
+			targetWidth = metrics.widthPixels;
+			targetHeight = metrics.heightPixels;
+		}
+
+		ImageLoader.getInstance().load(mContext.getResources(), resource, targetWidth, targetHeight,
+				mImageView, mImageLoadListener);
+	}
+
+	/**
+	 * Let go of the image, once the card is no longer shown
+	 */
+	public void release() {
+		ImageLoader.getInstance().release(mImageView);
+	}
+
+	/**
+	 * Set the opacity of the image, ie. to pulse it during an alert
+	 */
+	public void setImageAlpha(float alpha) {
+		mImageView.setAlpha(alpha);
+
+		if(mDrawListener != null){
+			mDrawListener.onCallForDraw(mImageView);
+		}
 	}
 
 	public void setTitle(String html) {
 		mTextTitle.setText(Html.fromHtml(html));
+
+		if(mDrawListener != null){
+			mDrawListener.onCallForDraw(mTextTitle);
+		}
 	}
 
 	public void setDrawListener(DrawListener drawer) {
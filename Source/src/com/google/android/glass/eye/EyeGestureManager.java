@@ -7,7 +7,7 @@ public class EyeGestureManager {
     public static final String SERVICE_NAME = "eye_gesture";
 
     public static EyeGestureManager from(Context paramContext) {
-        return null;
+        return (EyeGestureManager) paramContext.getSystemService(SERVICE_NAME);
     }
 
     public void activateGazeLogging(boolean paramBoolean) {
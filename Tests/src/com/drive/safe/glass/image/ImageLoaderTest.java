@@ -0,0 +1,204 @@
+package com.drive.safe.glass.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.test.InstrumentationTestCase;
+import android.widget.ImageView;
+
+import com.drive.safe.glass.R;
+
+/**
+ * Checks that concurrent loads of an image share one decode, and that every
+ * load calls its listener, ie. redraws, exactly once. ImageLoader needs a
+ * Looper, Resources and ImageViews, so this runs on the device.
+ */
+public class ImageLoaderTest extends InstrumentationTestCase {
+
+	private static final long TIMEOUT_SECONDS = 5;
+
+	private static final int CACHE_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * Counts the calls of a load's listener
+	 */
+	private static class CountingListener implements ImageLoadListener {
+		final CountDownLatch loaded = new CountDownLatch(1);
+		volatile int calls;
+		volatile boolean succeeded;
+
+		@Override
+		public void onImageLoad(boolean succeeded) {
+			this.succeeded = succeeded;
+			calls++;
+			loaded.countDown();
+		}
+
+		void await() throws InterruptedException {
+			assertTrue("The image didn't load", loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		}
+	}
+
+	private Resources mResources;
+	private ImageLoader mImageLoader;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mResources = getInstrumentation().getTargetContext().getResources();
+		mImageLoader = new ImageLoader(new ImageCache(CACHE_BYTES, Bitmap.Config.ARGB_8888));
+	}
+
+	public void testConcurrentLoadsShareOneDecode() throws Exception {
+		final List<ImageView> imageViews = createImageViews(3);
+		final List<CountingListener> listeners = createListeners(4);
+
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < imageViews.size(); i++) {
+					mImageLoader.load(mResources, R.drawable.ic_warning_150, 150, 150, imageViews.get(i),
+							listeners.get(i));
+				}
+				mImageLoader.prefetch(mResources, R.drawable.ic_warning_150, 150, 150, listeners.get(3));
+			}
+		});
+		awaitAll(listeners);
+
+		assertEquals("Concurrent loads of one image weren't shared", 1, mImageLoader.getDecodeCount());
+		Bitmap bitmap = getBitmap(imageViews.get(0));
+		for (ImageView imageView : imageViews) {
+			assertSame("The loads show different bitmaps", bitmap, getBitmap(imageView));
+		}
+	}
+
+	public void testCachedLoadDoesNotDecode() throws Exception {
+		final List<ImageView> imageViews = createImageViews(2);
+		final List<CountingListener> listeners = createListeners(2);
+
+		load(R.drawable.ic_eye_150, imageViews.get(0), listeners.get(0));
+		listeners.get(0).await();
+		load(R.drawable.ic_eye_150, imageViews.get(1), listeners.get(1));
+		awaitAll(listeners);
+
+		assertEquals("A cached image was decoded again", 1, mImageLoader.getDecodeCount());
+	}
+
+	public void testDistinctImagesDecodeOnceEach() throws Exception {
+		final List<ImageView> imageViews = createImageViews(4);
+		final List<CountingListener> listeners = createListeners(4);
+
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < imageViews.size(); i++) {
+					int resourceId = i % 2 == 0 ? R.drawable.ic_warning_150 : R.drawable.ic_eye_150;
+					mImageLoader.load(mResources, resourceId, 150, 150, imageViews.get(i), listeners.get(i));
+				}
+			}
+		});
+		awaitAll(listeners);
+
+		assertEquals("Two images weren't decoded once each", 2, mImageLoader.getDecodeCount());
+		assertSame(getBitmap(imageViews.get(0)), getBitmap(imageViews.get(2)));
+		assertSame(getBitmap(imageViews.get(1)), getBitmap(imageViews.get(3)));
+	}
+
+	public void testSupersededLoadIsNotDelivered() throws Exception {
+		final ImageView imageView = createImageViews(1).get(0);
+		final CountingListener superseded = new CountingListener();
+		final CountingListener latest = new CountingListener();
+
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mImageLoader.load(mResources, R.drawable.ic_warning_150, 150, 150, imageView, superseded);
+				mImageLoader.load(mResources, R.drawable.ic_eye_150, 150, 150, imageView, latest);
+			}
+		});
+		latest.await();
+		getInstrumentation().waitForIdleSync();
+
+		assertEquals("The latest load wasn't delivered once", 1, latest.calls);
+		assertEquals("A superseded load was delivered", 0, superseded.calls);
+
+		// The ImageView shows the latest image
+		final CountingListener check = new CountingListener();
+		final ImageView checkView = createImageViews(1).get(0);
+		load(R.drawable.ic_eye_150, checkView, check);
+		check.await();
+		assertSame(getBitmap(checkView), getBitmap(imageView));
+	}
+
+	public void testReleaseClearsTheImage() throws Exception {
+		final ImageView imageView = createImageViews(1).get(0);
+		final CountingListener listener = new CountingListener();
+
+		load(R.drawable.ic_eye_150, imageView, listener);
+		listener.await();
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mImageLoader.release(imageView);
+			}
+		});
+
+		assertNull("A released ImageView still shows its image", imageView.getDrawable());
+	}
+
+	private void load(final int resourceId, final ImageView imageView, final ImageLoadListener listener) {
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				mImageLoader.load(mResources, resourceId, 150, 150, imageView, listener);
+			}
+		});
+	}
+
+	/**
+	 * Wait for every load, then check that none was delivered more than once
+	 */
+	private void awaitAll(List<CountingListener> listeners) throws InterruptedException {
+		for (CountingListener listener : listeners) {
+			listener.await();
+		}
+		getInstrumentation().waitForIdleSync();
+
+		for (CountingListener listener : listeners) {
+			assertEquals("A load called its listener more than once", 1, listener.calls);
+			assertTrue("A load failed", listener.succeeded);
+		}
+	}
+
+	private List<ImageView> createImageViews(final int count) {
+		final List<ImageView> imageViews = new ArrayList<ImageView>(count);
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					imageViews.add(new ImageView(getInstrumentation().getTargetContext()));
+				}
+			}
+		});
+		return imageViews;
+	}
+
+	private static List<CountingListener> createListeners(int count) {
+		List<CountingListener> listeners = new ArrayList<CountingListener>(count);
+		for (int i = 0; i < count; i++) {
+			listeners.add(new CountingListener());
+		}
+		return listeners;
+	}
+
+	private static Bitmap getBitmap(ImageView imageView) {
+		assertNotNull("Nothing was shown", imageView.getDrawable());
+		return ((BitmapDrawable) imageView.getDrawable()).getBitmap();
+	}
+
+}
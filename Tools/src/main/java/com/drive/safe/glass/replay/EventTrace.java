@@ -0,0 +1,168 @@
+package com.drive.safe.glass.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import com.drive.safe.glass.session.SessionReader;
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * A recorded sequence of eye gestures, kept in primitive arrays.
+ *
+ * A trace may be labelled with the time the driver actually started falling
+ * asleep (the onset). Alerts before the onset, or in a trace without one,
+ * are false alarms.
+ *
+ * CSV traces have one "time,GESTURE" line per event, with the time in
+ * milliseconds and GESTURE the name of an EyeGesture. A line "time,ONSET"
+ * labels the onset, and lines starting with # are ignored.
+ */
+public class EventTrace {
+
+	public static final long NO_ONSET = -1;
+
+	private static final String ONSET = "ONSET";
+
+	private static final EyeGesture[] GESTURES = EyeGesture.values();
+
+	private final String mName;
+
+	private long[] mTimes = new long[64];
+	private int[] mGestures = new int[64];
+	private int mSize = 0;
+
+	private long mOnset = NO_ONSET;
+
+	public EventTrace(String name) {
+		mName = name;
+	}
+
+	/**
+	 * Add an event to the end of the trace
+	 *
+	 * @param time in milliseconds, not before the previous event
+	 * @param gesture the ordinal of the EyeGesture
+	 */
+	public void add(long time, int gesture) {
+		if (mSize == mTimes.length) {
+			mTimes = copyOf(mTimes, mSize * 2);
+			mGestures = copyOf(mGestures, mSize * 2);
+		}
+
+		mTimes[mSize] = time;
+		mGestures[mSize] = gesture;
+		mSize++;
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public long getTime(int index) {
+		return mTimes[index];
+	}
+
+	public EyeGesture getGesture(int index) {
+		return GESTURES[mGestures[index]];
+	}
+
+	/**
+	 * @return the time the driver started falling asleep, or NO_ONSET
+	 */
+	public long getOnset() {
+		return mOnset;
+	}
+
+	public void setOnset(long onset) {
+		mOnset = onset;
+	}
+
+	/**
+	 * @return the time between the first and last events, in milliseconds
+	 */
+	public long getDurationMillis() {
+		return mSize == 0 ? 0 : mTimes[mSize - 1] - mTimes[0];
+	}
+
+	/**
+	 * Read a CSV trace
+	 */
+	public static EventTrace readCsv(File file) throws IOException {
+		EventTrace trace = new EventTrace(file.getName());
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+
+				int comma = line.indexOf(',');
+				if (comma < 0) {
+					throw new IOException(file + ":" + lineNumber + ": expected time,GESTURE");
+				}
+
+				long time;
+				try {
+					time = Long.parseLong(line.substring(0, comma).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException(file + ":" + lineNumber + ": bad time");
+				}
+
+				String gesture = line.substring(comma + 1).trim();
+				if (gesture.equals(ONSET)) {
+					trace.setOnset(time);
+				} else {
+					try {
+						trace.add(time, EyeGesture.valueOf(gesture).ordinal());
+					} catch (IllegalArgumentException e) {
+						throw new IOException(file + ":" + lineNumber + ": unknown gesture " + gesture);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return trace;
+	}
+
+	/**
+	 * Read a session recorded by SessionRecorder. Recorded sessions have no onset.
+	 */
+	public static EventTrace readSession(File directory, String sessionName) throws IOException {
+		final EventTrace trace = new EventTrace(sessionName);
+
+		SessionReader.read(directory, sessionName, new SessionReader.RecordVisitor() {
+			@Override
+			public void onRecord(long time, int gesture, float level, int flags) {
+				trace.add(time, gesture);
+			}
+		});
+
+		return trace;
+	}
+
+	private static long[] copyOf(long[] array, int length) {
+		long[] copy = new long[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.drive.safe.glass.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import com.drive.safe.glass.motion.HeadNodDetector;
+
+/**
+ * A recorded sequence of accelerometer and gyroscope samples, kept in
+ * primitive arrays, for running HeadNodDetector off the device.
+ *
+ * CSV traces have one "time,A,x,y,z" line per accelerometer sample and one
+ * "time,G,x,y,z" line per gyroscope sample, with the time in nanoseconds. A
+ * line "time,NOD" labels the start of a real nod, and lines starting with #
+ * are ignored.
+ */
+public class MotionTrace {
+
+	public static final int ACCELEROMETER = 0;
+	public static final int GYROSCOPE = 1;
+
+	private static final String NOD = "NOD";
+
+	private final String mName;
+
+	private long[] mTimes = new long[1024];
+	private int[] mSensors = new int[1024];
+	private float[] mValues = new float[1024 * 3];
+	private int mSize = 0;
+
+	private long[] mNods = new long[16];
+	private int mNodCount = 0;
+
+	public MotionTrace(String name) {
+		mName = name;
+	}
+
+	/**
+	 * Add a sample to the end of the trace
+	 *
+	 * @param time in nanoseconds, not before the previous sample
+	 * @param sensor ACCELEROMETER or GYROSCOPE
+	 */
+	public void add(long time, int sensor, float x, float y, float z) {
+		if (mSize == mTimes.length) {
+			mTimes = copyOf(mTimes, mSize * 2);
+			mSensors = copyOf(mSensors, mSize * 2);
+			mValues = copyOf(mValues, mSize * 2 * 3);
+		}
+
+		mTimes[mSize] = time;
+		mSensors[mSize] = sensor;
+		mValues[mSize * 3] = x;
+		mValues[mSize * 3 + 1] = y;
+		mValues[mSize * 3 + 2] = z;
+		mSize++;
+	}
+
+	/**
+	 * Label the start of a real nod
+	 *
+	 * @param time in nanoseconds
+	 */
+	public void addNod(long time) {
+		if (mNodCount == mNods.length) {
+			mNods = copyOf(mNods, mNodCount * 2);
+		}
+		mNods[mNodCount++] = time;
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int getNodCount() {
+		return mNodCount;
+	}
+
+	/**
+	 * @return when a labelled nod started, in nanoseconds
+	 */
+	public long getNod(int index) {
+		return mNods[index];
+	}
+
+	/**
+	 * Run a detector over every sample
+	 *
+	 * @param nodTimes filled with the times nods were detected, in nanoseconds
+	 * @return the number of nods detected, which may be more than
+	 *         nodTimes.length
+	 */
+	public int replay(HeadNodDetector detector, long[] nodTimes) {
+		int detected = 0;
+
+		for (int i = 0; i < mSize; i++) {
+			final float x = mValues[i * 3];
+			final float y = mValues[i * 3 + 1];
+			final float z = mValues[i * 3 + 2];
+
+			if (mSensors[i] == GYROSCOPE) {
+				detector.onGyroscope(mTimes[i], x, y, z);
+			} else if (detector.onAccelerometer(mTimes[i], x, y, z)) {
+				if (detected < nodTimes.length) {
+					nodTimes[detected] = mTimes[i];
+				}
+				detected++;
+			}
+		}
+
+		return detected;
+	}
+
+	/**
+	 * Read a CSV trace
+	 */
+	public static MotionTrace readCsv(File file) throws IOException {
+		MotionTrace trace = new MotionTrace(file.getName());
+
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+
+				String[] fields = line.split(",");
+				try {
+					long time = Long.parseLong(fields[0].trim());
+					String type = fields.length > 1 ? fields[1].trim() : "";
+
+					if (type.equals(NOD)) {
+						trace.addNod(time);
+					} else if (fields.length == 5 && (type.equals("A") || type.equals("G"))) {
+						trace.add(time, type.equals("A") ? ACCELEROMETER : GYROSCOPE,
+								Float.parseFloat(fields[2].trim()), Float.parseFloat(fields[3].trim()),
+								Float.parseFloat(fields[4].trim()));
+					} else {
+						throw new IOException(file + ":" + lineNumber + ": expected time,A|G,x,y,z or time,NOD");
+					}
+				} catch (NumberFormatException e) {
+					throw new IOException(file + ":" + lineNumber + ": bad number");
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return trace;
+	}
+
+	private static long[] copyOf(long[] array, int length) {
+		long[] copy = new long[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static float[] copyOf(float[] array, int length) {
+		float[] copy = new float[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.drive.safe.glass.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.drive.safe.glass.motion.HeadNodDetector;
+
+/**
+ * Runs HeadNodDetector over recorded sensor traces and compares the nods it
+ * finds with the labelled ones, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.replay.NodReplayMain -Dexec.args="traces/"
+ *
+ * A detection up to MATCH_WINDOW_MILLIS after a labelled nod starts finds
+ * that nod; any other detection is a false alarm.
+ */
+public class NodReplayMain {
+
+	private static final long MATCH_WINDOW_MILLIS = 3000;
+
+	public static void main(String[] args) throws IOException {
+		List<MotionTrace> traces = new ArrayList<MotionTrace>();
+		for (String arg : args) {
+			addTraces(new File(arg), traces);
+		}
+
+		if (traces.isEmpty()) {
+			System.err.println("Usage: NodReplayMain <trace.csv|directory>...");
+			System.exit(1);
+		}
+
+		int labelled = 0;
+		int found = 0;
+		int falseAlarms = 0;
+		long samples = 0;
+		long elapsed = 0;
+
+		for (MotionTrace trace : traces) {
+			long[] detections = new long[trace.size()];
+
+			long start = System.nanoTime();
+			int detected = trace.replay(new HeadNodDetector(), detections);
+			elapsed += System.nanoTime() - start;
+			samples += trace.size();
+
+			// Each labelled nod can be found by one detection
+			boolean[] matched = new boolean[trace.getNodCount()];
+			int traceFound = 0;
+			int traceFalseAlarms = 0;
+			for (int i = 0; i < detected; i++) {
+				int nod = findNod(trace, detections[i], matched);
+				if (nod < 0) {
+					traceFalseAlarms++;
+				} else {
+					matched[nod] = true;
+					traceFound++;
+				}
+			}
+
+			System.out.println(trace.getName() + ": " + traceFound + "/" + trace.getNodCount() + " nods found, "
+					+ traceFalseAlarms + " false alarms");
+
+			labelled += trace.getNodCount();
+			found += traceFound;
+			falseAlarms += traceFalseAlarms;
+		}
+
+		System.out.println("Total: " + found + "/" + labelled + " nods found, " + falseAlarms + " false alarms, "
+				+ (samples == 0 ? 0 : elapsed / samples) + "ns per sample");
+	}
+
+	/**
+	 * @return the unmatched labelled nod a detection belongs to, or -1
+	 */
+	private static int findNod(MotionTrace trace, long detection, boolean[] matched) {
+		for (int i = 0; i < trace.getNodCount(); i++) {
+			long sinceNod = detection - trace.getNod(i);
+			if (!matched[i] && sinceNod >= 0 && sinceNod <= MATCH_WINDOW_MILLIS * 1000000L) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Add a CSV trace, or every CSV trace in a directory
+	 */
+	private static void addTraces(File file, List<MotionTrace> traces) throws IOException {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					if (child.getName().endsWith(".csv")) {
+						traces.add(MotionTrace.readCsv(child));
+					}
+				}
+			}
+		} else {
+			traces.add(MotionTrace.readCsv(file));
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.drive.safe.glass.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.drive.safe.glass.eye.DriverProfile;
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * Searches for the LeakyBucketModel constants that work best on a corpus of
+ * traces, by grid or random search. Candidates are evaluated in parallel;
+ * each one replays the whole corpus.
+ *
+ * A candidate's cost adds up, per trace: MISS_COST for an onset that was
+ * never detected, FALSE_ALARM_COST for every false alarm, and the detection
+ * latency in seconds. The candidate with the lowest cost wins.
+ */
+public class ParameterTuner {
+
+	public static final double MISS_COST = 600;
+	public static final double FALSE_ALARM_COST = 120;
+
+	/**
+	 * The range searched for one constant
+	 */
+	public static class Range {
+		final float min;
+		final float max;
+		final int steps;
+
+		/**
+		 * @param steps the number of values tried in a grid search
+		 */
+		public Range(float min, float max, int steps) {
+			this.min = min;
+			this.max = max;
+			this.steps = steps;
+		}
+
+		float at(int step) {
+			return steps <= 1 ? min : min + (max - min) * step / (steps - 1);
+		}
+
+		float random(Random random) {
+			return min + (max - min) * random.nextFloat();
+		}
+	}
+
+	/**
+	 * A candidate profile and how it did
+	 */
+	public static class Candidate {
+		public final DriverProfile profile;
+		public double cost;
+		public ReplayReport report;
+
+		Candidate(DriverProfile profile) {
+			this.profile = profile;
+		}
+	}
+
+	private final List<EventTrace> mTraces;
+	private final int mThreads;
+
+	public Range threshold = new Range(4f, 16f, 7);
+	public Range wink = new Range(2f, 10f, 5);
+	public Range doubleBlink = new Range(1f, 6f, 6);
+	public Range degradation = new Range(0.0001f, 0.0006f, 6);
+
+	/**
+	 * @param traces the corpus to tune against
+	 * @param threads the number of candidates to evaluate at once
+	 */
+	public ParameterTuner(List<EventTrace> traces, int threads) {
+		mTraces = traces;
+		mThreads = threads;
+	}
+
+	/**
+	 * Try every combination of the ranges' steps
+	 *
+	 * @return the best candidate
+	 */
+	public Candidate gridSearch() throws InterruptedException {
+		List<DriverProfile> profiles = new ArrayList<DriverProfile>();
+		for (int t = 0; t < threshold.steps; t++) {
+			for (int w = 0; w < wink.steps; w++) {
+				for (int b = 0; b < doubleBlink.steps; b++) {
+					for (int d = 0; d < degradation.steps; d++) {
+						profiles.add(new DriverProfile(threshold.at(t), wink.at(w), doubleBlink.at(b),
+								degradation.at(d)));
+					}
+				}
+			}
+		}
+		return evaluate(profiles);
+	}
+
+	/**
+	 * Try random points in the ranges
+	 *
+	 * @param samples the number of points to try
+	 * @param seed the seed of the random points
+	 * @return the best candidate
+	 */
+	public Candidate randomSearch(int samples, long seed) throws InterruptedException {
+		Random random = new Random(seed);
+
+		List<DriverProfile> profiles = new ArrayList<DriverProfile>(samples + 1);
+		// Always compare against the current constants
+		profiles.add(DriverProfile.getDefault());
+		for (int i = 0; i < samples; i++) {
+			profiles.add(new DriverProfile(threshold.random(random), wink.random(random),
+					doubleBlink.random(random), degradation.random(random)));
+		}
+		return evaluate(profiles);
+	}
+
+	/**
+	 * Replay the corpus with each profile
+	 *
+	 * @return the candidate with the lowest cost
+	 */
+	public Candidate evaluate(List<DriverProfile> profiles) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+		try {
+			List<Future<Candidate>> futures = new ArrayList<Future<Candidate>>(profiles.size());
+			for (final DriverProfile profile : profiles) {
+				futures.add(executor.submit(new Callable<Candidate>() {
+					@Override
+					public Candidate call() {
+						return evaluate(profile);
+					}
+				}));
+			}
+
+			Candidate best = null;
+			for (Future<Candidate> future : futures) {
+				Candidate candidate;
+				try {
+					candidate = future.get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+
+				if (best == null || candidate.cost < best.cost) {
+					best = candidate;
+				}
+			}
+			return best;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Replay the corpus with one profile, on the calling thread
+	 */
+	public Candidate evaluate(final DriverProfile profile) {
+		ReplayEngine.ModelFactory factory = new ReplayEngine.ModelFactory() {
+			@Override
+			public DrowsinessModel create(SleepScorer.TimeSource clock) {
+				return profile.createModel(clock);
+			}
+		};
+
+		final long start = System.nanoTime();
+		List<ReplayEngine.TraceResult> results = new ArrayList<ReplayEngine.TraceResult>(mTraces.size());
+		for (EventTrace trace : mTraces) {
+			results.add(ReplayEngine.replay(trace, factory));
+		}
+
+		Candidate candidate = new Candidate(profile);
+		candidate.report = new ReplayReport(results, System.nanoTime() - start);
+		candidate.cost = cost(results);
+		return candidate;
+	}
+
+	private static double cost(List<ReplayEngine.TraceResult> results) {
+		double cost = 0;
+		for (ReplayEngine.TraceResult result : results) {
+			cost += result.falseAlarms * FALSE_ALARM_COST;
+
+			long onset = result.trace.getOnset();
+			if (onset != EventTrace.NO_ONSET) {
+				if (result.detectionTime < 0) {
+					cost += MISS_COST;
+				} else {
+					cost += (result.detectionTime - onset) / 1000d;
+				}
+			}
+		}
+		return cost;
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.drive.safe.glass.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.LevelPredictor;
+
+/**
+ * Replays CSV traces through a drowsiness model and a LevelPredictor, and
+ * reports how far ahead of each alert the pre-alert came, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.replay.PreAlertReplayMain
+ *     -Dexec.args="[--model leaky|window] [--horizon MILLIS] [--time-constant MILLIS] traces/"
+ *
+ * The model's level is reset after each alert, as it is when the driver
+ * acknowledges it. A pre-alert up to MATCH_HORIZONS horizons before an
+ * alert warned of that alert; any other pre-alert is a false one. Also
+ * times the predictor's updates over a long synthetic drive.
+ */
+public class PreAlertReplayMain {
+
+	private static final int MATCH_HORIZONS = 3;
+
+	private static final int BENCHMARK_UPDATES = 20000000;
+
+	public static void main(String[] args) throws IOException {
+		String model = "leaky";
+		long horizon = LevelPredictor.DEFAULT_HORIZON_MILLIS;
+		long timeConstant = LevelPredictor.DEFAULT_TIME_CONSTANT_MILLIS;
+		List<EventTrace> traces = new ArrayList<EventTrace>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--model") && i + 1 < args.length) {
+				model = args[++i];
+			} else if (args[i].equals("--horizon") && i + 1 < args.length) {
+				horizon = Long.parseLong(args[++i]);
+			} else if (args[i].equals("--time-constant") && i + 1 < args.length) {
+				timeConstant = Long.parseLong(args[++i]);
+			} else {
+				ReplayMain.addTraces(new File(args[i]), traces);
+			}
+		}
+
+		if (traces.isEmpty()) {
+			System.err.println("Usage: PreAlertReplayMain [--model leaky|window] [--horizon MILLIS] "
+					+ "[--time-constant MILLIS] <trace.csv|directory>...");
+			System.exit(1);
+		}
+
+		ReplayEngine.ModelFactory factory = ReplayMain.factory(model);
+
+		long[] leads = new long[0];
+		int leadCount = 0;
+		// The time from each alert to the next, the most lead there could be
+		long[] gaps = new long[0];
+		int gapCount = 0;
+		int alerts = 0;
+		int falsePreAlerts = 0;
+
+		for (EventTrace trace : traces) {
+			if (trace.size() == 0) {
+				continue;
+			}
+
+			VirtualClock clock = new VirtualClock(trace.getTime(0));
+			DrowsinessModel drowsinessModel = factory.create(clock);
+			LevelPredictor predictor = new LevelPredictor(timeConstant, horizon, LevelPredictor.DEFAULT_MIN_EVENTS);
+			final float threshold = drowsinessModel.getThreshold();
+
+			if (leads.length < leadCount + trace.size()) {
+				leads = Arrays.copyOf(leads, leadCount + trace.size());
+				gaps = Arrays.copyOf(gaps, gapCount + trace.size());
+			}
+
+			int traceAlerts = 0;
+			int traceWarned = 0;
+			int traceFalse = 0;
+			long preAlert = -1;
+			long lastAlert = -1;
+
+			for (int i = 0; i < trace.size(); i++) {
+				final long time = trace.getTime(i);
+				clock.set(time);
+
+				final float level = drowsinessModel.onEyeGesture(trace.getGesture(i), time);
+
+				if (preAlert >= 0 && time - preAlert > MATCH_HORIZONS * horizon) {
+					traceFalse++;
+					preAlert = -1;
+				}
+
+				if (predictor.onLevel(time, level, threshold)) {
+					if (preAlert >= 0) {
+						traceFalse++;
+					}
+					preAlert = time;
+				}
+
+				if (level >= threshold) {
+					traceAlerts++;
+					if (lastAlert >= 0) {
+						gaps[gapCount++] = time - lastAlert;
+					}
+					lastAlert = time;
+					if (preAlert >= 0) {
+						leads[leadCount++] = time - preAlert;
+						traceWarned++;
+						preAlert = -1;
+					}
+
+					drowsinessModel.reset();
+					predictor.onLevelReset(time);
+				}
+			}
+			if (preAlert >= 0) {
+				traceFalse++;
+			}
+
+			System.out.println(trace.getName() + ": " + traceWarned + "/" + traceAlerts + " alerts warned of, "
+					+ traceFalse + " false pre-alerts");
+
+			alerts += traceAlerts;
+			falsePreAlerts += traceFalse;
+		}
+
+		Arrays.sort(leads, 0, leadCount);
+		System.out.println("Total: " + leadCount + "/" + alerts + " alerts warned of, " + falsePreAlerts
+				+ " false pre-alerts");
+		if (leadCount > 0) {
+			System.out.println("Lead time p10/p50/p90: " + leads[leadCount / 10] + "/" + leads[leadCount / 2] + "/"
+					+ leads[leadCount * 9 / 10] + "ms, horizon " + horizon + "ms");
+		}
+		if (gapCount > 0) {
+			Arrays.sort(gaps, 0, gapCount);
+			System.out.println("Time between alerts p10/p50/p90: " + gaps[gapCount / 10] + "/"
+					+ gaps[gapCount / 2] + "/" + gaps[gapCount * 9 / 10] + "ms");
+		}
+
+		System.out.println("Predictor update: " + benchmark(timeConstant, horizon) + "ns");
+	}
+
+	/**
+	 * @return the mean time of a predictor update over a synthetic drive of
+	 *         blinks every few seconds, with the level rising and falling
+	 */
+	private static double benchmark(long timeConstant, long horizon) {
+		LevelPredictor predictor = new LevelPredictor(timeConstant, horizon, LevelPredictor.DEFAULT_MIN_EVENTS);
+
+		long time = 0;
+		int fired = 0;
+		long start = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			// The first pass warms up the JIT
+			start = System.nanoTime();
+			for (int i = 0; i < BENCHMARK_UPDATES; i++) {
+				time += 1000 + (i * 7919) % 3000;
+				float level = 4 + 3 * (float) Math.sin(i / 50d);
+				if (predictor.onLevel(time, level, 8)) {
+					fired++;
+				}
+			}
+		}
+		double nanos = (System.nanoTime() - start) / (double) BENCHMARK_UPDATES;
+
+		// Keeps the loop from being optimized away
+		if (fired < 0) {
+			System.out.println(fired);
+		}
+		return nanos;
+	}
+
+}
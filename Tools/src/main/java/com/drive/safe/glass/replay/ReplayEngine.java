@@ -0,0 +1,120 @@
+package com.drive.safe.glass.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * Streams recorded traces through a DrowsinessModel on a virtual clock, as
+ * fast as the CPU allows, and reports how well the model detected the
+ * drivers falling asleep. Traces are replayed in parallel, each with its own
+ * model.
+ */
+public class ReplayEngine {
+
+	/**
+	 * Creates a fresh model for each trace
+	 */
+	public static interface ModelFactory {
+		public DrowsinessModel create(SleepScorer.TimeSource clock);
+	}
+
+	/**
+	 * What happened while replaying one trace
+	 */
+	public static class TraceResult {
+		/** The trace that was replayed */
+		public EventTrace trace;
+		/** The time of the first alert at or after the onset, or -1 */
+		public long detectionTime = -1;
+		/** The number of alerts before the onset, or in a trace without one */
+		public int falseAlarms = 0;
+	}
+
+	private final int mThreads;
+
+	/**
+	 * @param threads the number of traces to replay at once
+	 */
+	public ReplayEngine(int threads) {
+		mThreads = threads;
+	}
+
+	/**
+	 * Replay every trace and summarize the results
+	 */
+	public ReplayReport run(List<EventTrace> traces, final ModelFactory factory) throws InterruptedException {
+		final long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+		try {
+			List<Future<TraceResult>> futures = new ArrayList<Future<TraceResult>>(traces.size());
+			for (final EventTrace trace : traces) {
+				futures.add(executor.submit(new Callable<TraceResult>() {
+					@Override
+					public TraceResult call() {
+						return replay(trace, factory);
+					}
+				}));
+			}
+
+			List<TraceResult> results = new ArrayList<TraceResult>(traces.size());
+			for (Future<TraceResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+
+			return new ReplayReport(results, System.nanoTime() - start);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Replay a single trace on the calling thread
+	 */
+	public static TraceResult replay(EventTrace trace, ModelFactory factory) {
+		TraceResult result = new TraceResult();
+		result.trace = trace;
+
+		if (trace.size() == 0) {
+			return result;
+		}
+
+		VirtualClock clock = new VirtualClock(trace.getTime(0));
+		DrowsinessModel model = factory.create(clock);
+		final float threshold = model.getThreshold();
+		final long onset = trace.getOnset();
+
+		boolean above = false;
+		for (int i = 0; i < trace.size(); i++) {
+			final long time = trace.getTime(i);
+			clock.set(time);
+
+			boolean alert = model.onEyeGesture(trace.getGesture(i), time) >= threshold;
+
+			// Count each rise above the threshold as one alert
+			if (alert && !above) {
+				if (onset == EventTrace.NO_ONSET || time < onset) {
+					result.falseAlarms++;
+				} else if (result.detectionTime < 0) {
+					result.detectionTime = time;
+				}
+			}
+			above = alert;
+		}
+
+		return result;
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.drive.safe.glass.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.LeakyBucketModel;
+import com.drive.safe.glass.eye.SleepScorer;
+import com.drive.safe.glass.eye.SlidingWindowModel;
+
+/**
+ * Replays a corpus of CSV traces on the JVM, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.replay.ReplayMain
+ *     -Dexec.args="[--model leaky|window] traces/"
+ */
+public class ReplayMain {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String model = "leaky";
+		List<EventTrace> traces = new ArrayList<EventTrace>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--model") && i + 1 < args.length) {
+				model = args[++i];
+			} else {
+				addTraces(new File(args[i]), traces);
+			}
+		}
+
+		if (traces.isEmpty()) {
+			System.err.println("Usage: ReplayMain [--model leaky|window] <trace.csv|directory>...");
+			System.exit(1);
+		}
+
+		ReplayEngine engine = new ReplayEngine(Runtime.getRuntime().availableProcessors());
+		System.out.println(model + ": " + engine.run(traces, factory(model)));
+	}
+
+	/**
+	 * @return a factory for the model named on the command line
+	 */
+	static ReplayEngine.ModelFactory factory(String model) {
+		if (model.equals("window")) {
+			return new ReplayEngine.ModelFactory() {
+				@Override
+				public DrowsinessModel create(SleepScorer.TimeSource clock) {
+					return new SlidingWindowModel();
+				}
+			};
+		}
+
+		return new ReplayEngine.ModelFactory() {
+			@Override
+			public DrowsinessModel create(SleepScorer.TimeSource clock) {
+				return new LeakyBucketModel(clock);
+			}
+		};
+	}
+
+	/**
+	 * Add a CSV trace, or every CSV trace in a directory
+	 */
+	static void addTraces(File file, List<EventTrace> traces) throws IOException {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					if (child.getName().endsWith(".csv")) {
+						traces.add(EventTrace.readCsv(child));
+					}
+				}
+			}
+		} else {
+			traces.add(EventTrace.readCsv(file));
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.drive.safe.glass.replay;
+
+import java.util.List;
+
+import com.drive.safe.glass.replay.ReplayEngine.TraceResult;
+
+/**
+ * A summary of replaying a corpus of traces
+ */
+public class ReplayReport {
+
+	private final List<TraceResult> mResults;
+
+	private final long mWallNanos;
+
+	private long mEvents = 0;
+	private long mDriveMillis = 0;
+
+	private int mLabelled = 0;
+	private int mDetected = 0;
+	private int mFalseAlarms = 0;
+
+	private long mTotalLatency = 0;
+	private long mMaxLatency = 0;
+
+	public ReplayReport(List<TraceResult> results, long wallNanos) {
+		mResults = results;
+		mWallNanos = wallNanos;
+
+		for (TraceResult result : results) {
+			mEvents += result.trace.size();
+			mDriveMillis += result.trace.getDurationMillis();
+			mFalseAlarms += result.falseAlarms;
+
+			if (result.trace.getOnset() != EventTrace.NO_ONSET) {
+				mLabelled++;
+				if (result.detectionTime >= 0) {
+					long latency = result.detectionTime - result.trace.getOnset();
+					mDetected++;
+					mTotalLatency += latency;
+					mMaxLatency = Math.max(mMaxLatency, latency);
+				}
+			}
+		}
+	}
+
+	public List<TraceResult> getResults() {
+		return mResults;
+	}
+
+	/**
+	 * @return the number of traces labelled with an onset
+	 */
+	public int getLabelledCount() {
+		return mLabelled;
+	}
+
+	/**
+	 * @return the number of labelled traces where the onset was detected
+	 */
+	public int getDetectedCount() {
+		return mDetected;
+	}
+
+	/**
+	 * @return the mean time from onset to the first alert, in milliseconds
+	 */
+	public long getMeanDetectionLatencyMillis() {
+		return mDetected == 0 ? 0 : mTotalLatency / mDetected;
+	}
+
+	public long getMaxDetectionLatencyMillis() {
+		return mMaxLatency;
+	}
+
+	public int getFalseAlarmCount() {
+		return mFalseAlarms;
+	}
+
+	/**
+	 * @return the number of false alarms per hour of replayed driving
+	 */
+	public double getFalseAlarmsPerHour() {
+		return mDriveMillis == 0 ? 0 : mFalseAlarms * 3600000d / mDriveMillis;
+	}
+
+	/**
+	 * @return the number of events replayed every second of wall time
+	 */
+	public double getEventsPerSecond() {
+		return mWallNanos == 0 ? 0 : mEvents * 1e9 / mWallNanos;
+	}
+
+	/**
+	 * @return how many times faster than real time the corpus was replayed
+	 */
+	public double getSpeedUp() {
+		return mWallNanos == 0 ? 0 : mDriveMillis * 1e6 / mWallNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "traces=" + mResults.size()
+				+ " events=" + mEvents
+				+ " detected=" + mDetected + "/" + mLabelled
+				+ " meanLatencyMs=" + getMeanDetectionLatencyMillis()
+				+ " maxLatencyMs=" + mMaxLatency
+				+ " falseAlarms=" + mFalseAlarms
+				+ String.format(" falseAlarmsPerHour=%.2f eventsPerSec=%.0f speedUp=%.0fx",
+						getFalseAlarmsPerHour(), getEventsPerSecond(), getSpeedUp());
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.drive.safe.glass.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tunes the LeakyBucketModel constants on a corpus of CSV traces and writes
+ * the best ones as a driver profile, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.replay.TuneMain
+ *     -Dexec.args="[--random N] [--out driver_profile.bin] traces/"
+ *
+ * Copy the profile to the application's files directory to use it.
+ */
+public class TuneMain {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int samples = 0;
+		File out = new File("driver_profile.bin");
+		List<EventTrace> traces = new ArrayList<EventTrace>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--random") && i + 1 < args.length) {
+				samples = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--out") && i + 1 < args.length) {
+				out = new File(args[++i]);
+			} else {
+				ReplayMain.addTraces(new File(args[i]), traces);
+			}
+		}
+
+		if (traces.isEmpty()) {
+			System.err.println("Usage: TuneMain [--random N] [--out driver_profile.bin] <trace.csv|directory>...");
+			System.exit(1);
+		}
+
+		ParameterTuner tuner = new ParameterTuner(traces, Runtime.getRuntime().availableProcessors());
+
+		long start = System.nanoTime();
+		ParameterTuner.Candidate best = samples > 0 ? tuner.randomSearch(samples, System.nanoTime())
+				: tuner.gridSearch();
+
+		System.out.println("Searched in " + (System.nanoTime() - start) / 1000000L + "ms");
+		System.out.println("Best: " + best.profile + " cost=" + best.cost);
+		System.out.println(best.report);
+
+		best.profile.save(out);
+		System.out.println("Wrote " + out);
+	}
+
+}
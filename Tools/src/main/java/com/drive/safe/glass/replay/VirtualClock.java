@@ -0,0 +1,30 @@
+package com.drive.safe.glass.replay;
+
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * A clock that only moves when it's told to, for replaying traces faster
+ * than real time
+ */
+public class VirtualClock implements SleepScorer.TimeSource {
+
+	private long mNow;
+
+	public VirtualClock(long now) {
+		mNow = now;
+	}
+
+	@Override
+	public long uptimeMillis() {
+		return mNow;
+	}
+
+	public void set(long now) {
+		mNow = now;
+	}
+
+	public void advance(long millis) {
+		mNow += millis;
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.drive.safe.glass.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times nearest rest area lookups over a synthetic index, and checks them
+ * against a linear scan, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.rest.RestAreaBenchmark
+ *     -Dexec.args="[--areas N] [--queries N] [--nearest N]"
+ *
+ * The rest areas are spread at random over the contiguous United States;
+ * they aren't real locations.
+ */
+public class RestAreaBenchmark {
+
+	private static final double MIN_LATITUDE = 25;
+	private static final double MAX_LATITUDE = 49;
+	private static final double MIN_LONGITUDE = -124;
+	private static final double MAX_LONGITUDE = -67;
+
+	/**
+	 * The number of queries checked against a linear scan
+	 */
+	private static final int CHECKED_QUERIES = 200;
+
+	public static void main(String[] args) throws IOException {
+		int areas = 1000000;
+		int queries = 200000;
+		int nearestCount = 5;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--areas")) {
+				areas = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("--queries")) {
+				queries = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("--nearest")) {
+				nearestCount = Integer.parseInt(args[i + 1]);
+			} else {
+				System.err.println("Usage: RestAreaBenchmark [--areas N] [--queries N] [--nearest N]");
+				System.exit(1);
+			}
+		}
+
+		Random random = new Random(42);
+		int[] latitudes = new int[areas];
+		int[] longitudes = new int[areas];
+		for (int i = 0; i < areas; i++) {
+			latitudes[i] = (int) (randomBetween(random, MIN_LATITUDE, MAX_LATITUDE) * 1000000);
+			longitudes[i] = (int) (randomBetween(random, MIN_LONGITUDE, MAX_LONGITUDE) * 1000000);
+		}
+
+		File file = File.createTempFile("rest_areas", ".bin");
+		file.deleteOnExit();
+
+		long start = System.nanoTime();
+		RestAreaIndex.write(file, latitudes, longitudes);
+		System.out.println("Built " + areas + " rest areas (" + file.length() / 1024 + "KB) in "
+				+ (System.nanoTime() - start) / 1000000L + "ms");
+
+		start = System.nanoTime();
+		RestAreaIndex index = RestAreaIndex.open(file);
+		System.out.println("Opened in " + (System.nanoTime() - start) / 1000L + "us");
+
+		double[] queryLatitudes = new double[queries];
+		double[] queryLongitudes = new double[queries];
+		for (int i = 0; i < queries; i++) {
+			queryLatitudes[i] = randomBetween(random, MIN_LATITUDE, MAX_LATITUDE);
+			queryLongitudes[i] = randomBetween(random, MIN_LONGITUDE, MAX_LONGITUDE);
+		}
+
+		int[] nearest = new int[nearestCount];
+
+		// Warm up
+		for (int i = 0; i < Math.min(queries, 20000); i++) {
+			index.findNearest(queryLatitudes[i], queryLongitudes[i], nearest);
+		}
+
+		long[] times = new long[queries];
+		long checksum = 0;
+		for (int i = 0; i < queries; i++) {
+			long queryStart = System.nanoTime();
+			index.findNearest(queryLatitudes[i], queryLongitudes[i], nearest);
+			times[i] = System.nanoTime() - queryStart;
+			checksum += nearest[0];
+		}
+		Arrays.sort(times);
+
+		System.out.println(queries + " queries for the nearest " + nearestCount + ": p50 "
+				+ times[queries / 2] / 1000d + "us, p99 " + times[(int) (queries * 0.99)] / 1000d
+				+ "us, max " + times[queries - 1] / 1000d + "us (checksum " + checksum + ")");
+
+		int mismatches = 0;
+		for (int i = 0; i < Math.min(queries, CHECKED_QUERIES); i++) {
+			index.findNearest(queryLatitudes[i], queryLongitudes[i], nearest);
+			if (nearest[0] != scanNearest(index, queryLatitudes[i], queryLongitudes[i])) {
+				mismatches++;
+			}
+		}
+		System.out.println("Linear scan disagreed on " + mismatches + " of "
+				+ Math.min(queries, CHECKED_QUERIES) + " queries");
+
+		index.close();
+	}
+
+	/**
+	 * @return the nearest rest area, by checking every one of them
+	 */
+	private static int scanNearest(RestAreaIndex index, double latitude, double longitude) {
+		double scale = Math.cos(Math.toRadians(latitude));
+		int nearest = -1;
+		double nearestDistance = Double.MAX_VALUE;
+
+		for (int i = 0; i < index.size(); i++) {
+			double dLat = index.getLatitude(i) - latitude;
+			double dLon = (index.getLongitude(i) - longitude) * scale;
+			double distance = dLat * dLat + dLon * dLon;
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	private static double randomBetween(Random random, double min, double max) {
+		return min + random.nextDouble() * (max - min);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.drive.safe.glass.rest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Builds the rest area index that is bundled with the app from a CSV file
+ * of locations, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.rest.RestAreaIndexBuilder
+ *     -Dexec.args="data/rest_areas.csv ../Source/assets/rest_areas.bin"
+ *
+ * Each line is "latitude,longitude" in degrees; lines starting with # are
+ * ignored. KeepAwakeService copies assets/rest_areas.bin into place on the
+ * first run after each install or update.
+ */
+public class RestAreaIndexBuilder {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: RestAreaIndexBuilder <rest_areas.csv> <rest_areas.bin>");
+			System.exit(1);
+		}
+
+		File csv = new File(args[0]);
+		int[] latitudes = new int[1024];
+		int[] longitudes = new int[1024];
+		int count = 0;
+
+		BufferedReader reader = new BufferedReader(new FileReader(csv));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+
+				int comma = line.indexOf(',');
+				double latitude;
+				double longitude;
+				try {
+					latitude = Double.parseDouble(line.substring(0, comma).trim());
+					longitude = Double.parseDouble(line.substring(comma + 1).trim());
+				} catch (RuntimeException e) {
+					throw new IOException(csv + ":" + lineNumber + ": expected latitude,longitude");
+				}
+				if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+					throw new IOException(csv + ":" + lineNumber + ": not a location");
+				}
+
+				if (count == latitudes.length) {
+					latitudes = copyOf(latitudes, count * 2);
+					longitudes = copyOf(longitudes, count * 2);
+				}
+				latitudes[count] = (int) Math.round(latitude * 1000000);
+				longitudes[count] = (int) Math.round(longitude * 1000000);
+				count++;
+			}
+		} finally {
+			reader.close();
+		}
+
+		RestAreaIndex.write(new File(args[1]), copyOf(latitudes, count), copyOf(longitudes, count));
+		System.out.println("Wrote " + count + " rest areas to " + args[1]);
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+}
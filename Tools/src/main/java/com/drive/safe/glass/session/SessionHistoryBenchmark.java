@@ -0,0 +1,153 @@
+package com.drive.safe.glass.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Times appending to and querying a session history of synthetic shifts,
+ * and checks the trends against a scan of every session, ie. from Tools/
+ *
+ * mvn -q compile exec:java -Dexec.mainClass=com.drive.safe.glass.session.SessionHistoryBenchmark
+ *     -Dexec.args="[--years N] [--queries N]"
+ *
+ * Every day has up to three drives of 20 minutes to 10 hours. Drivers get
+ * more alerts on longer drives; the numbers aren't from real drives.
+ */
+public class SessionHistoryBenchmark {
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+	private static final int[] QUERY_DAYS = { 1, 7, 30, 365 };
+
+	public static void main(String[] args) throws IOException {
+		int years = 5;
+		int queries = 2000;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("--years")) {
+				years = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("--queries")) {
+				queries = Integer.parseInt(args[i + 1]);
+			} else {
+				System.err.println("Usage: SessionHistoryBenchmark [--years N] [--queries N]");
+				System.exit(1);
+			}
+		}
+
+		File directory = File.createTempFile("history", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Couldn't create " + directory);
+		}
+
+		try {
+			run(directory, years, queries);
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private static void run(File directory, int years, int queries) throws IOException {
+		SessionHistory history = new SessionHistory(directory, TimeZone.getTimeZone("UTC"));
+		Random random = new Random(42);
+
+		// 2014-01-01
+		final long start = 16071 * MILLIS_PER_DAY;
+		final int days = years * 365;
+
+		SessionSummary[] sessions = new SessionSummary[days * 3];
+		int count = 0;
+		for (int day = 0; day < days; day++) {
+			int drives = random.nextInt(4);
+			long time = start + day * MILLIS_PER_DAY + 6 * 60 * MILLIS_PER_MINUTE;
+
+			for (int i = 0; i < drives; i++) {
+				long duration = (20 + random.nextInt(580)) * MILLIS_PER_MINUTE;
+				int alerts = random.nextInt((int) (duration / (60 * MILLIS_PER_MINUTE)) + 1);
+				long firstAlert = alerts == 0 ? -1 : (long) (random.nextDouble() * duration);
+
+				sessions[count++] = new SessionSummary(time, duration, 0, 0, 0, 0, 0, 0, 0, 0,
+						alerts * 30000L, alerts, alerts, 0, firstAlert);
+				time += duration + 30 * MILLIS_PER_MINUTE;
+			}
+		}
+
+		long appendStart = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			history.append(sessions[i]);
+		}
+		long appendNanos = System.nanoTime() - appendStart;
+
+		System.out.println(count + " sessions over " + days + " days, append: " + appendNanos / count / 1000
+				+ "us per session");
+
+		final long end = start + days * MILLIS_PER_DAY - 1;
+		if (history.getSessionCount() != count) {
+			throw new AssertionError("The history has " + history.getSessionCount() + " sessions, not " + count);
+		}
+
+		for (int queryDays : QUERY_DAYS) {
+			SessionHistory.Trend trend = history.getTrend(end, queryDays);
+			check(trend, scan(sessions, count, end - queryDays * MILLIS_PER_DAY + 1, queryDays));
+
+			long[] nanos = new long[queries];
+			for (int i = 0; i < queries; i++) {
+				long queryStart = System.nanoTime();
+				history.getTrend(end, queryDays);
+				nanos[i] = System.nanoTime() - queryStart;
+			}
+			Arrays.sort(nanos);
+
+			System.out.println(trend);
+			System.out.println("  query p50: " + nanos[queries / 2] / 1000 + "us, p99: "
+					+ nanos[queries * 99 / 100] / 1000 + "us");
+		}
+	}
+
+	/**
+	 * @return the trend of every session starting at or after from
+	 */
+	private static SessionHistory.Trend scan(SessionSummary[] sessions, int count, long from, int days) {
+		int sessionCount = 0;
+		int alertCount = 0;
+		long drivingMillis = 0;
+		long millisAboveThreshold = 0;
+		long[] firstAlerts = new long[count];
+		int firstAlertCount = 0;
+
+		for (int i = 0; i < count; i++) {
+			SessionSummary session = sessions[i];
+			if (session.startTime < from) {
+				continue;
+			}
+
+			sessionCount++;
+			alertCount += session.alertCount;
+			drivingMillis += session.durationMillis;
+			millisAboveThreshold += session.millisAboveThreshold;
+			if (session.millisToFirstAlert >= 0) {
+				firstAlerts[firstAlertCount++] = session.millisToFirstAlert;
+			}
+		}
+
+		Arrays.sort(firstAlerts, 0, firstAlertCount);
+		return new SessionHistory.Trend(days, sessionCount, alertCount, drivingMillis, millisAboveThreshold,
+				firstAlertCount == 0 ? -1 : firstAlerts[firstAlertCount / 2]);
+	}
+
+	private static void check(SessionHistory.Trend actual, SessionHistory.Trend expected) {
+		if (actual.sessionCount != expected.sessionCount || actual.alertCount != expected.alertCount
+				|| actual.drivingMillis != expected.drivingMillis
+				|| actual.millisAboveThreshold != expected.millisAboveThreshold
+				|| actual.medianMillisToFirstAlert != expected.medianMillisToFirstAlert) {
+			throw new AssertionError("Expected " + expected + " but got " + actual);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.drive.safe.glass.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a session written by SessionRecorder. Records past
+ * the last complete one, ie. after a crash, are ignored.
+ */
+public class SessionReader {
+
+	/**
+	 * Receives the records of a session, without allocating for each one
+	 */
+	public static interface RecordVisitor {
+		public void onRecord(long time, int gesture, float level, int flags);
+	}
+
+	/**
+	 * Read every record of a session, segment by segment
+	 *
+	 * @return the number of records read
+	 */
+	public static long read(File directory, String sessionName, RecordVisitor visitor) throws IOException {
+		long count = 0;
+
+		for (int segment = 0;; segment++) {
+			File file = SessionRecorder.getSegmentFile(directory, sessionName, segment);
+			if (!file.isFile()) {
+				return count;
+			}
+
+			int read = readSegment(file, visitor);
+			if (read < 0) {
+				// The segment ended early, so there can't be a later one
+				return count - read - 1;
+			}
+			count += read;
+		}
+	}
+
+	/**
+	 * @return the number of records read, or -(count + 1) if the segment
+	 *         isn't full
+	 */
+	private static int readSegment(File file, RecordVisitor visitor) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					randomAccessFile.length());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.limit() < SessionRecorder.HEADER_SIZE || buffer.getInt(0) != SessionRecorder.MAGIC) {
+				throw new IOException(file + " isn't a session segment");
+			}
+			if (buffer.getInt(4) != SessionRecorder.VERSION || buffer.getInt(8) != SessionRecorder.RECORD_SIZE) {
+				throw new IOException(file + " has an unsupported version");
+			}
+
+			final int capacity = Math.min(buffer.getInt(12),
+					(buffer.limit() - SessionRecorder.HEADER_SIZE) / SessionRecorder.RECORD_SIZE);
+
+			for (int index = 0; index < capacity; index++) {
+				int offset = SessionRecorder.HEADER_SIZE + index * SessionRecorder.RECORD_SIZE;
+				if (buffer.getInt(offset + SessionRecorder.OFFSET_COMMIT) != SessionRecorder.commitMarker(index)) {
+					return -(index + 1);
+				}
+
+				visitor.onRecord(buffer.getLong(offset + SessionRecorder.OFFSET_TIME),
+						buffer.getInt(offset + SessionRecorder.OFFSET_GESTURE),
+						buffer.getFloat(offset + SessionRecorder.OFFSET_LEVEL),
+						buffer.getInt(offset + SessionRecorder.OFFSET_FLAGS));
+			}
+			return capacity;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+}
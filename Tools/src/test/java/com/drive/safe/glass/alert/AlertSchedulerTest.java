@@ -0,0 +1,174 @@
+package com.drive.safe.glass.alert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.drive.safe.glass.eye.SleepScorer;
+
+/**
+ * Runs the TokenBucket and AlertScheduler on a manual clock and checks
+ * every decision they make
+ */
+public class AlertSchedulerTest {
+
+	/**
+	 * A clock that only moves when it's told to
+	 */
+	private static class ManualClock implements SleepScorer.TimeSource {
+		long now = 0;
+
+		@Override
+		public long uptimeMillis() {
+			return now;
+		}
+
+		void advance(long millis) {
+			now += millis;
+		}
+	}
+
+	/**
+	 * Records what the scheduler asked for
+	 */
+	private static class RecordingActions implements AlertScheduler.AlertActions {
+		final List<Float> speeches = new ArrayList<Float>();
+		final List<AlertScheduler.State> states = new ArrayList<AlertScheduler.State>();
+		int menus;
+
+		@Override
+		public void speak(float volume) {
+			speeches.add(volume);
+		}
+
+		@Override
+		public void showMenu() {
+			menus++;
+		}
+
+		@Override
+		public void onStateChanged(AlertScheduler.State state) {
+			states.add(state);
+		}
+	}
+
+	private final ManualClock mClock = new ManualClock();
+	private final RecordingActions mActions = new RecordingActions();
+
+	@Test
+	public void testTokenBucketRefillsOnTimeUpToItsCapacity() {
+		TokenBucket bucket = new TokenBucket(2, 5000, mClock);
+
+		assertTrue("a full bucket doesn't give out its capacity", bucket.tryAcquire() && bucket.tryAcquire());
+		assertFalse("an empty bucket gave out a token", bucket.tryAcquire());
+		mClock.advance(4999);
+		assertFalse("a token was refilled early", bucket.tryAcquire());
+		mClock.advance(1);
+		assertTrue("a token wasn't refilled on time", bucket.tryAcquire());
+		mClock.advance(60000);
+		assertEquals("the bucket refilled past its capacity", 2, bucket.getTokens());
+	}
+
+	@Test
+	public void testCrossingsAreDebouncedAndRemindersRateLimited() {
+		AlertScheduler scheduler = new AlertScheduler(mClock, mActions);
+
+		scheduler.onFallingAsleep();
+		assertEquals(AlertScheduler.State.WARNING, scheduler.getState());
+		assertEquals(1, mActions.speeches.size());
+		assertEquals(AlertScheduler.VOLUME_WARNING, mActions.speeches.get(0), 0f);
+		assertEquals(1, mActions.menus);
+
+		mClock.advance(AlertScheduler.DEBOUNCE_MILLIS - 1);
+		scheduler.onFallingAsleep();
+		assertEquals("a crossing within the debounce alerted again", 1, mActions.speeches.size());
+
+		// The debounce restarts with every crossing
+		mClock.advance(AlertScheduler.DEBOUNCE_MILLIS);
+		scheduler.onFallingAsleep();
+		assertEquals("a crossing after the debounce didn't remind the user", 2, mActions.speeches.size());
+		assertEquals("the menu was launched again within its rate limit", 1, mActions.menus);
+	}
+
+	@Test
+	public void testUnacknowledgedWarningEscalatesAndRepeatsLouder() {
+		AlertScheduler scheduler = new AlertScheduler(mClock, mActions);
+		scheduler.onFallingAsleep();
+
+		// Tick along until the warning escalates
+		while (mClock.uptimeMillis() < AlertScheduler.ESCALATE_AFTER_MILLIS) {
+			assertEquals("escalated early, at " + mClock.uptimeMillis() + "ms", AlertScheduler.State.WARNING,
+					scheduler.getState());
+			tick(scheduler);
+		}
+		assertEquals(AlertScheduler.State.CRITICAL, scheduler.getState());
+		assertEquals(2, mActions.speeches.size());
+		assertEquals(AlertScheduler.VOLUME_CRITICAL, mActions.speeches.get(1), 0f);
+
+		// Then the speech repeats on a timer, louder each time
+		int spoken = mActions.speeches.size();
+		long escalated = mClock.uptimeMillis();
+		for (int i = 1; i <= 4; i++) {
+			while (mClock.uptimeMillis() < escalated + i * AlertScheduler.CRITICAL_REPEAT_MILLIS) {
+				tick(scheduler);
+			}
+			assertEquals("the critical speech didn't repeat " + i + " times", spoken + i, mActions.speeches.size());
+		}
+		float expectedVolume = AlertScheduler.VOLUME_CRITICAL;
+		for (int i = spoken; i < mActions.speeches.size(); i++) {
+			expectedVolume = Math.min(1f, expectedVolume + AlertScheduler.VOLUME_STEP);
+			assertEquals("the repeated speeches are " + mActions.speeches, expectedVolume,
+					mActions.speeches.get(i), 0.0001f);
+		}
+	}
+
+	@Test
+	public void testAcknowledgingStopsTheAlert() {
+		AlertScheduler scheduler = new AlertScheduler(mClock, mActions);
+		scheduler.onFallingAsleep();
+		while (scheduler.getState() != AlertScheduler.State.CRITICAL) {
+			tick(scheduler);
+		}
+
+		scheduler.acknowledge();
+		int spoken = mActions.speeches.size();
+		for (int i = 0; i < 60; i++) {
+			tick(scheduler);
+		}
+		assertEquals(AlertScheduler.State.NORMAL, scheduler.getState());
+		assertEquals("the speech repeated after the alert was acknowledged", spoken, mActions.speeches.size());
+		assertEquals("[WARNING, CRITICAL, NORMAL]", mActions.states.toString());
+	}
+
+	@Test
+	public void testStormOfCrossingsIsRateLimited() {
+		AlertScheduler scheduler = new AlertScheduler(mClock, mActions);
+
+		// A crossing on every eye event for a minute, as the detector did
+		// before the scheduler
+		for (int i = 0; i < 600; i++) {
+			scheduler.onFallingAsleep();
+			mClock.advance(100);
+			if (i % 10 == 0) {
+				scheduler.tick();
+			}
+		}
+
+		// The menu bucket allows one launch every 30 seconds
+		assertTrue("the menu was launched " + mActions.menus + " times in a minute",
+				mActions.menus >= 1 && mActions.menus <= 2);
+		assertTrue("the speech was played " + mActions.speeches.size() + " times in a minute",
+				mActions.speeches.size() <= 2 + 60000 / AlertScheduler.CRITICAL_REPEAT_MILLIS);
+	}
+
+	private void tick(AlertScheduler scheduler) {
+		mClock.advance(AlertScheduler.TICK_MILLIS);
+		scheduler.tick();
+	}
+
+}
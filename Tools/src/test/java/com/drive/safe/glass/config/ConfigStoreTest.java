@@ -0,0 +1,157 @@
+package com.drive.safe.glass.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.drive.safe.glass.eye.DriverProfile;
+
+/**
+ * Checks that config files of every version are read, that entries this
+ * version doesn't know are skipped, and that reading a config stays within
+ * ConfigStore.PARSE_BUDGET_NANOS
+ */
+public class ConfigStoreTest {
+
+	private static final int PARSE_RUNS = 2000;
+
+	private static final DriverProfile DEFAULT_PROFILE = Config.DEFAULT.getDetectorProfile();
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private File mFile;
+
+	@Before
+	public void setUp() {
+		mFile = new File(mFolder.getRoot(), ConfigStore.FILE_NAME);
+	}
+
+	@Test
+	public void testWrittenConfigIsRead() throws IOException {
+		Config config = new Config(new DriverProfile(9f, 6f, 2f, 0.0004f), 5, "tag", "rest+stop", 20000);
+		ConfigStore.write(mFile, config);
+
+		assertConfigEquals(config, ConfigStore.read(mFile));
+	}
+
+	@Test
+	public void testVersion1ConfigIsRead() throws IOException {
+		// Version 1 had no lengths
+		DataOutputStream out = open();
+		out.writeInt(ConfigStore.MAGIC);
+		out.writeInt(ConfigStore.VERSION_UNSIZED);
+		out.writeInt(3);
+		out.writeInt(ConfigStore.KEY_SLEEP_THRESHOLD);
+		out.writeInt(ConfigStore.TYPE_FLOAT);
+		out.writeFloat(9f);
+		out.writeInt(ConfigStore.KEY_RECEIVER_PRIORITY);
+		out.writeInt(ConfigStore.TYPE_INT);
+		out.writeInt(5);
+		out.writeInt(ConfigStore.KEY_CARD_TAG);
+		out.writeInt(ConfigStore.TYPE_STRING);
+		out.writeInt(3);
+		out.write("tag".getBytes("UTF-8"));
+		out.close();
+
+		assertConfigEquals(new Config(new DriverProfile(9f, DEFAULT_PROFILE.modifierWink, DEFAULT_PROFILE.modifierDoubleBlink,
+				DEFAULT_PROFILE.degradationPerMillisecond), 5, "tag", Config.DEFAULT.getNavigationQuery(),
+				Config.DEFAULT.getPreAlertHorizonMillis()), ConfigStore.read(mFile));
+	}
+
+	@Test
+	public void testUnknownEntriesOfANewerVersionAreSkipped() throws IOException {
+		// A type and a key this version doesn't know, and a known key with a
+		// type it doesn't expect
+		DataOutputStream out = open();
+		out.writeInt(ConfigStore.MAGIC);
+		out.writeInt(ConfigStore.VERSION + 1);
+		out.writeInt(4);
+		out.writeInt(ConfigStore.KEY_MODIFIER_WINK);
+		out.writeInt(99);
+		out.writeInt(3);
+		out.write(new byte[] { 1, 2, 3 });
+		out.writeInt(ConfigStore.KEY_RECEIVER_PRIORITY);
+		out.writeInt(ConfigStore.TYPE_INT);
+		out.writeInt(4);
+		out.writeInt(5);
+		out.writeInt(1000);
+		out.writeInt(ConfigStore.TYPE_STRING);
+		out.writeInt(7);
+		out.write("ignored".getBytes("UTF-8"));
+		out.writeInt(ConfigStore.KEY_CARD_TAG);
+		out.writeInt(ConfigStore.TYPE_FLOAT);
+		out.writeInt(4);
+		out.writeFloat(1f);
+		out.close();
+
+		assertConfigEquals(new Config(DEFAULT_PROFILE, 5, Config.DEFAULT.getCardTag(), Config.DEFAULT.getNavigationQuery(),
+				Config.DEFAULT.getPreAlertHorizonMillis()), ConfigStore.read(mFile));
+	}
+
+	@Test
+	public void testTruncatedConfigIsRejected() throws IOException {
+		// A value that runs past the end of the file
+		DataOutputStream out = open();
+		out.writeInt(ConfigStore.MAGIC);
+		out.writeInt(ConfigStore.VERSION);
+		out.writeInt(1);
+		out.writeInt(ConfigStore.KEY_CARD_TAG);
+		out.writeInt(ConfigStore.TYPE_STRING);
+		out.writeInt(100);
+		out.close();
+
+		try {
+			ConfigStore.read(mFile);
+			fail("a truncated config was read");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testMissingConfigReadsAsNull() throws IOException {
+		assertNull(ConfigStore.read(mFile));
+	}
+
+	@Test
+	public void testReadingIsWithinTheBudget() throws IOException {
+		ConfigStore.write(mFile, Config.DEFAULT);
+
+		long[] times = new long[PARSE_RUNS];
+		for (int i = 0; i < PARSE_RUNS; i++) {
+			long start = System.nanoTime();
+			ConfigStore.read(mFile);
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+
+		long median = times[PARSE_RUNS / 2];
+		assertTrue("reading a config took " + median / 1000d + "us", median <= ConfigStore.PARSE_BUDGET_NANOS);
+	}
+
+	private DataOutputStream open() throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile)));
+	}
+
+	/**
+	 * Config doesn't override equals(), but its toString() has every field
+	 */
+	private static void assertConfigEquals(Config expected, Config actual) {
+		assertEquals(expected.toString(), String.valueOf(actual));
+	}
+
+}
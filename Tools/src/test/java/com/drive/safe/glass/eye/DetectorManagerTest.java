@@ -0,0 +1,150 @@
+package com.drive.safe.glass.eye;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.android.glass.eye.EyeGesture;
+import com.google.android.glass.eye.EyeGestureManager;
+
+/**
+ * Runs a DetectorManager against a fake EyeGestureManager and checks every
+ * call it makes to the detectors
+ */
+public class DetectorManagerTest {
+
+	/**
+	 * Keeps the state of each detector, and counts the calls that change it
+	 */
+	private static class FakeEyeGestureManager extends EyeGestureManager {
+		final boolean[] running = new boolean[EyeGesture.values().length];
+		int starts;
+		int stops;
+
+		@Override
+		public boolean isSupported(EyeGesture gesture) {
+			return gesture != EyeGesture.DOUBLE_WINK;
+		}
+
+		@Override
+		public boolean isDetectorRunning(EyeGesture gesture) {
+			return running[gesture.ordinal()];
+		}
+
+		@Override
+		public boolean enableDetectorPersistently(EyeGesture gesture, boolean enable) {
+			assertFalse(gesture + " was started while running", running[gesture.ordinal()]);
+			running[gesture.ordinal()] = true;
+			starts++;
+			return true;
+		}
+
+		@Override
+		public boolean stopDetector(EyeGesture gesture) {
+			assertTrue(gesture + " was stopped while stopped", running[gesture.ordinal()]);
+			running[gesture.ordinal()] = false;
+			stops++;
+			return true;
+		}
+
+		boolean isRunning(EyeGesture gesture) {
+			return running[gesture.ordinal()];
+		}
+	}
+
+	private final FakeEyeGestureManager mManager = new FakeEyeGestureManager();
+	private final DetectorManager mDetectors = new DetectorManager(mManager);
+
+	@Test
+	public void testDetectorsAreStartedByTheirFirstUserAndStoppedByTheirLast() {
+		assertTrue("WINK isn't supported", mDetectors.acquire(EyeGesture.WINK) && mDetectors.acquire(EyeGesture.WINK));
+		assertEquals(2, mDetectors.getReferences(EyeGesture.WINK));
+		assertEquals("two acquires started WINK more than once", 1, mManager.starts);
+
+		mDetectors.release(EyeGesture.WINK);
+		assertTrue("WINK was stopped while it still had a user", mManager.isRunning(EyeGesture.WINK));
+		assertEquals(0, mManager.stops);
+
+		mDetectors.release(EyeGesture.WINK);
+		assertFalse("WINK wasn't stopped by its last user", mManager.isRunning(EyeGesture.WINK));
+		assertEquals(1, mManager.stops);
+	}
+
+	@Test
+	public void testUnsupportedDetectorIsNotAcquired() {
+		assertFalse(mDetectors.acquire(EyeGesture.DOUBLE_WINK));
+		assertEquals(0, mDetectors.getReferences(EyeGesture.DOUBLE_WINK));
+	}
+
+	@Test
+	public void testDetectorStartedByAnotherAppIsNotStartedAgain() {
+		mManager.running[EyeGesture.DOUBLE_BLINK.ordinal()] = true;
+
+		mDetectors.acquire(EyeGesture.DOUBLE_BLINK);
+		assertEquals(0, mManager.starts);
+	}
+
+	@Test
+	public void testReleasingTwiceIsSafe() {
+		mDetectors.acquire(EyeGesture.WINK);
+		mDetectors.release(EyeGesture.WINK);
+		mDetectors.release(EyeGesture.WINK);
+		mDetectors.release(EyeGesture.DOUBLE_BLINK);
+		assertEquals("releasing twice stopped WINK again", 1, mManager.stops);
+		assertEquals(0, mDetectors.getReferences(EyeGesture.WINK));
+
+		// A release too many mustn't steal a later user's reference
+		mDetectors.acquire(EyeGesture.WINK);
+		assertTrue(mManager.isRunning(EyeGesture.WINK));
+		assertEquals(1, mDetectors.getReferences(EyeGesture.WINK));
+	}
+
+	@Test
+	public void testDonAndDoffKeepRunningWhilePaused() {
+		mDetectors.acquire(EyeGesture.WINK);
+		mDetectors.acquire(EyeGesture.DOUBLE_BLINK);
+		mDetectors.acquire(EyeGesture.DON);
+		mDetectors.acquire(EyeGesture.DOFF);
+		int starts = mManager.starts;
+
+		mDetectors.pause();
+		assertTrue(mDetectors.isPaused());
+		assertFalse("WINK kept running while paused", mManager.isRunning(EyeGesture.WINK));
+		assertFalse("DOUBLE_BLINK kept running while paused", mManager.isRunning(EyeGesture.DOUBLE_BLINK));
+		assertTrue("DON was stopped by pause()", mManager.isRunning(EyeGesture.DON));
+		assertTrue("DOFF was stopped by pause()", mManager.isRunning(EyeGesture.DOFF));
+		assertEquals(2, mManager.stops);
+
+		mDetectors.pause();
+		assertEquals("pausing twice stopped detectors again", 2, mManager.stops);
+
+		// Acquired while paused, so started on resume
+		mDetectors.acquire(EyeGesture.WINK);
+		assertFalse("a detector was started while paused", mManager.isRunning(EyeGesture.WINK));
+		mDetectors.acquire(EyeGesture.DON);
+		assertEquals("DON was started again while paused", starts, mManager.starts);
+
+		mDetectors.resume();
+		assertTrue(mManager.isRunning(EyeGesture.WINK) && mManager.isRunning(EyeGesture.DOUBLE_BLINK));
+		assertTrue(mManager.isRunning(EyeGesture.DON) && mManager.isRunning(EyeGesture.DOFF));
+		assertEquals(starts + 2, mManager.starts);
+
+		mDetectors.resume();
+		assertEquals("resuming twice started detectors again", starts + 2, mManager.starts);
+	}
+
+	@Test
+	public void testDetectorReleasedWhilePausedIsNotRestarted() {
+		mDetectors.acquire(EyeGesture.WINK);
+		mDetectors.acquire(EyeGesture.DOUBLE_BLINK);
+
+		mDetectors.pause();
+		mDetectors.release(EyeGesture.DOUBLE_BLINK);
+		mDetectors.resume();
+		assertFalse(mManager.isRunning(EyeGesture.DOUBLE_BLINK));
+		assertTrue(mManager.isRunning(EyeGesture.WINK));
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.drive.safe.glass.eye;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Checks that every gesture name reaches its listener method, and that
+ * dispatching and scoring gestures allocates nothing once warmed up
+ */
+public class GestureDispatcherTest {
+
+	private static final String[] EVENTS = { "WINK", "DOUBLE_BLINK", "DOUBLE_WINK", "DON", "DOFF", "LOOK_UP" };
+
+	private static final int EVENT_COUNT = 600000;
+
+	/**
+	 * Bytes the measurement itself may show, ie. a TLAB being refilled
+	 */
+	private static final long ALLOWED_BYTES = 1024;
+
+	/**
+	 * Counts the gestures dispatched, indexed like EVENTS, and scores the
+	 * winks and double blinks
+	 */
+	private static class CountingListener implements EyeEventReceiver.EyeEventListener {
+		final LeakyBucketModel model = new LeakyBucketModel(SleepScorer.NANO_TIME);
+		final int[] counts = new int[EVENTS.length];
+		long time;
+
+		@Override
+		public void onWink() {
+			counts[0]++;
+			model.onEyeGesture(EyeGesture.WINK, time);
+		}
+
+		@Override
+		public void onDoubleBlink() {
+			counts[1]++;
+			model.onEyeGesture(EyeGesture.DOUBLE_BLINK, time);
+		}
+
+		@Override
+		public void onDoubleWink() {
+			counts[2]++;
+		}
+
+		@Override
+		public void onDon() {
+			counts[3]++;
+		}
+
+		@Override
+		public void onDoff() {
+			counts[4]++;
+		}
+	}
+
+	@Test
+	public void testEveryGestureIsDispatched() {
+		CountingListener listener = new CountingListener();
+		GestureDispatcher dispatcher = new GestureDispatcher(listener);
+
+		for (int i = 0; i < EVENTS.length; i++) {
+			boolean known = dispatcher.dispatch(EVENTS[i]);
+			if (i < EVENTS.length - 1) {
+				assertTrue(EVENTS[i] + " wasn't dispatched", known);
+				assertEquals(EVENTS[i] + " reached the wrong listener method", 1, listener.counts[i]);
+			} else {
+				assertFalse("an unknown gesture was dispatched", known);
+			}
+		}
+	}
+
+	@Test
+	public void testDispatchDoesNotAllocate() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		final long thread = Thread.currentThread().getId();
+
+		CountingListener listener = new CountingListener();
+		GestureDispatcher dispatcher = new GestureDispatcher(listener);
+
+		// Warm up, so the measured loop runs compiled code
+		run(dispatcher, listener);
+
+		long overhead = threads.getThreadAllocatedBytes(thread);
+		overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+
+		long start = threads.getThreadAllocatedBytes(thread);
+		run(dispatcher, listener);
+		long allocated = threads.getThreadAllocatedBytes(thread) - start - overhead;
+
+		assertTrue("dispatching " + EVENT_COUNT + " events allocated " + allocated + " bytes",
+				allocated <= ALLOWED_BYTES);
+		for (int i = 0; i < EVENTS.length - 1; i++) {
+			assertEquals(EVENTS[i] + " was dropped", 2 * EVENT_COUNT / EVENTS.length, listener.counts[i]);
+		}
+	}
+
+	private static void run(GestureDispatcher dispatcher, CountingListener listener) {
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			listener.time = i;
+			dispatcher.dispatch(EVENTS[i % EVENTS.length]);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.drive.safe.glass.eye;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Feeds a LevelPredictor levels by hand and checks its predictions
+ */
+public class LevelPredictorTest {
+
+	private static final float THRESHOLD = 8f;
+
+	private final LevelPredictor mPredictor = new LevelPredictor();
+
+	@Test
+	public void testRisingLevelFiresOncePerApproach() {
+		// A level per second, rising by 1 a second
+		assertFalse(mPredictor.onLevel(0, 0f, THRESHOLD));
+		assertFalse("predicted from a single slope", mPredictor.onLevel(1000, 1f, THRESHOLD));
+		assertTrue(mPredictor.onLevel(2000, 2f, THRESHOLD));
+		assertEquals(6000, mPredictor.getMillisToThreshold(), 1);
+
+		assertFalse("fired again on the same approach", mPredictor.onLevel(3000, 3f, THRESHOLD));
+		assertEquals(5000, mPredictor.getMillisToThreshold(), 1);
+	}
+
+	@Test
+	public void testFallingLevelIsNotPredicted() {
+		mPredictor.onLevel(0, 6f, THRESHOLD);
+		mPredictor.onLevel(1000, 5f, THRESHOLD);
+		assertFalse(mPredictor.onLevel(2000, 4f, THRESHOLD));
+		assertEquals(LevelPredictor.NO_PREDICTION, mPredictor.getMillisToThreshold());
+	}
+
+	@Test
+	public void testOutOfOrderLevelIsIgnored() {
+		mPredictor.onLevel(0, 0f, THRESHOLD);
+		mPredictor.onLevel(1000, 1f, THRESHOLD);
+		mPredictor.onLevel(2000, 2f, THRESHOLD);
+		double slope = mPredictor.getSlope();
+		long millisToThreshold = mPredictor.getMillisToThreshold();
+
+		assertFalse(mPredictor.onLevel(1500, 7.5f, THRESHOLD));
+		assertEquals(slope, mPredictor.getSlope(), 0);
+		assertEquals(millisToThreshold, mPredictor.getMillisToThreshold());
+	}
+
+	@Test
+	public void testRateIsKeptAcrossAReset() {
+		mPredictor.onLevel(0, 0f, THRESHOLD);
+		mPredictor.onLevel(1000, 1f, THRESHOLD);
+		mPredictor.onLevel(2000, 2f, THRESHOLD);
+		double slope = mPredictor.getSlope();
+
+		mPredictor.onLevelReset(2500);
+		assertEquals(LevelPredictor.NO_PREDICTION, mPredictor.getMillisToThreshold());
+		assertEquals(slope, mPredictor.getSlope(), 0);
+
+		// The first level after the reset is predicted from the kept rate,
+		// and may fire again
+		assertTrue(mPredictor.onLevel(2500, 3f, THRESHOLD));
+		assertEquals(5000, mPredictor.getMillisToThreshold(), 1);
+	}
+
+	@Test
+	public void testResetForgetsTheRate() {
+		mPredictor.onLevel(0, 0f, THRESHOLD);
+		mPredictor.onLevel(1000, 1f, THRESHOLD);
+		mPredictor.onLevel(2000, 2f, THRESHOLD);
+
+		mPredictor.reset();
+		assertEquals(0, mPredictor.getSlope(), 0);
+		assertFalse(mPredictor.onLevel(3000, 3f, THRESHOLD));
+		assertEquals(LevelPredictor.NO_PREDICTION, mPredictor.getMillisToThreshold());
+	}
+
+}
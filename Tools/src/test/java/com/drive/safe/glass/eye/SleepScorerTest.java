@@ -0,0 +1,110 @@
+package com.drive.safe.glass.eye;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Hammers a SleepScorer from many threads and checks that no eye event is
+ * lost
+ */
+public class SleepScorerTest {
+
+	private static final float DEGRADATION_PER_MILLISECOND = 0.001f;
+
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private static final int EVENTS = 100000;
+
+	/**
+	 * Every test passes its own event times, so the clock stays at 0
+	 */
+	private static final SleepScorer.TimeSource CLOCK = new SleepScorer.TimeSource() {
+		@Override
+		public long uptimeMillis() {
+			return 0;
+		}
+	};
+
+	@Test
+	public void testConcurrentEventsAreAllScored() throws InterruptedException {
+		// Every event at the same time, so none of them is degraded and each
+		// one adds exactly 1 while the level fits a float exactly
+		final SleepScorer scorer = new SleepScorer(DEGRADATION_PER_MILLISECOND, CLOCK);
+		final long eventTime = 1000;
+		hammer(new Scoring() {
+			@Override
+			public void score(int event) {
+				scorer.score(1f, eventTime);
+			}
+		});
+
+		float expected = (float) THREADS * EVENTS;
+		assertTrue("too many events to count exactly in a float", expected < (1 << 24));
+		assertEquals(expected, scorer.getLevel(eventTime), 0f);
+	}
+
+	@Test
+	public void testConcurrentEventsKeepTheLatestTime() throws InterruptedException {
+		// However the events interleave, the level is between every event
+		// degraded for the whole run and no degradation at all
+		final SleepScorer scorer = new SleepScorer(DEGRADATION_PER_MILLISECOND, CLOCK);
+		hammer(new Scoring() {
+			@Override
+			public void score(int event) {
+				scorer.score(1f, 1 + event);
+			}
+		});
+
+		final long lastTime = EVENTS;
+		float level = scorer.getLevel(lastTime);
+		float total = (float) THREADS * EVENTS;
+		assertTrue("the level " + level + " is more than the events scored", level <= total);
+		assertTrue("the level " + level + " lost events",
+				level >= Math.max(0f, total - lastTime * DEGRADATION_PER_MILLISECOND) - 1);
+		assertEquals("an event at the latest time was degraded again", level, scorer.score(0f, lastTime), 0f);
+	}
+
+	@Test
+	public void testResetClearsTheLevel() {
+		SleepScorer scorer = new SleepScorer(DEGRADATION_PER_MILLISECOND, CLOCK);
+		scorer.score(3f, 1000);
+
+		scorer.reset();
+		assertEquals(0f, scorer.getLevel(1000), 0f);
+	}
+
+	private static interface Scoring {
+		public void score(int event);
+	}
+
+	/**
+	 * Start every thread at once, and wait for them all to finish
+	 */
+	private static void hammer(final Scoring scoring) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread("SleepScorerTest-" + t) {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < EVENTS; i++) {
+							scoring.score(i);
+						}
+					} catch (InterruptedException e) {
+						return;
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.drive.safe.glass.replay;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.drive.safe.glass.eye.DrowsinessModel;
+import com.drive.safe.glass.eye.LeakyBucketModel;
+import com.drive.safe.glass.eye.SleepScorer;
+import com.google.android.glass.eye.EyeGesture;
+
+/**
+ * Replays the traces in src/test/resources/traces through the default leaky
+ * bucket model, and checks when it alerted
+ */
+public class ReplayEngineTest {
+
+	private static final ReplayEngine.ModelFactory LEAKY_BUCKET = new ReplayEngine.ModelFactory() {
+		@Override
+		public DrowsinessModel create(SleepScorer.TimeSource clock) {
+			return new LeakyBucketModel(clock);
+		}
+	};
+
+	@Test
+	public void testCsvTraceIsRead() throws Exception {
+		EventTrace trace = readTrace("drowsy.csv");
+
+		assertEquals("drowsy.csv", trace.getName());
+		assertEquals(9, trace.size());
+		assertEquals(60000, trace.getOnset());
+		assertEquals(20000, trace.getTime(2));
+		assertEquals(EyeGesture.WINK, trace.getGesture(2));
+		assertEquals(66000, trace.getDurationMillis());
+	}
+
+	@Test
+	public void testOnsetIsDetected() throws Exception {
+		ReplayEngine.TraceResult result = ReplayEngine.replay(readTrace("drowsy.csv"), LEAKY_BUCKET);
+
+		assertEquals(65000, result.detectionTime);
+		assertEquals(0, result.falseAlarms);
+	}
+
+	@Test
+	public void testEachRiseAboveTheThresholdIsOneFalseAlarm() throws Exception {
+		ReplayEngine.TraceResult result = ReplayEngine.replay(readTrace("alert.csv"), LEAKY_BUCKET);
+
+		assertEquals(-1, result.detectionTime);
+		assertEquals(2, result.falseAlarms);
+	}
+
+	@Test
+	public void testReportSummarizesEveryTrace() throws Exception {
+		ReplayReport report = new ReplayEngine(2).run(
+				Arrays.asList(readTrace("drowsy.csv"), readTrace("alert.csv")), LEAKY_BUCKET);
+
+		assertEquals(2, report.getResults().size());
+		assertEquals(1, report.getLabelledCount());
+		assertEquals(1, report.getDetectedCount());
+		assertEquals(5000, report.getMeanDetectionLatencyMillis());
+		assertEquals(2, report.getFalseAlarmCount());
+	}
+
+	private static EventTrace readTrace(String name) throws IOException, URISyntaxException {
+		return EventTrace.readCsv(new File(ReplayEngineTest.class.getResource("/traces/" + name).toURI()));
+	}
+
+}
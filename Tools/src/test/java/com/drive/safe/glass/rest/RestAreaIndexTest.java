@@ -0,0 +1,112 @@
+package com.drive.safe.glass.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Installs the rest area index bundled with the app the way
+ * KeepAwakeService does, opens it and looks up rest areas in it
+ */
+public class RestAreaIndexTest {
+
+	private static final File BUNDLED_INDEX = new File("../Source/assets/" + RestAreaIndex.FILE_NAME);
+	private static final File BUNDLED_CSV = new File("data/rest_areas.csv");
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private File mFile;
+
+	@Before
+	public void setUp() {
+		mFile = new File(mFolder.getRoot(), RestAreaIndex.FILE_NAME);
+	}
+
+	@Test
+	public void testBundledIndexIsInstalledOpenedAndSearched() throws IOException {
+		RestAreaIndex.install(new FileInputStream(BUNDLED_INDEX), mFile);
+
+		RestAreaIndex index = RestAreaIndex.open(mFile);
+		try {
+			assertEquals(16, index.size());
+
+			int[] nearest = new int[3];
+			assertEquals(3, index.findNearest(0.12, 0.09, nearest));
+			assertEquals(0.1, index.getLatitude(nearest[0]), 0);
+			assertEquals(0.1, index.getLongitude(nearest[0]), 0);
+
+			double previous = 0;
+			for (int i : nearest) {
+				double distance = index.getDistanceMeters(i, 0.12, 0.09);
+				assertTrue("the rest areas aren't nearest first", distance >= previous);
+				previous = distance;
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+	@Test
+	public void testInstallReplacesTheOldIndex() throws IOException {
+		RestAreaIndex.write(mFile, new int[] { 45000000 }, new int[] { -120000000 });
+
+		RestAreaIndex.install(new FileInputStream(BUNDLED_INDEX), mFile);
+
+		RestAreaIndex index = RestAreaIndex.open(mFile);
+		try {
+			assertEquals(16, index.size());
+		} finally {
+			index.close();
+		}
+		assertFalse(new File(mFile.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void testBundledIndexIsBuiltFromTheCsv() throws IOException {
+		Set<String> expected = new HashSet<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(BUNDLED_CSV));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					String[] location = line.split(",");
+					expected.add(location(Double.parseDouble(location[0]), Double.parseDouble(location[1])));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		Set<String> bundled = new HashSet<String>();
+		RestAreaIndex index = RestAreaIndex.open(BUNDLED_INDEX);
+		try {
+			for (int i = 0; i < index.size(); i++) {
+				bundled.add(location(index.getLatitude(i), index.getLongitude(i)));
+			}
+		} finally {
+			index.close();
+		}
+
+		assertEquals("rebuild the bundled index with RestAreaIndexBuilder", expected, bundled);
+	}
+
+	private static String location(double latitude, double longitude) {
+		return Math.round(latitude * 1000000) + "," + Math.round(longitude * 1000000);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.drive.safe.glass.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Records sessions and reads them back with SessionReader
+ */
+public class SessionRecorderTest {
+
+	private static final int RECORDS_PER_SEGMENT = 16;
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	/**
+	 * Checks that each record read is the next one written
+	 */
+	private static class CheckingVisitor implements SessionReader.RecordVisitor {
+		int count;
+
+		@Override
+		public void onRecord(long time, int gesture, float level, int flags) {
+			assertEquals(1000L * count, time);
+			assertEquals(count % 5, gesture);
+			assertEquals(count / 2f, level, 0f);
+			assertEquals(count % 7 == 0 ? SessionRecorder.FLAG_ALERT : 0, flags);
+			count++;
+		}
+	}
+
+	@Test
+	public void testRecordsAreReadBackAcrossSegments() throws IOException {
+		final int records = RECORDS_PER_SEGMENT * 3 + 5;
+		SessionRecorder recorder = new SessionRecorder(mFolder.getRoot(), "drive", RECORDS_PER_SEGMENT);
+		for (int i = 0; i < records; i++) {
+			recorder.record(1000L * i, i % 5, i / 2f, i % 7 == 0 ? SessionRecorder.FLAG_ALERT : 0);
+		}
+		recorder.close();
+		assertEquals(records, recorder.getRecordCount());
+		assertTrue(SessionRecorder.getSegmentFile(mFolder.getRoot(), "drive", 3).isFile());
+
+		CheckingVisitor visitor = new CheckingVisitor();
+		assertEquals(records, SessionReader.read(mFolder.getRoot(), "drive", visitor));
+		assertEquals(records, visitor.count);
+	}
+
+	@Test
+	public void testOnlyTheNewestSessionsAreKept() throws IOException {
+		for (int session = 0; session < 4; session++) {
+			SessionRecorder recorder = new SessionRecorder(mFolder.getRoot(), "drive" + session, RECORDS_PER_SEGMENT);
+			for (int i = 0; i < RECORDS_PER_SEGMENT + 1; i++) {
+				recorder.record(i, 0, 0f, 0);
+			}
+			recorder.close();
+
+			for (int segment = 0; segment < 2; segment++) {
+				File file = SessionRecorder.getSegmentFile(mFolder.getRoot(), "drive" + session, segment);
+				assertTrue(file.setLastModified(1000000000000L + session * 60000L));
+			}
+		}
+
+		assertEquals("the two oldest sessions' segments weren't deleted", 4,
+				SessionRecorder.deleteOldSessions(mFolder.getRoot(), 2));
+		assertFalse(SessionRecorder.getSegmentFile(mFolder.getRoot(), "drive1", 0).exists());
+		assertTrue(SessionRecorder.getSegmentFile(mFolder.getRoot(), "drive2", 1).exists());
+		assertEquals(0, SessionRecorder.deleteOldSessions(mFolder.getRoot(), 2));
+	}
+
+}